@@ -0,0 +1,55 @@
+package ca.carleton.comp3004.benchmarks;
+
+import ca.carleton.comp3004.trace.AsyncTracer;
+import ca.carleton.comp3004.trace.TraceWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import yahtzeeTrace.ScoreType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a game thread pays to trace a score through the {@link TraceWriter}. The tracer behind it does nothing, so the
+ * writer keeps up and this is the cost of claiming, filling and publishing a slot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class AsyncTracerBenchmark {
+
+    private final int[] dice = {3, 3, 3, 5, 6};
+
+    private TraceWriter writer;
+
+    private AsyncTracer tracer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.writer = new TraceWriter(1 << 16, TimeUnit.MILLISECONDS.toNanos(1));
+        this.writer.start();
+        this.tracer = new AsyncTracer(new NullTracer(), this.writer);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.writer.shutdown();
+    }
+
+    @Benchmark
+    public void traceScore() {
+        this.tracer.traceScore(1, 50000, this.dice, 9, ScoreType.THREES);
+    }
+}
@@ -0,0 +1,209 @@
+package ca.carleton.comp3004.benchmarks;
+
+import ca.carleton.comp3004.server.app.net.GameSession;
+import ca.carleton.comp3004.server.app.net.PlayerConnection;
+import ca.carleton.comp3004.util.OutboundMessage;
+import ca.carleton.comp3004.util.ProtocolMessage;
+import ca.carleton.comp3004.util.ScoringTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code YahtzeeGame.updateBoardEntry}, {@code getScoreForPlayer} and {@code determineWinner}, driven through a real
+ * {@link GameSession} the way a client's messages reach them.
+ * <p/>
+ * The session runs its events on the calling thread, its players are connections that only note what they are sent,
+ * and its tracer does nothing, so what is left is the game: rolling, checking and claiming each submission, moving the
+ * rounds on, and totalling every player at the end.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BoardBenchmark {
+
+    /**
+     * Connection IDs are client port numbers.
+     */
+    private static final int FIRST_PLAYER = 50000;
+
+    private static final Executor CALLER = new Executor() {
+        @Override
+        public void execute(final Runnable task) {
+            task.run();
+        }
+    };
+
+    private static final ProtocolMessage FIRST_ROLL = ProtocolMessage.roll(0);
+
+    @Param({"2", "4"})
+    public int players;
+
+    /**
+     * The order each player tries the slots in.
+     */
+    private int[][] preferences;
+
+    private SplittableRandom seeds;
+
+    /**
+     * A game one round in, for score requests.
+     */
+    private GameSession live;
+
+    private ProtocolMessage[] scoreRequests;
+
+    private Seat[] liveSeats;
+
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        final SplittableRandom random = new SplittableRandom(42);
+        this.preferences = new int[this.players][ScoringTable.CATEGORIES];
+        for (final int[] order : this.preferences) {
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            for (int i = order.length - 1; i > 0; i--) {
+                final int j = random.nextInt(i + 1);
+                final int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+        }
+        this.seeds = new SplittableRandom(random.nextLong());
+
+        this.liveSeats = this.seat();
+        this.live = this.open(this.liveSeats, random.nextLong());
+        this.playRound(this.live, this.liveSeats);
+        this.scoreRequests = new ProtocolMessage[this.players];
+        for (int player = 0; player < this.players; player++) {
+            this.scoreRequests[player] = ProtocolMessage.scoreRequest(FIRST_PLAYER + player);
+        }
+    }
+
+    /**
+     * A whole game, from the first roll to the game over message naming the winner.
+     */
+    @Benchmark
+    public int fullGame() throws IOException {
+        final Seat[] seats = this.seat();
+        final GameSession session = this.open(seats, this.seeds.nextLong());
+        while (!session.isFinished()) {
+            this.playRound(session, seats);
+        }
+        return seats[0].winner;
+    }
+
+    @Benchmark
+    public int scoreForPlayer() {
+        final int player = this.next++ % this.players;
+        this.live.handle(this.scoreRequests[player], FIRST_PLAYER + player);
+        return this.liveSeats[player].score;
+    }
+
+    private Seat[] seat() {
+        final Seat[] seats = new Seat[this.players];
+        for (int player = 0; player < this.players; player++) {
+            seats[player] = new Seat(FIRST_PLAYER + player);
+        }
+        return seats;
+    }
+
+    private GameSession open(final Seat[] seats, final long seed) throws IOException {
+        final GameSession session = new GameSession(null, 1, seats.length, CALLER, seed, new NullTracer());
+        for (final Seat seat : seats) {
+            session.addPlayer(seat);
+        }
+        session.start();
+        return session;
+    }
+
+    /**
+     * Each player rolls once and submits their dice to the first open slot they prefer.
+     */
+    private void playRound(final GameSession session, final Seat[] seats) {
+        for (int player = 0; player < seats.length && !session.isFinished(); player++) {
+            final Seat seat = seats[player];
+            session.handle(FIRST_ROLL, seat.uid);
+            for (final int category : this.preferences[player]) {
+                final boolean upper = category < ScoringTable.UPPER_CATEGORIES;
+                final int part = upper ? 0 : 1;
+                final int area = upper ? category : category - ScoringTable.UPPER_CATEGORIES;
+                seat.retry = false;
+                session.handle(ProtocolMessage.submit(part, area, ScoringTable.score(seat.dice, part, area)), seat.uid);
+                if (!seat.retry) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * A player's connection, keeping only what the benchmark needs from the messages sent to it.
+     */
+    private static final class Seat implements PlayerConnection {
+
+        private final int uid;
+
+        private final int[] dice = new int[ScoringTable.DICE];
+
+        private boolean retry;
+
+        private int score;
+
+        private int winner;
+
+        private Seat(final int uid) {
+            this.uid = uid;
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void send(final OutboundMessage message) {
+            final ProtocolMessage sent = message.getMessage();
+            if (sent.type == ProtocolMessage.ROLLED) {
+                ProtocolMessage.unpackDice(sent.dice, this.dice);
+            } else if (sent.type == ProtocolMessage.RETRY) {
+                this.retry = true;
+            } else if (sent.type == ProtocolMessage.SCORE_RESPONSE) {
+                this.score = sent.score;
+            } else if (sent.type == ProtocolMessage.GAME_OVER) {
+                this.winner = sent.playerID;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public int getUID() {
+            return this.uid;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package ca.carleton.comp3004.benchmarks;
+
+import ca.carleton.comp3004.util.BinaryCodec;
+import ca.carleton.comp3004.util.MalformedMessageException;
+import ca.carleton.comp3004.util.ProtocolMessage;
+import ca.carleton.comp3004.util.TextCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the commands a client sends, which {@code ServerNetwork.handle} used to do with string splitting and now the
+ * codecs do for every connection: a text line from the bytes read, or a binary frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CodecBenchmark {
+
+    @Param({"SUBMIT_1_2_25", "SCORE_54321", "ROLL_13", "UPDATE_54321_0_5_18"})
+    public String command;
+
+    private final TextCodec codec = new TextCodec();
+
+    private final ProtocolMessage message = new ProtocolMessage();
+
+    private byte[] text;
+
+    private ByteBuffer binary;
+
+    @Setup
+    public void setUp() throws MalformedMessageException {
+        this.text = this.command.getBytes(StandardCharsets.US_ASCII);
+        this.codec.decode(this.command, this.message);
+        this.binary = ByteBuffer.wrap(BinaryCodec.encode(this.message));
+    }
+
+    @Benchmark
+    public ProtocolMessage decodeText() throws MalformedMessageException {
+        this.codec.decode(this.text, 0, this.text.length, this.message);
+        return this.message;
+    }
+
+    @Benchmark
+    public ProtocolMessage decodeBinary() throws ProtocolException {
+        this.binary.rewind();
+        BinaryCodec.decode(this.binary, this.message);
+        return this.message;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeText() {
+        return this.codec.encode(this.message);
+    }
+}
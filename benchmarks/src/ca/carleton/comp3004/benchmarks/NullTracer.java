@@ -0,0 +1,39 @@
+package ca.carleton.comp3004.benchmarks;
+
+import yahtzeeTrace.ScoreType;
+import yahtzeeTrace.YahtzeeTrace;
+
+import java.util.Collection;
+
+/**
+ * A tracer that does nothing, for benchmarks that should not measure the tracing.
+ */
+final class NullTracer implements YahtzeeTrace {
+
+    @Override
+    public void traceNewGame(final int numPlayers) {
+    }
+
+    @Override
+    public void traceScore(final int round, final int player, final Collection<Integer> dice, final int score,
+                           final ScoreType type) {
+    }
+
+    @Override
+    public void traceScore(final int round, final int player, final int[] dice, final int score,
+                           final ScoreType type) {
+    }
+
+    @Override
+    public void tracePlayerDropped(final int player) {
+    }
+
+    @Override
+    public void tracePlayerTotal(final int player, final int subtotal_top, final int bonus_top, final int top_total,
+                                 final int bottom_bonus, final int bottom_total, final int total_score) {
+    }
+
+    @Override
+    public void traceEndGame() {
+    }
+}
@@ -0,0 +1,72 @@
+package ca.carleton.comp3004.benchmarks;
+
+import ca.carleton.comp3004.util.ScoringTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring a roll, as the client does after every throw to show what each category is worth (this replaced the old
+ * {@code hasFullHouse}, {@code hasSmallStraight} and {@code getRollFrequency} checks) and as the server does to check
+ * each submission.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ScoringBenchmark {
+
+    private static final int ROLLS = 1024;
+
+    private final int[][] rolls = new int[ROLLS][ScoringTable.DICE];
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final SplittableRandom random = new SplittableRandom(42);
+        for (final int[] roll : this.rolls) {
+            for (int i = 0; i < roll.length; i++) {
+                roll[i] = random.nextInt(1, ScoringTable.FACES + 1);
+            }
+        }
+    }
+
+    /**
+     * Every category's score for one roll, what the client works out to fill in the score panel.
+     */
+    @Benchmark
+    public void scoreAllCategories(final Blackhole blackhole) {
+        final int code = ScoringTable.code(this.nextRoll());
+        for (int category = 0; category < ScoringTable.CATEGORIES; category++) {
+            blackhole.consume(ScoringTable.score(code, category));
+        }
+    }
+
+    /**
+     * One slot's score for one roll, what the server checks a submission against.
+     */
+    @Benchmark
+    public int checkSubmission() {
+        final int slot = this.next % ScoringTable.CATEGORIES;
+        final boolean upper = slot < ScoringTable.UPPER_CATEGORIES;
+        return ScoringTable.score(this.nextRoll(), upper ? 0 : 1, upper ? slot : slot - ScoringTable.UPPER_CATEGORIES);
+    }
+
+    private int[] nextRoll() {
+        return this.rolls[this.next++ & (ROLLS - 1)];
+    }
+}
@@ -0,0 +1,195 @@
+package ca.carleton.comp3004.benchmarks;
+
+import ca.carleton.comp3004.util.ScoringTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import yahtzeeTrace.BinaryYahtzeeTracer;
+import yahtzeeTrace.ScoreType;
+import yahtzeeTrace.ScoreTypeConverter;
+import yahtzeeTrace.StreamingYahtzeeTracer;
+import yahtzeeTrace.YahtzeeTrace;
+import yahtzeeTrace.YahtzeeTracer;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracing a game the size the server plays: every player's score for all {@value #ROUNDS} rounds, then the totals, as
+ * {@code YahtzeeGame} reports them.
+ * <p/>
+ * {@link #endGame()} and {@link #streamGame()} write real trace files under {@code traceFiles}. The files they add are
+ * deleted and the trace counter put back after each iteration, so the traces already there and the numbering are left
+ * as they were.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TracerBenchmark {
+
+    private static final int ROUNDS = 13;
+
+    private static final int FIRST_PLAYER = 50000;
+
+    @Param({"2", "4"})
+    public int players;
+
+    private int[][] dice;
+
+    private YahtzeeTracer playedGame;
+
+    private int next;
+
+    private byte[] counter;
+
+    /**
+     * The trace files there before the benchmark.
+     */
+    private final Set<String> traces = new HashSet<String>();
+
+    private Path archive;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final SplittableRandom random = new SplittableRandom(42);
+        this.dice = new int[ROUNDS * this.players][ScoringTable.DICE];
+        for (final int[] roll : this.dice) {
+            for (int i = 0; i < roll.length; i++) {
+                roll[i] = random.nextInt(1, ScoringTable.FACES + 1);
+            }
+        }
+        this.playedGame = this.traceGame();
+        this.archive = Files.createTempFile("yahtzee-benchmark", ".bin");
+
+        final Path config = Paths.get(YahtzeeTracer.configFile);
+        this.counter = Files.exists(config) ? Files.readAllBytes(config) : null;
+        Files.createDirectories(config.getParent());
+        try (DirectoryStream<Path> traces = Files.newDirectoryStream(config.getParent(), "yahtzeeOut*.xml")) {
+            for (final Path trace : traces) {
+                this.traces.add(trace.getFileName().toString());
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(this.archive);
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeTraceFiles() throws IOException {
+        try (DirectoryStream<Path> traces = Files.newDirectoryStream(Paths.get(YahtzeeTracer.configDirectory),
+                "yahtzeeOut*.xml")) {
+            for (final Path trace : traces) {
+                if (!this.traces.contains(trace.getFileName().toString())) {
+                    Files.delete(trace);
+                }
+            }
+        }
+        final Path config = Paths.get(YahtzeeTracer.configFile);
+        if (this.counter == null) {
+            Files.deleteIfExists(config);
+        } else {
+            Files.write(config, this.counter);
+        }
+    }
+
+    /**
+     * Build a whole game's trace in memory.
+     */
+    @Benchmark
+    public YahtzeeTracer traceScores() {
+        return this.traceGame();
+    }
+
+    /**
+     * Find a round in a finished game, which every traced score starts with.
+     */
+    @Benchmark
+    public Object getRound() {
+        return this.playedGame.getRound(1 + this.next++ % ROUNDS);
+    }
+
+    /**
+     * Write a finished game's trace file.
+     */
+    @Benchmark
+    public YahtzeeTracer endGame() {
+        this.playedGame.traceEndGame();
+        return this.playedGame;
+    }
+
+    /**
+     * Trace a whole game straight to its file, which the DOM tracer splits between {@link #traceScores()} and
+     * {@link #endGame()}.
+     */
+    @Benchmark
+    public YahtzeeTrace streamGame() {
+        final StreamingYahtzeeTracer tracer = new StreamingYahtzeeTracer();
+        this.traceGame(tracer);
+        tracer.traceEndGame();
+        return tracer;
+    }
+
+    /**
+     * Append a whole game to a gzipped binary archive instead.
+     */
+    @Benchmark
+    public YahtzeeTrace archiveGame() {
+        final BinaryYahtzeeTracer tracer = new BinaryYahtzeeTracer(this.archive.toString(), true);
+        this.traceGame(tracer);
+        tracer.traceEndGame();
+        return tracer;
+    }
+
+    @Benchmark
+    public ScoreType convertScoreType() {
+        final int slot = this.next++ % ScoringTable.CATEGORIES;
+        final boolean upper = slot < ScoringTable.UPPER_CATEGORIES;
+        return ScoreTypeConverter.getScoreTypeFromInt(upper ? 0 : 1, upper ? slot : slot - ScoringTable.UPPER_CATEGORIES);
+    }
+
+    private YahtzeeTracer traceGame() {
+        final YahtzeeTracer tracer = new YahtzeeTracer();
+        this.traceGame(tracer);
+        return tracer;
+    }
+
+    private void traceGame(final YahtzeeTrace tracer) {
+        tracer.traceNewGame(this.players);
+        for (int round = 1; round <= ROUNDS; round++) {
+            for (int player = 0; player < this.players; player++) {
+                final int slot = (round - 1 + player) % ScoringTable.CATEGORIES;
+                final boolean upper = slot < ScoringTable.UPPER_CATEGORIES;
+                final int part = upper ? 0 : 1;
+                final int area = upper ? slot : slot - ScoringTable.UPPER_CATEGORIES;
+                final int[] roll = this.dice[(round - 1) * this.players + player];
+                tracer.traceScore(round, FIRST_PLAYER + player, roll, ScoringTable.score(roll, part, area),
+                        ScoreTypeConverter.getScoreTypeFromInt(part, area));
+            }
+        }
+        for (int player = 0; player < this.players; player++) {
+            tracer.tracePlayerTotal(FIRST_PLAYER + player, 60, 0, 60, 0, 120, 180);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package ca.carleton.comp3004.bot;
+
+import ca.carleton.comp3004.solver.ExpectedValueTable;
+import ca.carleton.comp3004.util.ProtocolMessage;
+import ca.carleton.comp3004.util.ScoringTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A computer player. Follows a game the way the GUI client does, asking its {@link Strategy} whenever a person would
+ * have to decide: rolls on START and ROUND_START, scores once the dice are kept or the throws run out, submits no score
+ * when nothing open is worth anything, picks again with the same dice on a RETRY and leaves on OVER. Like the GUI it
+ * asks the server for its score after every submission.
+ * <p/>
+ * A bot is only ever touched by its event loop, so its state is kept in plain fields. After each game it connects
+ * again until it has played all of its games. Given a think time, it waits that long before each roll or submission,
+ * during which its loop gets on with the other bots.
+ */
+final class Bot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Bot.class);
+
+    private static final int ALL_DICE = (1 << ScoringTable.DICE) - 1;
+
+    private static final int ALL_CATEGORIES = (1 << ScoringTable.CATEGORIES) - 1;
+
+    private static final int ROLLS_PER_ROUND = 3;
+
+    private final Strategy strategy;
+
+    private final BotRunner.Tally tally;
+
+    private final BotEventLoop loop;
+
+    private final BotListener listener;
+
+    private final long thinkNanos;
+
+    private final int[] dice = new int[ScoringTable.DICE];
+
+    private int gamesLeft;
+
+    private BotConnection connection;
+
+    private int rollsLeft;
+
+    /**
+     * Categories taken by anyone.
+     */
+    private int filled;
+
+    private int upper;
+
+    private int total;
+
+    /**
+     * @param strategy   how to play.
+     * @param tally      where to count the results.
+     * @param loop       the loop to play on.
+     * @param games      how many games to play.
+     * @param listener   told about every message, {@link BotListener#NONE} if nothing is.
+     * @param thinkNanos how long to wait before each roll or submission.
+     */
+    Bot(final Strategy strategy, final BotRunner.Tally tally, final BotEventLoop loop, final int games,
+        final BotListener listener, final long thinkNanos) {
+        this.strategy = strategy;
+        this.tally = tally;
+        this.loop = loop;
+        this.gamesLeft = games;
+        this.listener = listener;
+        this.thinkNanos = thinkNanos;
+    }
+
+    /**
+     * Connect for the next game.
+     */
+    void play() {
+        this.rollsLeft = 0;
+        this.filled = 0;
+        this.upper = 0;
+        this.total = 0;
+        this.loop.connect(this);
+    }
+
+    /**
+     * Called by the connection once the socket is open.
+     *
+     * @param connection the connection to the server.
+     */
+    void connected(final BotConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @param message a message from the server.
+     */
+    void handle(final ProtocolMessage message) {
+        final int uid = this.connection.getUID();
+        LOG.debug("Bot {} received {}.", uid, message);
+        this.listener.received(uid, message);
+        if (message.type == ProtocolMessage.START || message.type == ProtocolMessage.NEXT_ROUND) {
+            this.rollsLeft = ROLLS_PER_ROUND;
+            this.act(ProtocolMessage.roll(0));
+        } else if (message.type == ProtocolMessage.ROLLED) {
+            ProtocolMessage.unpackDice(message.dice, this.dice);
+            this.rolled();
+        } else if (message.type == ProtocolMessage.UPDATE) {
+            final int category = ScoringTable.category(message.scoringPart, message.scoringArea);
+            if (category >= 0) {
+                this.filled |= 1 << category;
+                if (message.playerID == uid) {
+                    this.total += message.score;
+                    if (category < ScoringTable.UPPER_CATEGORIES) {
+                        this.upper += message.score;
+                    }
+                }
+            }
+        } else if (message.type == ProtocolMessage.RETRY && message.playerID == uid) {
+            this.submit();
+        } else if (message.type == ProtocolMessage.GAME_OVER) {
+            this.gameOver(message.playerID == uid);
+        } else if (message.type == ProtocolMessage.QUIT) {
+            this.dropped("server quit");
+        }
+    }
+
+    /**
+     * Called by the connection if it ends before the game does.
+     *
+     * @param reason why.
+     */
+    void dropped(final String reason) {
+        LOG.warn("Bot {} left its game: {}.", this.connection == null ? "-" : this.connection.getUID(), reason);
+        this.connection = null;
+        this.gamesLeft = 0;
+        this.tally.failed(this.strategy);
+    }
+
+    private void rolled() {
+        this.rollsLeft--;
+        if (this.rollsLeft > 0 && this.filled != ALL_CATEGORIES) {
+            final int held = this.strategy.hold(this.dice, this.rollsLeft, this.filled, this.upper);
+            if (held != ALL_DICE) {
+                this.act(ProtocolMessage.roll(held));
+                return;
+            }
+        }
+        this.submit();
+    }
+
+    private void submit() {
+        final int code = ScoringTable.code(this.dice);
+        int closed = this.filled;
+        for (int category = 0; category < ScoringTable.CATEGORIES; category++) {
+            if (ScoringTable.score(code, category) == 0) {
+                closed |= 1 << category;
+            }
+        }
+        final ProtocolMessage submission;
+        if (closed == ALL_CATEGORIES) {
+            submission = ProtocolMessage.submit(-1, -1, 0);
+        } else {
+            final int category = this.strategy.category(this.dice, closed, this.upper);
+            final boolean upperArea = category < ScoringTable.UPPER_CATEGORIES;
+            submission = ProtocolMessage.submit(upperArea ? 0 : 1,
+                    upperArea ? category : category - ScoringTable.UPPER_CATEGORIES,
+                    ScoringTable.score(code, category));
+        }
+        this.act(submission, ProtocolMessage.scoreRequest(this.connection.getUID()));
+    }
+
+    /**
+     * Send messages once the think time is up. They go to the connection of the moment, so if the game ends meanwhile
+     * they are dropped rather than sent to the next one.
+     */
+    private void act(final ProtocolMessage... messages) {
+        final BotConnection target = this.connection;
+        if (this.thinkNanos == 0) {
+            this.send(target, messages);
+            return;
+        }
+        this.loop.schedule(new Runnable() {
+            @Override
+            public void run() {
+                Bot.this.send(target, messages);
+            }
+        }, this.thinkNanos);
+    }
+
+    private void send(final BotConnection target, final ProtocolMessage[] messages) {
+        for (final ProtocolMessage message : messages) {
+            if (!target.isOpen()) {
+                return;
+            }
+            this.listener.sent(target.getUID(), message);
+            target.send(message);
+        }
+    }
+
+    private void gameOver(final boolean won) {
+        // The final SCORE reply can arrive after OVER, so the score is counted from the board as the ledger does.
+        final int score = this.total
+                + (this.upper >= ExpectedValueTable.UPPER_CAP ? ExpectedValueTable.UPPER_BONUS : 0);
+        LOG.debug("Bot {} finished with {}{}.", this.connection.getUID(), score, won ? ", winning" : "");
+        this.connection.close();
+        this.connection = null;
+        this.gamesLeft--;
+        this.tally.finished(this.strategy, won, score, this.gamesLeft == 0);
+        if (this.gamesLeft > 0) {
+            this.play();
+        }
+    }
+}
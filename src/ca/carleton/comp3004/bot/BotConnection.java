@@ -0,0 +1,238 @@
+package ca.carleton.comp3004.bot;
+
+import ca.carleton.comp3004.util.BinaryCodec;
+import ca.carleton.comp3004.util.Config;
+import ca.carleton.comp3004.util.MalformedMessageException;
+import ca.carleton.comp3004.util.NetworkConstants;
+import ca.carleton.comp3004.util.OutboundMessage;
+import ca.carleton.comp3004.util.ProtocolMessage;
+import ca.carleton.comp3004.util.TextCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * One bot's connection to the server, the non-blocking counterpart of the GUI's
+ * {@link ca.carleton.comp3004.client.app.net.ClientNetwork}: it offers the binary protocol with a HELLO as soon as it
+ * is connected and frames text lines and binary messages alike out of its read buffer.
+ * <p/>
+ * Everything happens on the owning {@link BotEventLoop}, bot included, so nothing here is locked. Outgoing messages go
+ * into one buffer that is written straight away and only waits for the selector when the socket is full.
+ */
+final class BotConnection {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BotConnection.class);
+
+    private static final int OUTBOUND_CAPACITY = 1024;
+
+    private final Bot bot;
+
+    private final SocketChannel channel;
+
+    private final ByteBuffer in = ByteBuffer.allocate(Config.MAX_LINE_LENGTH);
+
+    private ByteBuffer out = ByteBuffer.allocate(OUTBOUND_CAPACITY);
+
+    private final ProtocolMessage message = new ProtocolMessage();
+
+    private final TextCodec decoder = new TextCodec();
+
+    private int UID;
+
+    private boolean binary;
+
+    private SelectionKey key;
+
+    private boolean done;
+
+    /**
+     * Set once a write fails. The server has closed, but may have said why first.
+     */
+    private boolean broken;
+
+    BotConnection(final Bot bot, final SocketAddress server) throws IOException {
+        this.bot = bot;
+        this.channel = SocketChannel.open();
+        this.channel.configureBlocking(false);
+        this.channel.setOption(StandardSocketOptions.TCP_NODELAY, Config.TCP_NO_DELAY);
+        this.channel.connect(server);
+    }
+
+    int getUID() {
+        return this.UID;
+    }
+
+    /**
+     * @return false once the connection has been closed or has failed.
+     */
+    boolean isOpen() {
+        return !this.done && !this.broken;
+    }
+
+    /**
+     * Called on the loop thread to attach the channel to its selector.
+     *
+     * @param selector the loop's selector.
+     */
+    void register(final Selector selector) {
+        try {
+            this.key = this.channel.register(selector, SelectionKey.OP_CONNECT, this);
+        } catch (final ClosedChannelException exception) {
+            this.dropped("channel closed before registration");
+        }
+    }
+
+    void onConnectable() {
+        try {
+            if (!this.channel.finishConnect()) {
+                return;
+            }
+            this.UID = ((InetSocketAddress) this.channel.getLocalAddress()).getPort();
+        } catch (final IOException exception) {
+            this.dropped("unable to connect - " + exception.getMessage());
+            return;
+        }
+        this.key.interestOps(SelectionKey.OP_READ);
+        this.bot.connected(this);
+        if (Config.BINARY_PROTOCOL) {
+            this.send(ProtocolMessage.hello(NetworkConstants.BINARY_PROTOCOL_VERSION));
+        }
+    }
+
+    /**
+     * Read what is available and pass every complete message to the bot.
+     */
+    void onReadable() {
+        try {
+            if (this.channel.read(this.in) < 0) {
+                this.dropped("connection closed by the server");
+                return;
+            }
+        } catch (final IOException exception) {
+            this.dropped("error reading input - connection may be closed");
+            return;
+        }
+
+        this.in.flip();
+        final byte[] bytes = this.in.array();
+        while (this.in.hasRemaining() && !this.done) {
+            final int start = this.in.position();
+            if (BinaryCodec.isBinary(bytes[start])) {
+                try {
+                    if (!BinaryCodec.decode(this.in, this.message)) {
+                        break;
+                    }
+                } catch (final ProtocolException exception) {
+                    this.dropped(exception.getMessage());
+                    return;
+                }
+            } else {
+                int end = start;
+                while (end < this.in.limit() && bytes[end] != '\n') {
+                    end++;
+                }
+                if (end == this.in.limit()) {
+                    break;
+                }
+                this.in.position(end + 1);
+                if (end > start && bytes[end - 1] == '\r') {
+                    end--;
+                }
+                try {
+                    this.decoder.decode(bytes, start, end - start, this.message);
+                } catch (final MalformedMessageException exception) {
+                    LOG.warn("Bot {}. {}", this.UID, exception.getMessage());
+                    continue;
+                }
+            }
+
+            if (this.message.type == ProtocolMessage.HELLO) {
+                // The server echoed our HELLO: everything from here on is binary in both directions.
+                this.binary = this.message.version == NetworkConstants.BINARY_PROTOCOL_VERSION;
+            } else {
+                this.bot.handle(this.message);
+            }
+        }
+        this.in.compact();
+
+        if (!this.done && !this.in.hasRemaining()) {
+            this.dropped("line longer than " + Config.MAX_LINE_LENGTH + " bytes");
+        }
+    }
+
+    /**
+     * Queue a message and write as much as the socket will take.
+     *
+     * @param message the message.
+     */
+    void send(final ProtocolMessage message) {
+        if (this.done || this.broken) {
+            return;
+        }
+        final ByteBuffer bytes = OutboundMessage.of(message).buffer(this.binary);
+        if (this.out.remaining() < bytes.remaining()) {
+            final ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * this.out.capacity(),
+                    this.out.position() + bytes.remaining()));
+            this.out.flip();
+            this.out = larger.put(this.out);
+        }
+        this.out.put(bytes);
+        this.onWritable();
+    }
+
+    void onWritable() {
+        if (this.done || this.broken) {
+            return;
+        }
+        this.out.flip();
+        try {
+            this.channel.write(this.out);
+        } catch (final IOException exception) {
+            // A game can end while a bot is still rolling, so this is often the server closing after OVER. Leave it to
+            // the reads to deliver what was sent before the close and then report it.
+            LOG.debug("Bot {}. Error writing output - {}.", this.UID, exception.getMessage());
+            this.broken = true;
+            this.out.clear();
+            this.key.interestOps(SelectionKey.OP_READ);
+            return;
+        }
+        final boolean pending = this.out.hasRemaining();
+        this.out.compact();
+        // Socket buffer full: wait to be told it is writable again.
+        this.key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    /**
+     * Close the connection, the game being over.
+     */
+    void close() {
+        this.done = true;
+        try {
+            this.channel.close();
+        } catch (final IOException exception) {
+            LOG.error("Error closing bot channel!", exception);
+        }
+    }
+
+    private void dropped(final String reason) {
+        if (this.done) {
+            return;
+        }
+        this.close();
+        this.bot.dropped(reason);
+    }
+
+    public String toString() {
+        return "BotConnection : " + this.UID;
+    }
+}
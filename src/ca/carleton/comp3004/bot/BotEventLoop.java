@@ -0,0 +1,166 @@
+package ca.carleton.comp3004.bot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A selector thread playing a share of the bots, as the server's NIO event loops serve a share of the clients.
+ * <p/>
+ * Connections are requested through a queue and opened here, so a bot and its connection only ever run on this thread.
+ * Delayed work, such as a bot's think time, is kept in a timer queue and run between selects.
+ */
+final class BotEventLoop extends Thread {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BotEventLoop.class);
+
+    private final Selector selector;
+
+    private final SocketAddress server;
+
+    private final Queue<Bot> connections = new ConcurrentLinkedQueue<Bot>();
+
+    private final PriorityQueue<Timer> timers = new PriorityQueue<Timer>();
+
+    private long timersScheduled;
+
+    private volatile boolean done;
+
+    BotEventLoop(final int index, final SocketAddress server) throws IOException {
+        super("bot-loop-" + index);
+        this.selector = Selector.open();
+        this.server = server;
+        this.setDaemon(true);
+    }
+
+    /**
+     * Open a new connection for a bot.
+     *
+     * @param bot the bot.
+     */
+    void connect(final Bot bot) {
+        this.connections.add(bot);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Run something on the loop later. Must be called from the loop itself.
+     *
+     * @param task       what to run.
+     * @param delayNanos how long from now.
+     */
+    void schedule(final Runnable task, final long delayNanos) {
+        this.timers.add(new Timer(System.nanoTime() + delayNanos, this.timersScheduled++, task));
+    }
+
+    /**
+     * Stop the loop and close its selector.
+     */
+    void shutdown() {
+        this.done = true;
+        this.selector.wakeup();
+    }
+
+    public void run() {
+        LOG.info("{} running.", this.getName());
+        while (!this.done) {
+            try {
+                final Timer next = this.timers.peek();
+                if (next == null) {
+                    this.selector.select();
+                } else {
+                    final long wait = next.deadline - System.nanoTime();
+                    if (wait > 0) {
+                        this.selector.select(Math.max(1, (wait + 999999) / 1000000));
+                    } else {
+                        this.selector.selectNow();
+                    }
+                }
+                this.processConnections();
+                this.processTimers();
+
+                final Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    final BotConnection connection = (BotConnection) key.attachment();
+                    try {
+                        if (key.isConnectable()) {
+                            connection.onConnectable();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.onWritable();
+                        }
+                    } catch (final CancelledKeyException exception) {
+                        // Closed while selected, nothing left to do.
+                    }
+                }
+            } catch (final IOException exception) {
+                LOG.error("Selector failure in {}.", this.getName(), exception);
+            }
+        }
+
+        try {
+            this.selector.close();
+        } catch (final IOException exception) {
+            LOG.error("Error closing selector.", exception);
+        }
+    }
+
+    private void processTimers() {
+        final long now = System.nanoTime();
+        while (!this.timers.isEmpty() && this.timers.peek().deadline - now <= 0) {
+            this.timers.poll().task.run();
+        }
+    }
+
+    private void processConnections() {
+        Bot bot;
+        while ((bot = this.connections.poll()) != null) {
+            try {
+                new BotConnection(bot, this.server).register(this.selector);
+            } catch (final IOException exception) {
+                bot.dropped("unable to connect - " + exception.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A task due at a given time; tasks due at the same time run in the order they were scheduled.
+     */
+    private static final class Timer implements Comparable<Timer> {
+
+        private final long deadline;
+
+        private final long sequence;
+
+        private final Runnable task;
+
+        private Timer(final long deadline, final long sequence, final Runnable task) {
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(final Timer other) {
+            final long difference = this.deadline - other.deadline;
+            if (difference != 0) {
+                return difference < 0 ? -1 : 1;
+            }
+            return this.sequence < other.sequence ? -1 : this.sequence == other.sequence ? 0 : 1;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ca.carleton.comp3004.bot;
+
+import ca.carleton.comp3004.util.ProtocolMessage;
+
+/**
+ * Watches the messages of one bot, e.g. to time the server's replies. Called on the bot's event loop, so it needs no
+ * locking of its own, but must not keep the message: it is reused for the next one.
+ */
+interface BotListener {
+
+    BotListener NONE = new BotListener() {
+        @Override
+        public void sent(final int uid, final ProtocolMessage message) {
+        }
+
+        @Override
+        public void received(final int uid, final ProtocolMessage message) {
+        }
+    };
+
+    /**
+     * @param uid     the bot's connection ID.
+     * @param message a message just sent to the server.
+     */
+    void sent(int uid, ProtocolMessage message);
+
+    /**
+     * @param uid     the bot's connection ID.
+     * @param message a message just received from the server.
+     */
+    void received(int uid, ProtocolMessage message);
+}
@@ -0,0 +1,199 @@
+package ca.carleton.comp3004.bot;
+
+import ca.carleton.comp3004.solver.Solver;
+import ca.carleton.comp3004.util.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Main class for computer players: fills tables on a server, or soak-tests it, from one process.
+ * <p/>
+ * Bots speak the same protocol as the GUI client, but share a few selector threads instead of a thread each, so one
+ * runner can host thousands of them:
+ * <p/>
+ * {@code java ca.carleton.comp3004.bot.BotRunner [--bots=N] [--games=N] [--strategy=random,greedy,solver]
+ * [--loops=N] [--host=H] [--port=N]}
+ * <p/>
+ * Each bot plays {@code --games} games in a row, reconnecting after each one. With several strategies the bots take
+ * them in turn. When every bot is done the games played, won and the mean score of each strategy are logged.
+ */
+public class BotRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BotRunner.class);
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int bots = Config.DEFAULT_NUMBER_OF_PLAYERS;
+        int games = 1;
+        int loops = Config.NIO_EVENT_LOOPS;
+        String host = Config.DEFAULT_HOST;
+        int port = Config.DEFAULT_PORT;
+        String[] names = {"greedy"};
+        for (final String arg : args) {
+            if (arg.startsWith("--bots=")) {
+                bots = Integer.parseInt(arg.substring("--bots=".length()));
+            } else if (arg.startsWith("--games=")) {
+                games = Integer.parseInt(arg.substring("--games=".length()));
+            } else if (arg.startsWith("--loops=")) {
+                loops = Integer.parseInt(arg.substring("--loops=".length()));
+            } else if (arg.startsWith("--host=")) {
+                host = arg.substring("--host=".length());
+            } else if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--strategy=")) {
+                names = arg.substring("--strategy=".length()).split(",");
+            } else {
+                LOG.warn("Ignoring unknown argument {}.", arg);
+            }
+        }
+
+        final Strategy[] strategies = new Strategy[names.length];
+        for (int i = 0; i < names.length; i++) {
+            strategies[i] = strategy(names[i]);
+        }
+        final Tally tally = new Tally(names, strategies, bots);
+
+        final BotEventLoop[] eventLoops = new BotEventLoop[Math.max(1, loops)];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new BotEventLoop(i, new InetSocketAddress(host, port));
+            eventLoops[i].start();
+        }
+
+        LOG.info("Starting {} bots for {} game(s) each against {}:{}.", bots, games, host, port);
+        final long start = System.nanoTime();
+        for (int i = 0; i < bots; i++) {
+            new Bot(strategies[i % strategies.length], tally, eventLoops[i % eventLoops.length], games,
+                    BotListener.NONE, 0).play();
+        }
+        tally.await();
+        LOG.info("All bots done in {} ms.", (System.nanoTime() - start) / 1000000);
+        tally.log();
+
+        for (final BotEventLoop loop : eventLoops) {
+            loop.shutdown();
+        }
+    }
+
+    /**
+     * @param name random, greedy or solver.
+     * @return the strategy.
+     * @throws IOException if the solver's table cannot be loaded.
+     */
+    static Strategy strategy(final String name) throws IOException {
+        final String trimmed = name.trim();
+        if (trimmed.equals("random")) {
+            return new RandomStrategy();
+        } else if (trimmed.equals("greedy")) {
+            return new GreedyStrategy();
+        } else if (trimmed.equals("solver")) {
+            return new SolverStrategy(Solver.load(Paths.get(Config.SOLVER_TABLE)));
+        }
+        throw new IllegalArgumentException("No strategy called " + trimmed + ".");
+    }
+
+    /**
+     * Results by strategy, added to by every event loop.
+     */
+    static final class Tally {
+
+        private final Map<Strategy, Results> results = new LinkedHashMap<Strategy, Results>();
+
+        private final CountDownLatch bots;
+
+        Tally(final String[] names, final Strategy[] strategies, final int bots) {
+            for (int i = 0; i < strategies.length; i++) {
+                this.results.put(strategies[i], new Results(names[i].trim()));
+            }
+            this.bots = new CountDownLatch(bots);
+        }
+
+        /**
+         * @param strategy the bot's strategy.
+         * @param won      whether the bot won.
+         * @param score    its final score.
+         * @param last     whether that was the bot's last game.
+         */
+        void finished(final Strategy strategy, final boolean won, final int score, final boolean last) {
+            final Results results = this.results.get(strategy);
+            results.games.incrementAndGet();
+            if (won) {
+                results.wins.incrementAndGet();
+            }
+            results.points.addAndGet(score);
+            if (last) {
+                this.bots.countDown();
+            }
+        }
+
+        /**
+         * A bot lost its connection and stopped playing.
+         *
+         * @param strategy the bot's strategy.
+         */
+        void failed(final Strategy strategy) {
+            this.results.get(strategy).failures.incrementAndGet();
+            this.bots.countDown();
+        }
+
+        void await() throws InterruptedException {
+            this.bots.await();
+        }
+
+        /**
+         * @return the games won so far, by all strategies. Every game has one winner, so when all its players are bots
+         * this is the number of games the server has finished.
+         */
+        int wins() {
+            int wins = 0;
+            for (final Results results : this.results.values()) {
+                wins += results.wins.get();
+            }
+            return wins;
+        }
+
+        /**
+         * @return the bots that lost their connection so far.
+         */
+        int failures() {
+            int failures = 0;
+            for (final Results results : this.results.values()) {
+                failures += results.failures.get();
+            }
+            return failures;
+        }
+
+        void log() {
+            for (final Results results : this.results.values()) {
+                final int games = results.games.get();
+                LOG.info("{}: {} games, {} won, mean score {}, {} bots dropped.", results.name, games,
+                        results.wins.get(), games == 0 ? 0 : String.format("%.1f", (double) results.points.get() / games),
+                        results.failures.get());
+            }
+        }
+    }
+
+    private static final class Results {
+
+        private final String name;
+
+        private final AtomicInteger games = new AtomicInteger();
+
+        private final AtomicInteger wins = new AtomicInteger();
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private final AtomicLong points = new AtomicLong();
+
+        private Results(final String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ca.carleton.comp3004.bot;
+
+import ca.carleton.comp3004.util.ScoringTable;
+
+/**
+ * Plays for the points on the table right now: keeps the largest group of equal dice (the higher face on a tie) and
+ * rolls the rest, then scores wherever the dice are worth the most. Stops rolling early only on a yahtzee.
+ */
+public class GreedyStrategy implements Strategy {
+
+    private static final int ALL_DICE = (1 << ScoringTable.DICE) - 1;
+
+    @Override
+    public int hold(final int[] dice, final int rollsLeft, final int filled, final int upper) {
+        final int code = ScoringTable.code(dice);
+        int bestFace = 1;
+        for (int face = 2; face <= ScoringTable.FACES; face++) {
+            if (ScoringTable.count(code, face) >= ScoringTable.count(code, bestFace)) {
+                bestFace = face;
+            }
+        }
+        if (ScoringTable.count(code, bestFace) == ScoringTable.DICE) {
+            return ALL_DICE;
+        }
+        int hold = 0;
+        for (int i = 0; i < dice.length; i++) {
+            if (dice[i] == bestFace) {
+                hold |= 1 << i;
+            }
+        }
+        return hold;
+    }
+
+    @Override
+    public int category(final int[] dice, final int closed, final int upper) {
+        final int code = ScoringTable.code(dice);
+        int bestCategory = -1;
+        int bestScore = -1;
+        for (int category = 0; category < ScoringTable.CATEGORIES; category++) {
+            if ((closed & (1 << category)) == 0 && ScoringTable.score(code, category) > bestScore) {
+                bestScore = ScoringTable.score(code, category);
+                bestCategory = category;
+            }
+        }
+        return bestCategory;
+    }
+}
@@ -0,0 +1,103 @@
+package ca.carleton.comp3004.bot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in log-linear buckets, in the manner of HdrHistogram: values below 128 ns are exact, and above that
+ * each power of two is split into 64 buckets, so any value read back is within 1.6% of what was recorded. The whole
+ * range of a long fits in under 4,000 buckets.
+ * <p/>
+ * Recording is a couple of atomic increments and never blocks, so every event loop can record into the same histogram.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private final String name;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    LatencyHistogram(final String name) {
+        this.name = name;
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    /**
+     * @param nanos a latency. Negative values, from a clock read on another thread, count as zero.
+     */
+    void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(index(value));
+        this.count.incrementAndGet();
+        this.total.addAndGet(value);
+        long seen = this.max.get();
+        while (value > seen && !this.max.compareAndSet(seen, value)) {
+            seen = this.max.get();
+        }
+    }
+
+    long getCount() {
+        return this.count.get();
+    }
+
+    long getMax() {
+        return this.max.get();
+    }
+
+    double getMean() {
+        final long count = this.count.get();
+        return count == 0 ? 0 : (double) this.total.get() / count;
+    }
+
+    /**
+     * @param percentile from 0 to 100.
+     * @return the largest value that could have been recorded in the bucket holding that percentile, or 0 if nothing
+     * has been recorded.
+     */
+    long getValueAtPercentile(final double percentile) {
+        final long count = this.count.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int index = 0; index < BUCKETS; index++) {
+            seen += this.counts.get(index);
+            if (seen >= rank) {
+                return Math.min(highestEquivalent(index), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    private static int index(final long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - 1 - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestEquivalent(final int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lowest = (long) (index - shift * SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,279 @@
+package ca.carleton.comp3004.bot;
+
+import ca.carleton.comp3004.util.Config;
+import ca.carleton.comp3004.util.ProtocolMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures what a server sustains: drives full games with bots and reports throughput and latencies.
+ * <p/>
+ * {@code java ca.carleton.comp3004.bot.LoadGenerator [--bots=N] [--games=N] [--think=ms] [--rate=N] [--strategy=S]
+ * [--loops=N] [--host=H] [--port=N] [--label=text] [--out=prefix]}
+ * <p/>
+ * Bots arrive {@code --rate} per second (all at once if 0) and wait {@code --think} milliseconds before every roll and
+ * submission. Three latencies are recorded, none of them counting think time:
+ * <ul>
+ * <li>submit_update: from sending a SUBMIT to seeing our own UPDATE.</li>
+ * <li>score: from sending SCORE_ to getting our score back.</li>
+ * <li>round_start: from the last submission of a round, by whichever player of the game made it, to the ROUND_START.
+ * The other players are those seen on the board.</li>
+ * </ul>
+ * The results go to {@code <prefix>.json} (settings, throughput and percentiles) and {@code <prefix>.csv} (one row of
+ * percentiles per latency), both in microseconds. {@code --label}, e.g. the server's transport, is copied into them so
+ * runs can be told apart. Games are counted by their winners, so the server should have no other players.
+ */
+public class LoadGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p99_9"};
+
+    private final LatencyHistogram submitToUpdate = new LatencyHistogram("submit_update");
+
+    private final LatencyHistogram scoreRoundTrip = new LatencyHistogram("score");
+
+    private final LatencyHistogram roundStart = new LatencyHistogram("round_start");
+
+    private final AtomicLong moves = new AtomicLong();
+
+    private final AtomicLong rolls = new AtomicLong();
+
+    /**
+     * When each connection, by ID, last submitted.
+     */
+    private final AtomicLongArray lastSubmit = new AtomicLongArray(1 << 16);
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int bots = 100;
+        int games = 1;
+        long thinkMillis = 0;
+        double rate = 0;
+        String strategyName = "greedy";
+        int loops = Config.NIO_EVENT_LOOPS;
+        String host = Config.DEFAULT_HOST;
+        int port = Config.DEFAULT_PORT;
+        String label = "";
+        String out = "load";
+        for (final String arg : args) {
+            if (arg.startsWith("--bots=")) {
+                bots = Integer.parseInt(arg.substring("--bots=".length()));
+            } else if (arg.startsWith("--games=")) {
+                games = Integer.parseInt(arg.substring("--games=".length()));
+            } else if (arg.startsWith("--think=")) {
+                thinkMillis = Long.parseLong(arg.substring("--think=".length()));
+            } else if (arg.startsWith("--rate=")) {
+                rate = Double.parseDouble(arg.substring("--rate=".length()));
+            } else if (arg.startsWith("--strategy=")) {
+                strategyName = arg.substring("--strategy=".length());
+            } else if (arg.startsWith("--loops=")) {
+                loops = Integer.parseInt(arg.substring("--loops=".length()));
+            } else if (arg.startsWith("--host=")) {
+                host = arg.substring("--host=".length());
+            } else if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--label=")) {
+                label = arg.substring("--label=".length());
+            } else if (arg.startsWith("--out=")) {
+                out = arg.substring("--out=".length());
+            } else {
+                LOG.warn("Ignoring unknown argument {}.", arg);
+            }
+        }
+
+        final Strategy strategy = BotRunner.strategy(strategyName);
+        final BotRunner.Tally tally = new BotRunner.Tally(new String[]{strategyName}, new Strategy[]{strategy}, bots);
+        final LoadGenerator generator = new LoadGenerator();
+
+        final BotEventLoop[] eventLoops = new BotEventLoop[Math.max(1, loops)];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new BotEventLoop(i, new InetSocketAddress(host, port));
+            eventLoops[i].start();
+        }
+
+        LOG.info("Starting {} bots for {} game(s) each against {}:{}, {} ms think time, {} per second.", bots, games,
+                host, port, thinkMillis, rate > 0 ? rate : "all");
+        final long start = System.nanoTime();
+        for (int i = 0; i < bots; i++) {
+            if (rate > 0) {
+                final long due = start + (long) (i * TimeUnit.SECONDS.toNanos(1) / rate);
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            new Bot(strategy, tally, eventLoops[i % eventLoops.length], games, generator.new Probe(),
+                    TimeUnit.MILLISECONDS.toNanos(thinkMillis)).play();
+        }
+        tally.await();
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        for (final BotEventLoop loop : eventLoops) {
+            loop.shutdown();
+        }
+
+        final String settings = String.format(Locale.ROOT, "{\"label\": \"%s\", \"host\": \"%s\", \"port\": %d, "
+                        + "\"bots\": %d, \"games\": %d, \"thinkMillis\": %d, \"arrivalRate\": %s, \"strategy\": \"%s\", "
+                        + "\"loops\": %d, \"binary\": %b}",
+                escape(label), escape(host), port, bots, games, thinkMillis, rate, escape(strategyName),
+                eventLoops.length, Config.BINARY_PROTOCOL);
+        generator.report(Paths.get(out + ".json"), Paths.get(out + ".csv"), label, settings, seconds,
+                tally.wins(), tally.failures());
+    }
+
+    /**
+     * Log the results and write them out.
+     */
+    private void report(final Path json, final Path csv, final String label, final String settings,
+                        final double seconds, final int games, final int failures) throws IOException {
+        final LatencyHistogram[] histograms = {this.submitToUpdate, this.scoreRoundTrip, this.roundStart};
+        final SimpleDateFormat timestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ROOT);
+        timestamp.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        LOG.info("{} games in {} s: {} games/s, {} moves/s, {} bots dropped.", games,
+                String.format(Locale.ROOT, "%.2f", seconds), String.format(Locale.ROOT, "%.1f", games / seconds),
+                String.format(Locale.ROOT, "%.1f", this.moves.get() / seconds), failures);
+
+        final StringBuilder out = new StringBuilder();
+        out.append("{\n  \"time\": \"").append(timestamp.format(new Date())).append("\",\n");
+        out.append("  \"java\": \"").append(escape(System.getProperty("java.version"))).append("\",\n");
+        out.append("  \"settings\": ").append(settings).append(",\n");
+        out.append(String.format(Locale.ROOT, "  \"throughput\": {\"seconds\": %.3f, \"games\": %d, "
+                        + "\"gamesPerSecond\": %.3f, \"moves\": %d, \"movesPerSecond\": %.3f, \"rolls\": %d, "
+                        + "\"rollsPerSecond\": %.3f, \"botsDropped\": %d},\n",
+                seconds, games, games / seconds, this.moves.get(), this.moves.get() / seconds, this.rolls.get(),
+                this.rolls.get() / seconds, failures));
+        out.append("  \"latencyMicros\": {");
+
+        final StringBuilder rows = new StringBuilder("label,metric,count,mean_us,p50_us,p90_us,p99_us,p99_9_us,max_us\n");
+        for (int i = 0; i < histograms.length; i++) {
+            final LatencyHistogram histogram = histograms[i];
+            LOG.info("{}: {} samples, mean {} us, p50 {} us, p99 {} us, p99.9 {} us, max {} us.", histogram.getName(),
+                    histogram.getCount(), micros(histogram.getMean()),
+                    micros(histogram.getValueAtPercentile(50)), micros(histogram.getValueAtPercentile(99)),
+                    micros(histogram.getValueAtPercentile(99.9)), micros(histogram.getMax()));
+
+            out.append(i == 0 ? "\n" : ",\n");
+            out.append(String.format(Locale.ROOT, "    \"%s\": {\"count\": %d, \"mean\": %s", histogram.getName(),
+                    histogram.getCount(), micros(histogram.getMean())));
+            rows.append(escapeCsv(label)).append(',').append(histogram.getName()).append(',')
+                    .append(histogram.getCount()).append(',').append(micros(histogram.getMean()));
+            for (int p = 0; p < PERCENTILES.length; p++) {
+                final String value = micros(histogram.getValueAtPercentile(PERCENTILES[p]));
+                out.append(", \"").append(PERCENTILE_NAMES[p]).append("\": ").append(value);
+                rows.append(',').append(value);
+            }
+            out.append(", \"max\": ").append(micros(histogram.getMax())).append('}');
+            rows.append(',').append(micros(histogram.getMax())).append('\n');
+        }
+        out.append("\n  }\n}\n");
+
+        Files.write(json, out.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(csv, rows.toString().getBytes(StandardCharsets.UTF_8));
+        LOG.info("Wrote {} and {}.", json, csv);
+    }
+
+    private static String micros(final double nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000);
+    }
+
+    private static String escape(final String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static String escapeCsv(final String text) {
+        return text.contains(",") || text.contains("\"") ? "\"" + text.replace("\"", "\"\"") + "\"" : text;
+    }
+
+    /**
+     * Times one bot's messages. Its bot is on a single loop, so only the shared counters need to be atomic.
+     */
+    private final class Probe implements BotListener {
+
+        private final ArrayDeque<Long> scoreRequests = new ArrayDeque<Long>();
+
+        private final int[] opponents = new int[Config.MAX_CLIENTS];
+
+        private int opponentCount;
+
+        /**
+         * When the submission still waiting for its UPDATE was sent, 0 if there is none.
+         */
+        private long submitted;
+
+        @Override
+        public void sent(final int uid, final ProtocolMessage message) {
+            final long now = System.nanoTime();
+            if (message.type == ProtocolMessage.ROLL) {
+                LoadGenerator.this.rolls.incrementAndGet();
+            } else if (message.type == ProtocolMessage.SUBMIT) {
+                LoadGenerator.this.moves.incrementAndGet();
+                LoadGenerator.this.lastSubmit.set(uid, now);
+                // No score is not put on the board, so it gets no UPDATE.
+                this.submitted = message.scoringPart < 0 ? 0 : now;
+            } else if (message.type == ProtocolMessage.SCORE_REQUEST) {
+                this.scoreRequests.add(now);
+            }
+        }
+
+        @Override
+        public void received(final int uid, final ProtocolMessage message) {
+            final long now = System.nanoTime();
+            if (message.type == ProtocolMessage.START) {
+                this.opponentCount = 0;
+                this.submitted = 0;
+                this.scoreRequests.clear();
+            } else if (message.type == ProtocolMessage.UPDATE) {
+                if (message.playerID == uid) {
+                    if (this.submitted != 0) {
+                        LoadGenerator.this.submitToUpdate.record(now - this.submitted);
+                        this.submitted = 0;
+                    }
+                } else {
+                    this.addOpponent(message.playerID);
+                }
+            } else if (message.type == ProtocolMessage.RETRY && message.playerID == uid) {
+                this.submitted = 0;
+            } else if (message.type == ProtocolMessage.SCORE_RESPONSE && message.playerID == uid) {
+                final Long requested = this.scoreRequests.poll();
+                if (requested != null) {
+                    LoadGenerator.this.scoreRoundTrip.record(now - requested);
+                }
+            } else if (message.type == ProtocolMessage.NEXT_ROUND) {
+                long last = LoadGenerator.this.lastSubmit.get(uid);
+                for (int i = 0; i < this.opponentCount; i++) {
+                    last = Math.max(last, LoadGenerator.this.lastSubmit.get(this.opponents[i]));
+                }
+                LoadGenerator.this.roundStart.record(now - last);
+            }
+        }
+
+        private void addOpponent(final int playerID) {
+            for (int i = 0; i < this.opponentCount; i++) {
+                if (this.opponents[i] == playerID) {
+                    return;
+                }
+            }
+            if (this.opponentCount < this.opponents.length) {
+                this.opponents[this.opponentCount++] = playerID;
+            }
+        }
+    }
+}
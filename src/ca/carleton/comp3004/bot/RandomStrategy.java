@@ -0,0 +1,30 @@
+package ca.carleton.comp3004.bot;
+
+import ca.carleton.comp3004.util.ScoringTable;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps any dice and scores anywhere it may, at random. The weakest player there is, and the one that wanders into the
+ * most corners of the game.
+ */
+public class RandomStrategy implements Strategy {
+
+    private static final int ALL_DICE = (1 << ScoringTable.DICE) - 1;
+
+    @Override
+    public int hold(final int[] dice, final int rollsLeft, final int filled, final int upper) {
+        return ThreadLocalRandom.current().nextInt(ALL_DICE + 1);
+    }
+
+    @Override
+    public int category(final int[] dice, final int closed, final int upper) {
+        final int open = ~closed & ((1 << ScoringTable.CATEGORIES) - 1);
+        int pick = ThreadLocalRandom.current().nextInt(Integer.bitCount(open));
+        for (int category = 0; ; category++) {
+            if ((open & (1 << category)) != 0 && pick-- == 0) {
+                return category;
+            }
+        }
+    }
+}
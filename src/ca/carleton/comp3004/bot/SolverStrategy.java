@@ -0,0 +1,26 @@
+package ca.carleton.comp3004.bot;
+
+import ca.carleton.comp3004.solver.Solver;
+
+/**
+ * Asks the {@link Solver} for every decision. The solver plays solitaire, so it treats categories taken by other
+ * players as if it had filled them itself; still by far the strongest of the strategies.
+ */
+public class SolverStrategy implements Strategy {
+
+    private final Solver solver;
+
+    public SolverStrategy(final Solver solver) {
+        this.solver = solver;
+    }
+
+    @Override
+    public int hold(final int[] dice, final int rollsLeft, final int filled, final int upper) {
+        return this.solver.bestHold(dice, rollsLeft, filled, upper);
+    }
+
+    @Override
+    public int category(final int[] dice, final int closed, final int upper) {
+        return this.solver.bestCategory(dice, closed, upper);
+    }
+}
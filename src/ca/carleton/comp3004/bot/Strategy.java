@@ -0,0 +1,31 @@
+package ca.carleton.comp3004.bot;
+
+/**
+ * How a bot plays: the two decisions a person makes at the GUI, which dice to set aside and where to score.
+ * <p/>
+ * Categories are numbered as in the {@link ca.carleton.comp3004.util.ScoringTable} and sets of them are bit masks with
+ * bit n for category n. A strategy is shared by every bot on a runner and called from several threads at once.
+ */
+public interface Strategy {
+
+    /**
+     * Which dice to keep before throwing the rest again.
+     *
+     * @param dice      the five dice.
+     * @param rollsLeft throws left this turn, 1 or 2.
+     * @param filled    the categories taken by anyone; at least one is open.
+     * @param upper     the bot's upper area subtotal.
+     * @return bit i set to keep die i. Keeping all five ends the turn.
+     */
+    int hold(int[] dice, int rollsLeft, int filled, int upper);
+
+    /**
+     * Where to score the dice.
+     *
+     * @param dice   the five dice.
+     * @param closed the categories that cannot be picked: taken, or worth nothing with these dice. At least one is open.
+     * @param upper  the bot's upper area subtotal.
+     * @return an open category.
+     */
+    int category(int[] dice, int closed, int upper);
+}
@@ -1,6 +1,7 @@
 package ca.carleton.comp3004.client.app;
 
 import ca.carleton.comp3004.client.app.net.ClientNetwork;
+import ca.carleton.comp3004.solver.TurnProbabilityEngine;
 import ca.carleton.comp3004.util.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +28,15 @@ public class ClientLauncher extends JFrame {
     private final YahtzeeClient client;
 
     public static void main(String[] args) {
+        final Thread preload = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                TurnProbabilityEngine.preload();
+            }
+        }, "odds-preload");
+        preload.setDaemon(true);
+        preload.start();
+
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
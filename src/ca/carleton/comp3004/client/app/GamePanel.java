@@ -1,5 +1,7 @@
 package ca.carleton.comp3004.client.app;
 
+import ca.carleton.comp3004.solver.TurnProbabilityEngine;
+import ca.carleton.comp3004.util.ProtocolMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,6 +55,7 @@ public class GamePanel extends JPanel {
     public void startNextRound() {
         LOG.info("Starting next round...");
         this.rollButton.setEnabled(true);
+        this.updateOdds(this.client.rollsRemaining);
     }
 
     /**
@@ -75,13 +78,34 @@ public class GamePanel extends JPanel {
      */
     public void retrySubmission() {
         LOG.info("Resetting the board for resubmission.");
-        this.disableScoring();
         this.scorePanel.reset();
-        this.resetDicePosition();
-        this.rollButton.setEnabled(true);
-        this.client.rollsRemaining = 3;
+        JOptionPane.showMessageDialog(this, "Someone else entered there! You'll need to re-submit a new score with the same dice.");
+        this.updateRoundOver();
+    }
+
+    /**
+     * Show the dice rolled by the server.
+     *
+     * @param rolled the dice, one digit per die.
+     */
+    public void updateRolled(final int rolled) {
+        final int[] values = new int[this.dice.length];
+        ProtocolMessage.unpackDice(rolled, values);
+        for (int i = 0; i < this.dice.length; i++) {
+            this.dice[i].setValue(values[i]);
+        }
+        this.updateImageIcons();
+        this.client.rollsRemaining--;
+        this.setDiceEnabled(true);
         this.updateRoundInfo();
-        JOptionPane.showMessageDialog(this, "Someone else entered there! You'll need to re-submit a new score. Please re-roll and re-score.");
+        this.updateOdds(this.client.rollsRemaining);
+        this.scoreButton.setEnabled(true);
+
+        if (this.client.rollsRemaining == 0) {
+            this.updateRoundOver();
+        } else {
+            this.rollButton.setEnabled(true);
+        }
     }
 
     /**
@@ -126,6 +150,7 @@ public class GamePanel extends JPanel {
 
         this.rollButton.setEnabled(false);
         this.client.setRollData(this.dice);
+        this.updateOdds(0);
         this.client.setPossiblePoints();
         this.enableScoring();
     }
@@ -203,6 +228,7 @@ public class GamePanel extends JPanel {
                 public void actionPerformed(final ActionEvent event) {
                     GamePanel.this.dice[innerI].setLocked(!GamePanel.this.dice[innerI].isLocked());
                     GamePanel.this.updateDiceLocation(innerI);
+                    GamePanel.this.updateOdds(GamePanel.this.client.rollsRemaining);
                 }
             });
 
@@ -233,16 +259,9 @@ public class GamePanel extends JPanel {
             @Override
             public void actionPerformed(final ActionEvent event) {
                 if (GamePanel.this.client.rollsRemaining > 0) {
+                    // Wait for the server's dice before rolling again.
+                    GamePanel.this.rollButton.setEnabled(false);
                     GamePanel.this.client.rollDice(GamePanel.this);
-                    GamePanel.this.updateImageIcons();
-                    GamePanel.this.client.rollsRemaining--;
-                    GamePanel.this.setDiceEnabled(true);
-                    GamePanel.this.updateRoundInfo();
-                    GamePanel.this.scoreButton.setEnabled(true);
-
-                    if (GamePanel.this.client.rollsRemaining == 0) {
-                        GamePanel.this.updateRoundOver();
-                    }
                 }
             }
         });
@@ -325,6 +344,23 @@ public class GamePanel extends JPanel {
         }
     }
 
+    /**
+     * Show the odds of each open entry for the dice set aside.
+     *
+     * @param rollsLeft throws left this turn.
+     */
+    private void updateOdds(final int rollsLeft) {
+        final int[] values = new int[this.dice.length];
+        int held = 0;
+        for (int i = 0; i < this.dice.length; i++) {
+            values[i] = this.dice[i].getValue();
+            if (this.dice[i].isLocked()) {
+                held |= 1 << i;
+            }
+        }
+        this.scorePanel.showOdds(TurnProbabilityEngine.odds(values, held, rollsLeft));
+    }
+
     /**
      * Update the image of the dice.
      */
@@ -1,5 +1,7 @@
 package ca.carleton.comp3004.client.app;
 
+import ca.carleton.comp3004.solver.TurnProbabilityEngine;
+import ca.carleton.comp3004.util.ScoringTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +27,13 @@ public class ScorePanel extends JPanel {
 
     public JLabel[] lowerLabels;
 
+    /**
+     * The odds of each open entry for the rest of the turn.
+     */
+    public JLabel[] upperOdds;
+
+    public JLabel[] lowerOdds;
+
     public JLabel upperSum;
 
     public JLabel upperBonus;
@@ -50,6 +59,42 @@ public class ScorePanel extends JPanel {
     public void reset() {
         this.disableButtons();
         this.updateText();
+        this.clearOdds();
+    }
+
+    /**
+     * Show the chance of scoring in each open entry, and the score to expect there, for the rest of the turn.
+     *
+     * @param odds the odds.
+     */
+    public void showOdds(final TurnProbabilityEngine.Odds odds) {
+        for (int i = 0; i < this.upperOdds.length; i++) {
+            this.showOdds(this.upperOdds[i], this.upperButtons[i], odds, ScoringTable.category(0, i));
+        }
+        for (int i = 0; i < this.lowerOdds.length; i++) {
+            this.showOdds(this.lowerOdds[i], this.lowerButtons[i], odds, ScoringTable.category(1, i));
+        }
+    }
+
+    /**
+     * Remove the odds.
+     */
+    public void clearOdds() {
+        for (final JLabel label : this.upperOdds) {
+            label.setText("");
+        }
+        for (final JLabel label : this.lowerOdds) {
+            label.setText("");
+        }
+    }
+
+    private void showOdds(final JLabel label, final BoardEntry button, final TurnProbabilityEngine.Odds odds,
+                          final int category) {
+        if (button.playerID == YahtzeeClient.NOT_TAKEN) {
+            label.setText(String.format("%d%% ~%.1f", Math.round(odds.chance(category) * 100), odds.expectedScore(category)));
+        } else {
+            label.setText("");
+        }
     }
 
     /**
@@ -73,6 +118,8 @@ public class ScorePanel extends JPanel {
             this.add(this.upperButtons[i]);
         }
 
+        this.upperOdds = this.createOddsLabels(6, 15);
+
         this.upperBonus = new JLabel("Bonus: 0");
         this.upperBonus.setSize(new Dimension(50, 15));
         this.upperBonus.setLocation(50, 120);
@@ -113,6 +160,8 @@ public class ScorePanel extends JPanel {
             this.add(this.lowerButtons[i]);
         }
 
+        this.lowerOdds = this.createOddsLabels(7, 150);
+
         this.noScore = new JButton("Submit no score for round");
         this.noScore.setSize(new Dimension(200, 15));
         this.noScore.setLocation(100, 300);
@@ -128,6 +177,24 @@ public class ScorePanel extends JPanel {
         this.lowerLabels[6].setText("YAHTZEE");
     }
 
+    /**
+     * Create the labels showing the odds of a block, next to its buttons.
+     *
+     * @param count the number of entries.
+     * @param top   where the block starts.
+     * @return the labels.
+     */
+    private JLabel[] createOddsLabels(final int count, final int top) {
+        final JLabel[] labels = new JLabel[count];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new JLabel("");
+            labels[i].setSize(new Dimension(80, 15));
+            labels[i].setLocation(265, top + i * 15);
+            this.add(labels[i]);
+        }
+        return labels;
+    }
+
     /**
      * Register action listeners for all the buttons on this panel.
      */
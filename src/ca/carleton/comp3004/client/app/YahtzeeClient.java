@@ -1,14 +1,11 @@
 package ca.carleton.comp3004.client.app;
 
 import ca.carleton.comp3004.client.app.net.ClientNetwork;
-import ca.carleton.comp3004.util.NetworkConstants;
+import ca.carleton.comp3004.util.ProtocolMessage;
+import ca.carleton.comp3004.util.ScoringTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
-
 /**
  * The main game-logic class for the client.
  */
@@ -18,8 +15,6 @@ public class YahtzeeClient {
 
     private static final Logger LOG = LoggerFactory.getLogger(YahtzeeClient.class);
 
-    private static final Random random = new Random();
-
     private static final String ROUND_INFO_FORMAT = "Round: %d || Score: %d || Rolls remaining: %d";
 
     public int rollsRemaining = 3;
@@ -55,16 +50,18 @@ public class YahtzeeClient {
     }
 
     /**
-     * Roll the dice.
+     * Ask the server to roll the dice that are not set aside. The dice change once it answers.
      *
      * @param clientPanel the panel, for access to the dice.
      */
     public void rollDice(GamePanel clientPanel) {
-        for (Dice dice : clientPanel.dice) {
-            if (!dice.isLocked()) {
-                dice.setValue(random.nextInt((6 - 1) + 1) + 1);
+        int held = 0;
+        for (int i = 0; i < clientPanel.dice.length; i++) {
+            if (clientPanel.dice[i].isLocked()) {
+                held |= 1 << i;
             }
         }
+        this.network.send(ProtocolMessage.roll(held));
     }
 
     /**
@@ -86,7 +83,7 @@ public class YahtzeeClient {
      */
     public void submitRoundScoreToServer() {
         LOG.info("Starting submission to the server...");
-        final String toSend = String.format(NetworkConstants.SUBMIT_FORMAT, this.scoringPart, this.scoringArea, this.scoreToSend);
+        final ProtocolMessage toSend = ProtocolMessage.submit(this.scoringPart, this.scoringArea, this.scoreToSend);
         this.network.send(toSend);
         LOG.info("Sent {} to the server for submission.", toSend);
         this.requestScoreFromServer();
@@ -107,24 +104,25 @@ public class YahtzeeClient {
     }
 
     /**
-     * Handles updates from the server.
+     * Handles decoded updates from the server.
      *
-     * @param update the update to process.
+     * @param message the update to process.
      */
-    public void updateFromServer(final String update) {
-        final String[] message = update.split("_");
-        if (message[0].equals("UPDATE")) {
-            this.updateBoardFromServer(Integer.parseInt(message[1]), Integer.parseInt(message[2]), Integer.parseInt(message[3]), Integer.parseInt(message[4]));
-        } else if (message[0].equals("SCORE") && message[1].equals(String.valueOf(this.network.UID))) {
-            this.totalScore = Integer.parseInt(message[2]);
+    public void updateFromServer(final ProtocolMessage message) {
+        if (message.type == ProtocolMessage.ROLLED) {
+            this.board.updateRolled(message.dice);
+        } else if (message.type == ProtocolMessage.UPDATE) {
+            this.updateBoardFromServer(message.playerID, message.scoringPart, message.scoringArea, message.score);
+        } else if (message.type == ProtocolMessage.SCORE_RESPONSE && message.playerID == this.network.UID) {
+            this.totalScore = message.score;
             this.board.updateRoundInfo();
-        } else if (message[0].equals("RETRY") && message[1].equals(String.valueOf(this.network.UID))) {
+        } else if (message.type == ProtocolMessage.RETRY && message.playerID == this.network.UID) {
             this.board.retrySubmission();
-        } else if (update.equals(NetworkConstants.NEXT_ROUND)) {
+        } else if (message.type == ProtocolMessage.NEXT_ROUND) {
             this.startNextRound();
-        } else if (message[0].equals("OVER")) {
+        } else if (message.type == ProtocolMessage.GAME_OVER) {
             LOG.info("Received Game over command form the client.");
-            if (Integer.parseInt(message[1]) == this.network.UID) {
+            if (message.playerID == this.network.UID) {
                 // The client won
                 this.board.updateGameOverWinner();
             } else {
@@ -179,58 +177,18 @@ public class YahtzeeClient {
      */
     public void setPossiblePoints() {
 
-        ScorePanel scorePanel = this.board.scorePanel;
+        final ScorePanel scorePanel = this.board.scorePanel;
+        final int code = ScoringTable.code(this.currentRolls);
 
-        // Go through the rolls to set the upper scores, also sum the total
-        int sum = 0;
-        for (final Integer values : this.currentRolls) {
-            if (values == 1 && scorePanel.upperButtons[0].playerID == NOT_TAKEN) {
-                scorePanel.upperButtons[0].setText(String.valueOf(Integer.parseInt(scorePanel.upperButtons[0].getText()) + 1));
-            }
-            if (values == 2 && scorePanel.upperButtons[1].playerID == NOT_TAKEN) {
-                scorePanel.upperButtons[1].setText(String.valueOf(Integer.parseInt(scorePanel.upperButtons[1].getText()) + 2));
-            }
-            if (values == 3 && scorePanel.upperButtons[2].playerID == NOT_TAKEN) {
-                scorePanel.upperButtons[2].setText(String.valueOf(Integer.parseInt(scorePanel.upperButtons[2].getText()) + 3));
-            }
-            if (values == 4 && scorePanel.upperButtons[3].playerID == NOT_TAKEN) {
-                scorePanel.upperButtons[3].setText(String.valueOf(Integer.parseInt(scorePanel.upperButtons[3].getText()) + 4));
-            }
-            if (values == 5 && scorePanel.upperButtons[4].playerID == NOT_TAKEN) {
-                scorePanel.upperButtons[4].setText(String.valueOf(Integer.parseInt(scorePanel.upperButtons[4].getText()) + 5));
+        for (int area = 0; area < scorePanel.upperButtons.length; area++) {
+            if (scorePanel.upperButtons[area].playerID == NOT_TAKEN) {
+                scorePanel.upperButtons[area].setText(String.valueOf(ScoringTable.score(code, ScoringTable.category(0, area))));
             }
-            if (values == 6 && scorePanel.upperButtons[5].playerID == NOT_TAKEN) {
-                scorePanel.upperButtons[5].setText(String.valueOf(Integer.parseInt(scorePanel.upperButtons[5].getText()) + 6));
-            }
-            sum += values;
-        }
-        // Set three of a kind
-        if (scorePanel.lowerButtons[0].playerID == NOT_TAKEN) {
-            scorePanel.lowerButtons[0].setText(String.valueOf(this.hasThreeOfAKind() ? sum : 0));
-        }
-        // Set four of a kind
-        if (scorePanel.lowerButtons[1].playerID == NOT_TAKEN) {
-            scorePanel.lowerButtons[1].setText(String.valueOf(this.hasFourOfAKind() ? sum : 0));
-        }
-        // Set full house
-        if (scorePanel.lowerButtons[2].playerID == NOT_TAKEN) {
-            scorePanel.lowerButtons[2].setText(String.valueOf(this.hasFullHouse() ? 25 : 0));
-        }
-        // Set small straight
-        if (scorePanel.lowerButtons[3].playerID == NOT_TAKEN) {
-            scorePanel.lowerButtons[3].setText(String.valueOf(this.hasSmallStraight() ? 30 : 0));
-        }
-        // Set large straight
-        if (scorePanel.lowerButtons[4].playerID == NOT_TAKEN) {
-            scorePanel.lowerButtons[4].setText(String.valueOf(this.hasLargeStraight() ? 40 : 0));
-        }
-        // Set the chance value
-        if (scorePanel.lowerButtons[5].playerID == NOT_TAKEN) {
-            scorePanel.lowerButtons[5].setText(String.valueOf(sum));
         }
-        // Set yahtzee
-        if (scorePanel.lowerButtons[6].playerID == NOT_TAKEN) {
-            scorePanel.lowerButtons[6].setText(String.valueOf(this.hasYahtzee() ? 50 : 0));
+        for (int area = 0; area < scorePanel.lowerButtons.length; area++) {
+            if (scorePanel.lowerButtons[area].playerID == NOT_TAKEN) {
+                scorePanel.lowerButtons[area].setText(String.valueOf(ScoringTable.score(code, ScoringTable.category(1, area))));
+            }
         }
 
         // disable invalid scores.
@@ -257,90 +215,12 @@ public class YahtzeeClient {
         return sum;
     }
 
-    private boolean hasThreeOfAKind() {
-        final Map<Integer, Integer> frequency = this.getRollFrequency();
-
-        for (final Integer roll : frequency.keySet()) {
-            if (frequency.get(roll) >= 3) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean hasFourOfAKind() {
-        final Map<Integer, Integer> frequency = this.getRollFrequency();
-
-        for (final Integer roll : frequency.keySet()) {
-            if (frequency.get(roll) >= 4) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean hasFullHouse() {
-        final Map<Integer, Integer> frequency = this.getRollFrequency();
-
-        boolean hasTwo = false;
-        boolean hasThree = false;
-
-        for (final Integer roll : frequency.keySet()) {
-            if (frequency.get(roll) == 2) {
-                hasTwo = true;
-            }
-            if (frequency.get(roll) == 3) {
-                hasThree = true;
-            }
-        }
-
-        return hasTwo && hasThree;
-    }
-
-    private boolean hasSmallStraight() {
-        final Map<Integer, Integer> frequency = this.getRollFrequency();
-
-        // check 1-2-3-4
-        if (frequency.containsKey(1) && frequency.containsKey(2) && frequency.containsKey(3) && frequency.containsKey(4)) {
-            return true;
-        }
-
-        // check 2-3-4-5
-        if (frequency.containsKey(2) && frequency.containsKey(3) && frequency.containsKey(4) && frequency.containsKey(5)) {
-            return true;
-        }
-
-        // check 3-4-5-6
-        return frequency.containsKey(3) && frequency.containsKey(4) && frequency.containsKey(5) && frequency.containsKey(6);
-
-    }
-
-    private boolean hasLargeStraight() {
-        final Map<Integer, Integer> frequency = this.getRollFrequency();
-
-        // check 1-2-3-4-5
-        if (frequency.containsKey(1) && frequency.containsKey(2) && frequency.containsKey(3) && frequency.containsKey(4) && frequency.containsKey(5)) {
-            return true;
-        }
-
-        // check 2-3-4-5-6
-        return frequency.containsKey(2) && frequency.containsKey(3) && frequency.containsKey(4) && frequency.containsKey(5) && frequency.containsKey(6);
-
-    }
-
-    private boolean hasYahtzee() {
-        return this.currentRolls[0] == this.currentRolls[1] &&
-                this.currentRolls[1] == this.currentRolls[2] &&
-                this.currentRolls[2] == this.currentRolls[3] &&
-                this.currentRolls[3] == this.currentRolls[4];
-    }
-
     /**
      * Request the score from the server.
      */
     private void requestScoreFromServer() {
         LOG.info("Requesting score from the server...");
-        this.network.send(String.format(NetworkConstants.REQUEST_SCORE, this.network.UID));
+        this.network.send(ProtocolMessage.scoreRequest(this.network.UID));
         LOG.info("Sent request for score form the server.");
     }
 
@@ -356,18 +236,6 @@ public class YahtzeeClient {
         this.board.updateBoardEntry(playerID, scoringPart, scoringArea, score);
     }
 
-    private Map<Integer, Integer> getRollFrequency() {
-        final Map<Integer, Integer> frequency = new HashMap<Integer, Integer>();
-        for (final Integer roll : this.currentRolls) {
-            if (!frequency.containsKey(roll)) {
-                frequency.put(roll, 1);
-            } else {
-                frequency.put(roll, frequency.get(roll) + 1);
-            }
-        }
-        return frequency;
-    }
-
     /**
      * Determines which scores are valid for the player to be used.
      *
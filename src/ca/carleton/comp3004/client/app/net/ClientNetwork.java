@@ -2,7 +2,12 @@ package ca.carleton.comp3004.client.app.net;
 
 
 import ca.carleton.comp3004.client.app.YahtzeeClient;
+import ca.carleton.comp3004.util.Config;
+import ca.carleton.comp3004.util.MalformedMessageException;
 import ca.carleton.comp3004.util.NetworkConstants;
+import ca.carleton.comp3004.util.ProtocolMessage;
+import ca.carleton.comp3004.util.ProtocolReader;
+import ca.carleton.comp3004.util.ProtocolWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,6 +17,9 @@ import java.net.Socket;
 
 /**
  * Networking class that handles client communication to the server.
+ * <p/>
+ * Right after connecting the client offers the binary protocol with a HELLO. Until the server echoes it everything is
+ * text, so an older server simply never answers and the game carries on as before.
  */
 public class ClientNetwork implements Runnable {
 
@@ -29,9 +37,9 @@ public class ClientNetwork implements Runnable {
 
     private ClientThread client;
 
-    private BufferedReader in;
+    private ProtocolReader in;
 
-    private BufferedWriter out;
+    private ProtocolWriter out;
 
     /**
      * Initializes the socket and streams.
@@ -44,10 +52,15 @@ public class ClientNetwork implements Runnable {
 
         try {
             this.socket = new Socket(host, port);
-            this.in = new BufferedReader(new InputStreamReader(this.socket.getInputStream()));
-            this.out = new BufferedWriter(new OutputStreamWriter(this.socket.getOutputStream()));
+            this.socket.setTcpNoDelay(Config.TCP_NO_DELAY);
+            this.in = new ProtocolReader(new BufferedInputStream(this.socket.getInputStream()));
+            this.out = new ProtocolWriter(new BufferedOutputStream(this.socket.getOutputStream()));
             this.UID = this.socket.getLocalPort();
 
+            if (Config.BINARY_PROTOCOL) {
+                this.send(ProtocolMessage.hello(NetworkConstants.BINARY_PROTOCOL_VERSION));
+            }
+
             LOG.info("Connection successful. Waiting for server reply before starting the game...");
         } catch (final IOException exception) {
             LOG.error("Unable to connect.");
@@ -62,10 +75,12 @@ public class ClientNetwork implements Runnable {
     public void run() {
     }
 
-    public synchronized void handle(final String command) {
-        if (command.equalsIgnoreCase("quit")) {
+    public synchronized void handle(final ProtocolMessage command) {
+        if (command.type == ProtocolMessage.QUIT) {
             LOG.info("{} - Quit command received. Press return to exit.", this.UID);
             this.stop();
+        } else if (command.type == ProtocolMessage.HELLO) {
+            this.acceptHello(command);
         } else {
             LOG.info("Received {} command from the server.", command);
             this.game.updateFromServer(command);
@@ -84,24 +99,44 @@ public class ClientNetwork implements Runnable {
         }
 
         try {
-            final String reply = this.in.readLine();
-            this.startedSuccessfully = reply.equals(NetworkConstants.START_GAME);
+            final ProtocolMessage reply = new ProtocolMessage();
+            while (this.read(reply) && reply.type == ProtocolMessage.HELLO) {
+                this.acceptHello(reply);
+            }
+            this.startedSuccessfully = reply.type == ProtocolMessage.START;
             this.client.start();
+        } catch (final MalformedMessageException exception) {
+            LOG.error("Unexpected reply from the server. {}", exception.getMessage());
         } catch (final IOException exception) {
             LOG.error("Error communicating with server.", exception);
         }
     }
 
+    /**
+     * Read the next message from the server.
+     *
+     * @param message the message to decode into.
+     * @return false if the connection has ended.
+     * @throws IOException
+     * @throws MalformedMessageException if the server sent a line that is not a message.
+     */
+    public boolean read(final ProtocolMessage message) throws IOException, MalformedMessageException {
+        final ProtocolReader reader = this.in;
+        if (reader == null) {
+            throw new EOFException("Connection closed.");
+        }
+        return reader.read(message);
+    }
+
     /**
      * Send a message to the server.
      *
      * @param message the message to send.
      * @see ca.carleton.comp3004.util.NetworkConstants
      */
-    public void send(final String message) {
+    public void send(final ProtocolMessage message) {
         try {
-            this.out.write(message + "\n");
-            this.out.flush();
+            this.out.write(message);
         } catch (final IOException exception) {
             LOG.error("Error sending message!", exception);
             this.stop();
@@ -121,13 +156,26 @@ public class ClientNetwork implements Runnable {
             }
 
             this.in = null;
-            this.out = null;
             this.socket = null;
 
         } catch (final IOException exception) {
             LOG.error("Error closing connection...", exception);
         }
-        this.client.close();
+        if (this.client != null) {
+            this.client.close();
+        }
+    }
+
+    /**
+     * The server echoed our HELLO: everything from here on is binary in both directions.
+     *
+     * @param hello the server's reply.
+     */
+    private void acceptHello(final ProtocolMessage hello) {
+        if (hello.version == NetworkConstants.BINARY_PROTOCOL_VERSION) {
+            LOG.info("Server accepted binary protocol version {}.", hello.version);
+            this.out.setBinary(true);
+        }
     }
 
 }
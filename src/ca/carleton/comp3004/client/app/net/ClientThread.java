@@ -1,11 +1,11 @@
 package ca.carleton.comp3004.client.app.net;
 
+import ca.carleton.comp3004.util.MalformedMessageException;
+import ca.carleton.comp3004.util.ProtocolMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.Socket;
 
 /**
@@ -19,9 +19,7 @@ public class ClientThread extends Thread {
 
     private final ClientNetwork client;
 
-    private BufferedReader in;
-
-    private boolean done = false;
+    private volatile boolean done = false;
 
     /**
      * Set the fields and start the thread.
@@ -32,33 +30,13 @@ public class ClientThread extends Thread {
     public ClientThread(final ClientNetwork client, final Socket socket) {
         this.client = client;
         this.socket = socket;
-        this.open();
-    }
-
-    /**
-     * Opens the stream for communication.
-     */
-    public void open() {
-        try {
-            this.in = new BufferedReader(new InputStreamReader(this.socket.getInputStream()));
-        } catch (final IOException exception) {
-            LOG.error("Error opening input stream for thread...", exception);
-            this.client.stop();
-        }
     }
 
     /**
-     * Close the stream and mark the work as done.
+     * Mark the work as done. The stream itself belongs to the {@link ClientNetwork}.
      */
     public void close() {
         this.done = true;
-        try {
-            if (this.in != null) {
-                this.in.close();
-            }
-        } catch (final IOException exception) {
-            LOG.error("Error closing input stream for thread...", exception);
-        }
     }
 
     /**
@@ -66,11 +44,21 @@ public class ClientThread extends Thread {
      */
     public void run() {
         LOG.info("Client thread {} running.", this.socket.getLocalPort());
+        final ProtocolMessage message = new ProtocolMessage();
         while (!this.done) {
             try {
-                this.client.handle(this.in.readLine());
+                if (!this.client.read(message)) {
+                    LOG.info("Server closed the connection.");
+                    this.close();
+                    break;
+                }
+                this.client.handle(message);
+            } catch (final MalformedMessageException exception) {
+                LOG.warn("Ignoring message from the server. {}", exception.getMessage());
             } catch (final IOException exception) {
-                LOG.error("Listening error...", exception);
+                if (!this.done) {
+                    LOG.error("Listening error...", exception);
+                }
                 this.close();
             }
         }
@@ -0,0 +1,348 @@
+package ca.carleton.comp3004.replay;
+
+import ca.carleton.comp3004.util.BinaryCodec;
+import ca.carleton.comp3004.util.Config;
+import ca.carleton.comp3004.util.MalformedMessageException;
+import ca.carleton.comp3004.util.NetworkConstants;
+import ca.carleton.comp3004.util.OutboundMessage;
+import ca.carleton.comp3004.util.ProtocolMessage;
+import ca.carleton.comp3004.util.TextCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * One spectator of a {@link ReplayServer}: reads its requests, and sends it the next event of the game it watches each
+ * time the server's timer says it is due. Only ever touched by the server's loop.
+ */
+final class Replay {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Replay.class);
+
+    private static final int MAX_GATHER = 16;
+
+    /**
+     * Events sent in one go at speed 0 before other spectators get a turn.
+     */
+    private static final int BURST = 64;
+
+    /**
+     * When the next event is due, in {@link System#nanoTime()} terms.
+     */
+    long due;
+
+    /**
+     * Whether the replay is in the server's timer queue.
+     */
+    boolean timed;
+
+    private final ReplayServer server;
+
+    private final SocketChannel channel;
+
+    private final ByteBuffer in = ByteBuffer.allocate(Config.MAX_LINE_LENGTH);
+
+    private final Deque<ByteBuffer> out = new ArrayDeque<ByteBuffer>();
+
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+
+    private final Deque<OutboundMessage> pending = new ArrayDeque<OutboundMessage>();
+
+    private final ProtocolMessage message = new ProtocolMessage();
+
+    private final TextCodec decoder = new TextCodec();
+
+    private SelectionKey key;
+
+    private boolean binary;
+
+    private ReplayServer.Recording recording;
+
+    private int game;
+
+    private int from;
+
+    private int speed;
+
+    /**
+     * The next round to play, and the first one played.
+     */
+    private int round;
+
+    private int first;
+
+    private boolean over;
+
+    /**
+     * Whether an event came due while earlier ones were still waiting to be written.
+     */
+    private boolean stalled;
+
+    private boolean closing;
+
+    private boolean done;
+
+    Replay(final ReplayServer server, final SocketChannel channel) {
+        this.server = server;
+        this.channel = channel;
+    }
+
+    void register(final Selector selector) {
+        try {
+            this.key = this.channel.register(selector, SelectionKey.OP_READ, this);
+        } catch (final ClosedChannelException exception) {
+            this.closeChannel();
+        }
+    }
+
+    /**
+     * Read what is available and handle every complete request, text line or binary frame.
+     */
+    void onReadable() {
+        try {
+            if (this.channel.read(this.in) < 0) {
+                this.closeChannel();
+                return;
+            }
+        } catch (final IOException exception) {
+            this.closeChannel();
+            return;
+        }
+
+        this.in.flip();
+        final byte[] bytes = this.in.array();
+        while (this.in.hasRemaining() && !this.done && !this.closing) {
+            final int start = this.in.position();
+            if (BinaryCodec.isBinary(bytes[start])) {
+                try {
+                    if (!BinaryCodec.decode(this.in, this.message)) {
+                        break;
+                    }
+                } catch (final ProtocolException exception) {
+                    LOG.warn("Spectator {}. {}", this, exception.getMessage());
+                    this.closeChannel();
+                    return;
+                }
+            } else {
+                int end = start;
+                while (end < this.in.limit() && bytes[end] != '\n') {
+                    end++;
+                }
+                if (end == this.in.limit()) {
+                    break;
+                }
+                this.in.position(end + 1);
+                if (end > start && bytes[end - 1] == '\r') {
+                    end--;
+                }
+                try {
+                    this.decoder.decode(bytes, start, end - start, this.message);
+                } catch (final MalformedMessageException exception) {
+                    LOG.warn("Spectator {}. {}", this, exception.getMessage());
+                    continue;
+                }
+            }
+            this.handle(this.message);
+        }
+        this.in.compact();
+
+        if (!this.in.hasRemaining()) {
+            LOG.warn("Spectator {}. Line longer than {} bytes.", this, Config.MAX_LINE_LENGTH);
+            this.closeChannel();
+        }
+    }
+
+    void onWritable() {
+        if (this.flush() && this.stalled) {
+            this.stalled = false;
+            this.server.schedule(this, System.nanoTime());
+        }
+    }
+
+    /**
+     * Start playing a game, or turn the spectator away if it cannot be played.
+     *
+     * @param game      the game, as requested.
+     * @param recording its recording, or null if it cannot be played.
+     */
+    void play(final int game, final ReplayServer.Recording recording) {
+        if (this.done || this.closing || game != this.game) {
+            // Gone, or asked for another game while this one loaded.
+            return;
+        }
+        if (recording == null) {
+            this.send(ReplayServer.QUIT);
+            this.close();
+            return;
+        }
+        this.recording = recording;
+        this.round = recording.index.find(this.from);
+        this.first = this.round;
+        this.over = false;
+        this.send(ReplayServer.START);
+        for (final OutboundMessage update : recording.board(this.round)) {
+            this.send(update);
+        }
+        this.server.schedule(this, System.nanoTime() + this.interval());
+    }
+
+    /**
+     * Send the events now due: the next one, or at speed 0 as many as the socket takes.
+     */
+    void onDue() {
+        if (this.done || this.closing || this.recording == null) {
+            return;
+        }
+        for (int sent = 0; sent < BURST; sent++) {
+            if (!this.out.isEmpty()) {
+                this.stalled = true;
+                return;
+            }
+            final OutboundMessage next = this.next();
+            if (next == null) {
+                this.close();
+                return;
+            }
+            this.send(next);
+            if (this.interval() > 0) {
+                this.server.schedule(this, System.nanoTime() + this.interval());
+                return;
+            }
+        }
+        this.server.schedule(this, System.nanoTime());
+    }
+
+    private void handle(final ProtocolMessage message) {
+        if (message.type == ProtocolMessage.REPLAY) {
+            this.server.cancel(this);
+            this.pending.clear();
+            this.recording = null;
+            this.stalled = false;
+            this.game = message.game;
+            this.from = message.round;
+            this.speed = message.speed;
+            LOG.info("Spectator {} asked for game {} from round {} at speed {}.", this, message.game, message.round,
+                    message.speed);
+            this.server.request(this, message.game);
+        } else if (message.type == ProtocolMessage.HELLO) {
+            if (Config.BINARY_PROTOCOL && message.version >= NetworkConstants.BINARY_PROTOCOL_VERSION
+                    && !this.binary) {
+                this.send(OutboundMessage.of(ProtocolMessage.hello(NetworkConstants.BINARY_PROTOCOL_VERSION)));
+                this.binary = true;
+            }
+        } else if (message.type == ProtocolMessage.QUIT) {
+            this.close();
+        }
+    }
+
+    /**
+     * @return the next event of the game, or null once it is over.
+     */
+    private OutboundMessage next() {
+        while (this.pending.isEmpty()) {
+            if (this.round < this.recording.index.getRounds()) {
+                if (this.round > this.first) {
+                    this.pending.add(ReplayServer.NEXT_ROUND);
+                }
+                this.pending.addAll(Arrays.asList(this.recording.round(this.round)));
+                this.round++;
+            } else if (!this.over) {
+                this.over = true;
+                return this.recording.over();
+            } else {
+                return null;
+            }
+        }
+        return this.pending.poll();
+    }
+
+    private long interval() {
+        return this.speed <= 0 ? 0 : this.server.getEventNanos() / this.speed;
+    }
+
+    private void send(final OutboundMessage message) {
+        this.out.add(message.buffer(this.binary));
+        this.flush();
+    }
+
+    /**
+     * Write as much as the socket will take, in one gathering write where possible.
+     *
+     * @return true if everything was written.
+     */
+    private boolean flush() {
+        if (this.done) {
+            return false;
+        }
+        try {
+            while (!this.out.isEmpty()) {
+                int count = 0;
+                for (final ByteBuffer buffer : this.out) {
+                    if (count == MAX_GATHER) {
+                        break;
+                    }
+                    this.gather[count++] = buffer;
+                }
+                this.channel.write(this.gather, 0, count);
+                while (!this.out.isEmpty() && !this.out.peek().hasRemaining()) {
+                    this.out.poll();
+                }
+                if (this.gather[count - 1].hasRemaining()) {
+                    // Socket buffer full, wait to be told it is writable again.
+                    this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return false;
+                }
+            }
+            this.key.interestOps(SelectionKey.OP_READ);
+        } catch (final IOException exception) {
+            LOG.warn("Spectator {}. Error writing output: {}", this, exception.getMessage());
+            this.closeChannel();
+            return false;
+        }
+        if (this.closing) {
+            this.closeChannel();
+        }
+        return true;
+    }
+
+    /**
+     * Close once everything already queued has been written.
+     */
+    private void close() {
+        this.closing = true;
+        this.server.cancel(this);
+        this.flush();
+    }
+
+    private void closeChannel() {
+        if (this.done) {
+            return;
+        }
+        this.done = true;
+        this.server.cancel(this);
+        this.out.clear();
+        try {
+            this.channel.close();
+        } catch (final IOException exception) {
+            LOG.error("Error closing spectator channel!", exception);
+        }
+    }
+
+    public String toString() {
+        try {
+            return String.valueOf(this.channel.getRemoteAddress());
+        } catch (final IOException exception) {
+            return "closed";
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package ca.carleton.comp3004.replay;
+
+import ca.carleton.comp3004.util.Config;
+import ca.carleton.comp3004.util.OutboundMessage;
+import ca.carleton.comp3004.util.ProtocolMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import yahtzeeTrace.YahtzeeTracer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Plays recorded games back to spectators, as the messages a player in the game would have been sent:
+ * <pre>
+ *     java ca.carleton.comp3004.replay.ReplayServer [--dir=traceFiles] [--port=N] [--millis=N]
+ * </pre>
+ * A spectator connects and sends {@code REPLAY_<game>_<round>_<speed>} to watch {@code yahtzeeOut<game>.xml} from the
+ * given round. It gets {@code start}, an {@code UPDATE_} for each slot already scored by then, and from there an
+ * {@code UPDATE_} per score, {@code ROUND_START} between rounds and {@code OVER_<winner>} at the end, after which it is
+ * disconnected. Sending another {@code REPLAY_} moves the replay; a game that cannot be replayed gets {@code quit}.
+ * Spectators may offer the binary protocol with {@code HELLO_} first, as players do.
+ * <p/>
+ * Traces keep the order of events but not their times, so the replay's normal pace is one event every
+ * {@code --millis} milliseconds (default 1000), divided by the requested speed; speed 0 sends as fast as the spectator
+ * reads.
+ * <p/>
+ * One selector thread serves every spectator, timing their next events off a single queue, and never touches the disk:
+ * each game's {@link RoundIndex} is loaded or built, and its rounds read and turned into messages, on a background
+ * pool. They are kept for the games watched most recently, so spectators of the same game share them.
+ */
+public class ReplayServer extends Thread {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplayServer.class);
+
+    /**
+     * Games whose index and rounds are kept in memory.
+     */
+    private static final int CACHED_GAMES = 1024;
+
+    /**
+     * Connections the system may hold for us until they are accepted, for spectators arriving all at once.
+     */
+    private static final int BACKLOG = 1024;
+
+    static final OutboundMessage START = OutboundMessage.of(ProtocolMessage.start());
+
+    static final OutboundMessage NEXT_ROUND = OutboundMessage.of(ProtocolMessage.nextRound());
+
+    static final OutboundMessage QUIT = OutboundMessage.of(ProtocolMessage.quit());
+
+    private final Path directory;
+
+    private final long eventNanos;
+
+    private final Selector selector;
+
+    private final ServerSocketChannel server;
+
+    /**
+     * Replays waiting for their next event, soonest first.
+     */
+    private final PriorityQueue<Replay> timers = new PriorityQueue<Replay>(64, new Comparator<Replay>() {
+        @Override
+        public int compare(final Replay a, final Replay b) {
+            return Long.compare(a.due, b.due);
+        }
+    });
+
+    private final Map<Integer, Recording> recordings = new LinkedHashMap<Integer, Recording>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Integer, Recording> eldest) {
+            return this.size() > CACHED_GAMES;
+        }
+    };
+
+    /**
+     * Replays waiting for a game's index, by game.
+     */
+    private final Map<Integer, List<Replay>> loading = new HashMap<Integer, List<Replay>>();
+
+    /**
+     * Games loaded off the loop, to be handed to the replays waiting for them.
+     */
+    private final Queue<Recording> loaded = new ConcurrentLinkedQueue<Recording>();
+
+    private volatile boolean done;
+
+    /**
+     * @param directory   the trace files.
+     * @param port        the port to listen on.
+     * @param eventMillis milliseconds between events at speed 1.
+     * @throws IOException if the port cannot be listened on.
+     */
+    public ReplayServer(final Path directory, final int port, final long eventMillis) throws IOException {
+        super("replay-loop");
+        this.directory = directory;
+        this.eventNanos = eventMillis * 1000000;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        this.server.bind(new InetSocketAddress(port), BACKLOG);
+        this.server.configureBlocking(false);
+        this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        Path directory = Paths.get(YahtzeeTracer.configDirectory);
+        int port = Config.DEFAULT_PORT + 1;
+        long millis = 1000;
+        for (final String arg : args) {
+            if (arg.startsWith("--dir=")) {
+                directory = Paths.get(arg.substring("--dir=".length()));
+            } else if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--millis=")) {
+                millis = Long.parseLong(arg.substring("--millis=".length()));
+            } else {
+                LOG.warn("Ignoring unknown argument {}.", arg);
+            }
+        }
+        final ReplayServer replays = new ReplayServer(directory, port, millis);
+        replays.start();
+        LOG.info("Replaying games from {} on port {}.", directory, port);
+        replays.join();
+    }
+
+    /**
+     * Stop serving and disconnect every spectator.
+     */
+    public void shutdown() {
+        this.done = true;
+        this.selector.wakeup();
+    }
+
+    public void run() {
+        while (!this.done) {
+            try {
+                final Replay next = this.timers.peek();
+                if (next == null) {
+                    this.selector.select();
+                } else {
+                    final long wait = next.due - System.nanoTime();
+                    if (wait > 0) {
+                        this.selector.select(Math.max(1, wait / 1000000));
+                    } else {
+                        this.selector.selectNow();
+                    }
+                }
+                this.processLoaded();
+
+                final Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            this.accept();
+                            continue;
+                        }
+                        final Replay replay = (Replay) key.attachment();
+                        if (key.isReadable()) {
+                            replay.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            replay.onWritable();
+                        }
+                    } catch (final CancelledKeyException exception) {
+                        // Closed while selected, nothing left to do.
+                    }
+                }
+
+                final long now = System.nanoTime();
+                while (!this.timers.isEmpty() && this.timers.peek().due <= now) {
+                    final Replay replay = this.timers.poll();
+                    replay.timed = false;
+                    replay.onDue();
+                }
+            } catch (final IOException exception) {
+                LOG.error("Selector failure in {}.", this.getName(), exception);
+            }
+        }
+
+        for (final SelectionKey key : this.selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (final IOException exception) {
+                LOG.error("Error closing channel.", exception);
+            }
+        }
+        try {
+            this.selector.close();
+        } catch (final IOException exception) {
+            LOG.error("Error closing selector.", exception);
+        }
+    }
+
+    /**
+     * @return milliseconds between events at speed 1, in nanoseconds.
+     */
+    long getEventNanos() {
+        return this.eventNanos;
+    }
+
+    /**
+     * Run a replay's next event at the given time.
+     */
+    void schedule(final Replay replay, final long due) {
+        this.cancel(replay);
+        replay.due = due;
+        replay.timed = true;
+        this.timers.add(replay);
+    }
+
+    void cancel(final Replay replay) {
+        if (replay.timed) {
+            this.timers.remove(replay);
+            replay.timed = false;
+        }
+    }
+
+    /**
+     * Hands a replay its game, straight away if the game is in memory and otherwise once it is loaded.
+     *
+     * @param replay the replay.
+     * @param game   the game's number.
+     */
+    void request(final Replay replay, final int game) {
+        final Recording recording = this.recordings.get(game);
+        if (recording != null) {
+            replay.play(game, recording);
+            return;
+        }
+        if (game <= 0) {
+            replay.play(game, null);
+            return;
+        }
+        List<Replay> waiting = this.loading.get(game);
+        if (waiting != null) {
+            waiting.add(replay);
+            return;
+        }
+        waiting = new ArrayList<Replay>();
+        waiting.add(replay);
+        this.loading.put(game, waiting);
+        final Path trace = this.directory.resolve("yahtzeeOut" + game + ".xml");
+        ForkJoinPool.commonPool().execute(new Runnable() {
+            @Override
+            public void run() {
+                Recording recording = new Recording(game, null, null);
+                if (Files.isRegularFile(trace)) {
+                    try {
+                        final RoundIndex index = RoundIndex.of(trace);
+                        recording = new Recording(game, index, index.readRounds(trace));
+                    } catch (final IOException exception) {
+                        LOG.warn("Cannot replay {}: {}", trace, exception.getMessage());
+                    }
+                }
+                ReplayServer.this.loaded.add(recording);
+                ReplayServer.this.selector.wakeup();
+            }
+        });
+    }
+
+    private void processLoaded() {
+        Recording recording;
+        while ((recording = this.loaded.poll()) != null) {
+            final Recording playable = recording.index == null ? null : recording;
+            if (playable != null) {
+                this.recordings.put(recording.game, recording);
+            }
+            for (final Replay replay : this.loading.remove(recording.game)) {
+                replay.play(recording.game, playable);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = this.server.accept()) != null) {
+            channel.configureBlocking(false);
+            new Replay(this, channel).register(this.selector);
+        }
+    }
+
+    /**
+     * A game's index and its rounds as messages. Built off the loop, then only touched by it.
+     */
+    static final class Recording {
+
+        final int game;
+
+        final RoundIndex index;
+
+        private final OutboundMessage[][] rounds;
+
+        private OutboundMessage over;
+
+        /**
+         * @param index  the game's index, or null if it cannot be played.
+         * @param rounds by round, an UPDATE for each score in it, or null if it cannot be played.
+         */
+        private Recording(final int game, final RoundIndex index, final List<List<ProtocolMessage>> rounds) {
+            this.game = game;
+            this.index = index;
+            this.rounds = new OutboundMessage[rounds == null ? 0 : rounds.size()][];
+            for (int i = 0; i < this.rounds.length; i++) {
+                this.rounds[i] = encode(rounds.get(i));
+            }
+        }
+
+        /**
+         * @param i a round, from 0.
+         * @return an UPDATE for each score in it.
+         */
+        OutboundMessage[] round(final int i) {
+            return this.rounds[i];
+        }
+
+        /**
+         * @param i a round, from 0, or the number of rounds for the end of the game.
+         * @return an UPDATE for each slot scored before it.
+         */
+        OutboundMessage[] board(final int i) {
+            return encode(this.index.getBoard(i));
+        }
+
+        OutboundMessage over() {
+            if (this.over == null) {
+                this.over = OutboundMessage.of(ProtocolMessage.gameOver(this.index.getWinner()));
+            }
+            return this.over;
+        }
+
+        private static OutboundMessage[] encode(final List<ProtocolMessage> messages) {
+            final OutboundMessage[] encoded = new OutboundMessage[messages.size()];
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = OutboundMessage.of(messages.get(i));
+            }
+            return encoded;
+        }
+    }
+}
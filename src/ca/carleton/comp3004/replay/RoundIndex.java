@@ -0,0 +1,449 @@
+package ca.carleton.comp3004.replay;
+
+import ca.carleton.comp3004.server.app.ScoreBoard;
+import ca.carleton.comp3004.util.ProtocolMessage;
+import ca.carleton.comp3004.util.ScoringTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import yahtzeeTrace.ScoreType;
+import yahtzeeTrace.ScoreTypeConverter;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Where each round of a trace file starts and ends, and what the board looked like before it, so a replay can start
+ * at any round without going through the ones before it, and the rounds can be read without parsing the rest of the
+ * trace.
+ * <p/>
+ * An index is built by reading the trace once and is kept next to it, as the trace's name followed by {@code .idx}, for
+ * whoever asks next. It records the trace's size and modification time and is built again if either has changed.
+ * <p/>
+ * Traces name the score type rather than the board slot, and the server traces the lower area's chance as
+ * {@code yahtzee} and its yahtzee as {@code aces}: scores are put back in the slot they must have been scored in.
+ */
+public final class RoundIndex {
+
+    public static final String SUFFIX = ".idx";
+
+    private static final Logger LOG = LoggerFactory.getLogger(RoundIndex.class);
+
+    private static final int MAGIC = 0x59524958;
+
+    private static final byte VERSION = 1;
+
+    private static final byte[] ROUND_START = ascii("<round ");
+
+    private static final byte[] ROUND_END = ascii("</round>");
+
+    private static final int LOWER_CHANCE = 5;
+
+    private static final int LOWER_YAHTZEE = 6;
+
+    private static final ThreadLocal<XMLInputFactory> FACTORIES = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            return XMLInputFactory.newInstance();
+        }
+    };
+
+    private final long size;
+
+    private final long modified;
+
+    private final int winner;
+
+    private final int[] numbers;
+
+    private final int[] offsets;
+
+    private final int[] lengths;
+
+    /**
+     * By round, the slots scored before it as slot, owner and score triples.
+     */
+    private final int[][] boards;
+
+    private RoundIndex(final long size, final long modified, final int winner, final int[] numbers,
+                       final int[] offsets, final int[] lengths, final int[][] boards) {
+        this.size = size;
+        this.modified = modified;
+        this.winner = winner;
+        this.numbers = numbers;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.boards = boards;
+    }
+
+    /**
+     * Gets a trace's index, from its index file if that is up to date and otherwise by reading the trace and writing
+     * the index file.
+     *
+     * @param trace the trace file.
+     * @return its index.
+     * @throws IOException if the trace cannot be read or is not a trace.
+     */
+    public static RoundIndex of(final Path trace) throws IOException {
+        final Path file = trace.resolveSibling(trace.getFileName() + SUFFIX);
+        final long size = Files.size(trace);
+        final long modified = Files.getLastModifiedTime(trace).toMillis();
+        if (Files.exists(file)) {
+            try {
+                final RoundIndex index = read(file);
+                if (index.size == size && index.modified == modified) {
+                    return index;
+                }
+            } catch (final IOException exception) {
+                LOG.warn("Rebuilding unreadable index {}: {}", file, exception.toString());
+            }
+        }
+        final RoundIndex index = build(Files.readAllBytes(trace), modified);
+        try {
+            index.write(file);
+        } catch (final IOException exception) {
+            LOG.warn("Could not save index {}, keeping it in memory only: {}", file, exception.toString());
+        }
+        return index;
+    }
+
+    /**
+     * @return the number of rounds in the trace.
+     */
+    public int getRounds() {
+        return this.numbers.length;
+    }
+
+    /**
+     * @param i a round, from 0.
+     * @return its round number in the game.
+     */
+    public int getNumber(final int i) {
+        return this.numbers[i];
+    }
+
+    /**
+     * @return the player the game was won by, as the game decides it, or {@link ScoreBoard#NO_PLAYER} if it never
+     * got as far as totals.
+     */
+    public int getWinner() {
+        return this.winner;
+    }
+
+    /**
+     * @param number a round number.
+     * @return the first round numbered at least that, or {@link #getRounds()} if there is none.
+     */
+    public int find(final int number) {
+        for (int i = 0; i < this.numbers.length; i++) {
+            if (this.numbers[i] >= number) {
+                return i;
+            }
+        }
+        return this.numbers.length;
+    }
+
+    /**
+     * @param i a round, from 0, or {@link #getRounds()} for the end of the game.
+     * @return an UPDATE for every slot scored before it.
+     */
+    public List<ProtocolMessage> getBoard(final int i) {
+        final int[] board = this.boards[i];
+        final List<ProtocolMessage> updates = new ArrayList<ProtocolMessage>(board.length / 3);
+        for (int s = 0; s < board.length; s += 3) {
+            updates.add(update(board[s], board[s + 1], board[s + 2]));
+        }
+        return updates;
+    }
+
+    /**
+     * Reads every round from the trace, in one read of the part of the file they take up.
+     *
+     * @param trace the trace file the index is for.
+     * @return by round, an UPDATE for each score in it in the order they were made, leaving out aces scored 0.
+     * @throws IOException if the rounds cannot be read.
+     */
+    public List<List<ProtocolMessage>> readRounds(final Path trace) throws IOException {
+        final List<List<ProtocolMessage>> rounds = new ArrayList<List<ProtocolMessage>>(this.numbers.length);
+        if (this.numbers.length == 0) {
+            return rounds;
+        }
+        final int last = this.numbers.length - 1;
+        final int start = this.offsets[0];
+        final ByteBuffer bytes = ByteBuffer.allocate(this.offsets[last] + this.lengths[last] - start);
+        try (FileChannel channel = FileChannel.open(trace, StandardOpenOption.READ)) {
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, start + bytes.position()) < 0) {
+                    throw new EOFException(trace + " ends inside its rounds");
+                }
+            }
+        }
+        for (int i = 0; i <= last; i++) {
+            final List<ProtocolMessage> updates = new ArrayList<ProtocolMessage>();
+            parseRound(bytes.array(), this.offsets[i] - start, this.lengths[i], updates);
+            rounds.add(updates);
+        }
+        return rounds;
+    }
+
+    /**
+     * Finds the rounds by their tags and reads each one and the totals with a StAX reader.
+     */
+    private static RoundIndex build(final byte[] trace, final long modified) throws IOException {
+        final List<int[]> rounds = new ArrayList<int[]>();
+        final List<int[]> boards = new ArrayList<int[]>();
+        final List<ProtocolMessage> updates = new ArrayList<ProtocolMessage>();
+        final int[] owners = new int[ScoringTable.CATEGORIES];
+        final int[] scores = new int[ScoringTable.CATEGORIES];
+        Arrays.fill(owners, ScoreBoard.NO_PLAYER);
+        int at = 0;
+        while ((at = indexOf(trace, ROUND_START, at)) >= 0) {
+            final int end = indexOf(trace, ROUND_END, at);
+            if (end < 0) {
+                throw new IOException("Round at byte " + at + " is never closed.");
+            }
+            final int length = end + ROUND_END.length - at;
+            boards.add(board(owners, scores));
+            updates.clear();
+            rounds.add(new int[]{parseRound(trace, at, length, updates), at, length});
+            for (final ProtocolMessage update : updates) {
+                // As on the board, a slot scored 0 is still open.
+                final int slot = ScoringTable.category(update.scoringPart, update.scoringArea);
+                if (scores[slot] == 0) {
+                    owners[slot] = update.playerID;
+                    scores[slot] = update.score;
+                }
+            }
+            at += length;
+        }
+
+        final int[] numbers = new int[rounds.size()];
+        final int[] offsets = new int[rounds.size()];
+        final int[] lengths = new int[rounds.size()];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = rounds.get(i)[0];
+            offsets[i] = rounds.get(i)[1];
+            lengths[i] = rounds.get(i)[2];
+        }
+        boards.add(board(owners, scores));
+        return new RoundIndex(trace.length, modified, winner(trace), numbers, offsets, lengths,
+                boards.toArray(new int[boards.size()][]));
+    }
+
+    /**
+     * Reads a round element, adding an UPDATE for each score in it.
+     *
+     * @return the round's number.
+     */
+    private static int parseRound(final byte[] bytes, final int offset, final int length,
+                                  final List<ProtocolMessage> updates) throws IOException {
+        try {
+            final XMLStreamReader xml = FACTORIES.get().createXMLStreamReader(
+                    new ByteArrayInputStream(bytes, offset, length));
+            try {
+                xml.nextTag();
+                final int number = Integer.parseInt(xml.getAttributeValue(null, "number"));
+                int depth = 1;
+                ScoreType type = null;
+                int player = 0;
+                int score = 0;
+                while (xml.hasNext()) {
+                    final int event = xml.next();
+                    if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                        if (depth == 1 && type != null) {
+                            // Aces scored 0 is most likely a round the player did not score, which is not broadcast;
+                            // either way it leaves the slot open.
+                            if (type != ScoreType.ACES || score != 0) {
+                                updates.add(update(type, player, score));
+                            }
+                            type = null;
+                        }
+                    } else if (event == XMLStreamConstants.START_ELEMENT) {
+                        depth++;
+                        if (depth == 2) {
+                            type = ScoreTypeConverter.getScoreTypeFromElement(xml.getLocalName());
+                        } else if (depth == 3 && type != null && "player".equals(xml.getLocalName())) {
+                            player = Integer.parseInt(xml.getElementText().trim());
+                            depth--;
+                        } else if (depth == 3 && type != null && "score".equals(xml.getLocalName())) {
+                            score = Integer.parseInt(xml.getElementText().trim());
+                            depth--;
+                        }
+                    }
+                }
+                return number;
+            } finally {
+                xml.close();
+            }
+        } catch (final XMLStreamException | NumberFormatException exception) {
+            throw new IOException("Unreadable round at byte " + offset + ": " + exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * @return the last player with the highest total, as the game picks its winner.
+     */
+    private static int winner(final byte[] trace) throws IOException {
+        int winner = ScoreBoard.NO_PLAYER;
+        int highest = Integer.MIN_VALUE;
+        try {
+            final XMLStreamReader xml = FACTORIES.get().createXMLStreamReader(new ByteArrayInputStream(trace));
+            try {
+                int player = 0;
+                while (xml.hasNext()) {
+                    if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    if ("Player_totals".equals(xml.getLocalName())) {
+                        player = Integer.parseInt(xml.getAttributeValue(null, "player"));
+                    } else if ("total_score".equals(xml.getLocalName())) {
+                        final int total = Integer.parseInt(xml.getElementText().trim());
+                        if (total >= highest) {
+                            highest = total;
+                            winner = player;
+                        }
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        } catch (final XMLStreamException | NumberFormatException exception) {
+            throw new IOException("Not a trace: " + exception.getMessage(), exception);
+        }
+        return winner;
+    }
+
+    private static ProtocolMessage update(final ScoreType type, final int player, final int score) {
+        if (type == ScoreType.YAHTZEE) {
+            return ProtocolMessage.update(player, 1, LOWER_CHANCE, score);
+        } else if (type == ScoreType.ACES && score == ScoringTable.YAHTZEE) {
+            return ProtocolMessage.update(player, 1, LOWER_YAHTZEE, score);
+        } else if (type.ordinal() < ScoringTable.UPPER_CATEGORIES) {
+            return ProtocolMessage.update(player, 0, type.ordinal(), score);
+        }
+        return ProtocolMessage.update(player, 1, type.ordinal() - ScoringTable.UPPER_CATEGORIES, score);
+    }
+
+    private static ProtocolMessage update(final int slot, final int player, final int score) {
+        return slot < ScoringTable.UPPER_CATEGORIES ? ProtocolMessage.update(player, 0, slot, score)
+                : ProtocolMessage.update(player, 1, slot - ScoringTable.UPPER_CATEGORIES, score);
+    }
+
+    private static int[] board(final int[] owners, final int[] scores) {
+        int filled = 0;
+        for (final int owner : owners) {
+            if (owner != ScoreBoard.NO_PLAYER) {
+                filled++;
+            }
+        }
+        final int[] board = new int[3 * filled];
+        int at = 0;
+        for (int slot = 0; slot < owners.length; slot++) {
+            if (owners[slot] != ScoreBoard.NO_PLAYER) {
+                board[at++] = slot;
+                board[at++] = owners[slot];
+                board[at++] = scores[slot];
+            }
+        }
+        return board;
+    }
+
+    private static RoundIndex read(final Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("Not a round index.");
+            }
+            final long size = in.readLong();
+            final long modified = in.readLong();
+            final int winner = in.readInt();
+            final int rounds = in.readInt();
+            final int[] numbers = new int[rounds];
+            final int[] offsets = new int[rounds];
+            final int[] lengths = new int[rounds];
+            final int[][] boards = new int[rounds + 1][];
+            for (int i = 0; i <= rounds; i++) {
+                if (i < rounds) {
+                    numbers[i] = in.readInt();
+                    offsets[i] = in.readInt();
+                    lengths[i] = in.readInt();
+                }
+                boards[i] = new int[3 * in.readUnsignedByte()];
+                for (int s = 0; s < boards[i].length; s++) {
+                    boards[i][s] = in.readInt();
+                }
+            }
+            return new RoundIndex(size, modified, winner, numbers, offsets, lengths, boards);
+        }
+    }
+
+    /**
+     * Writes the index under a temporary name and moves it into place, so a reader never sees half of one.
+     */
+    private void write(final Path file) throws IOException {
+        final Path part = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(),
+                ".part");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(part)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeLong(this.size);
+                out.writeLong(this.modified);
+                out.writeInt(this.winner);
+                out.writeInt(this.numbers.length);
+                for (int i = 0; i <= this.numbers.length; i++) {
+                    if (i < this.numbers.length) {
+                        out.writeInt(this.numbers[i]);
+                        out.writeInt(this.offsets[i]);
+                        out.writeInt(this.lengths[i]);
+                    }
+                    out.writeByte(this.boards[i].length / 3);
+                    for (final int value : this.boards[i]) {
+                        out.writeInt(value);
+                    }
+                }
+            }
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    private static int indexOf(final byte[] bytes, final byte[] pattern, final int from) {
+        for (int i = from; i <= bytes.length - pattern.length; i++) {
+            int j = 0;
+            while (j < pattern.length && bytes[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] ascii(final String text) {
+        final byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,89 @@
+package ca.carleton.comp3004.server.app;
+
+import ca.carleton.comp3004.util.ScoringTable;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * One player's dice for the current round, rolled by the server.
+ * <p/>
+ * Each cup draws from its own stream, split from the game's, so players never share a generator and a game seeded
+ * the same way deals the same dice to the same seats.
+ */
+public class DiceCup {
+
+    public static final int ROLLS_PER_ROUND = 3;
+
+    private final SplittableRandom random;
+
+    private final int[] dice = new int[ScoringTable.DICE];
+
+    private int rollsLeft = ROLLS_PER_ROUND;
+
+    private boolean scored;
+
+    /**
+     * @param random the player's stream.
+     */
+    public DiceCup(final SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Roll the dice that are not held.
+     *
+     * @param held bit i set to keep die i. Ignored on the first roll of a round.
+     * @return false if the player has no rolls left this round.
+     */
+    public boolean roll(final int held) {
+        if (this.scored || this.rollsLeft == 0) {
+            return false;
+        }
+        final boolean first = !this.hasRolled();
+        for (int i = 0; i < this.dice.length; i++) {
+            if (first || (held & (1 << i)) == 0) {
+                this.dice[i] = this.random.nextInt(ScoringTable.FACES) + 1;
+            }
+        }
+        this.rollsLeft--;
+        return true;
+    }
+
+    /**
+     * @return true once the dice have been rolled this round.
+     */
+    public boolean hasRolled() {
+        return this.rollsLeft < ROLLS_PER_ROUND;
+    }
+
+    /**
+     * @return true once the player has scored this round.
+     */
+    public boolean hasScored() {
+        return this.scored;
+    }
+
+    /**
+     * The player has scored; no more rolls until the next round.
+     */
+    public void scored() {
+        this.scored = true;
+    }
+
+    /**
+     * @return the dice, all zero if they have not been rolled this round. Do not modify.
+     */
+    public int[] getDice() {
+        return this.dice;
+    }
+
+    /**
+     * Empty the cup for a new round.
+     */
+    public void reset() {
+        Arrays.fill(this.dice, 0);
+        this.rollsLeft = ROLLS_PER_ROUND;
+        this.scored = false;
+    }
+}
@@ -0,0 +1,87 @@
+package ca.carleton.comp3004.server.app;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The shared board the players race to fill: the upper area's six slots followed by the lower area's seven.
+ * <p/>
+ * Each slot is a single long packing the owner's id (high half) and the score (low half), so claiming a slot is one
+ * compare-and-set and any thread can read the board without locking.
+ * <p/>
+ * As with the original board, a slot scored 0 is still open to be claimed.
+ */
+public class ScoreBoard {
+
+    public static final int UPPER_SLOTS = 6;
+
+    public static final int LOWER_SLOTS = 7;
+
+    public static final int NO_PLAYER = -1;
+
+    private static final long EMPTY = pack(NO_PLAYER, 0);
+
+    private final AtomicLongArray slots = new AtomicLongArray(UPPER_SLOTS + LOWER_SLOTS);
+
+    private final AtomicInteger filled = new AtomicInteger();
+
+    public ScoreBoard() {
+        for (int i = 0; i < this.slots.length(); i++) {
+            this.slots.set(i, EMPTY);
+        }
+    }
+
+    /**
+     * Claim a slot for a player.
+     *
+     * @param scoringPart 0 for upper board, 1 for lower.
+     * @param scoringArea index into that part of the board.
+     * @param playerID    the player.
+     * @param score       the value.
+     * @return true if the slot was free and is now the player's; false if it was taken or does not exist.
+     */
+    public boolean claim(final int scoringPart, final int scoringArea, final int playerID, final int score) {
+        final int slot = slot(scoringPart, scoringArea);
+        if (slot < 0) {
+            return false;
+        }
+        final long claimed = pack(playerID, score);
+        while (true) {
+            final long current = this.slots.get(slot);
+            if (value(current) != 0) {
+                return false;
+            }
+            if (this.slots.compareAndSet(slot, current, claimed)) {
+                if (current == EMPTY) {
+                    this.filled.incrementAndGet();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return true once every slot has been claimed.
+     */
+    public boolean isFull() {
+        return this.filled.get() == this.slots.length();
+    }
+
+    private static int slot(final int scoringPart, final int scoringArea) {
+        if (scoringPart == 0 && scoringArea >= 0 && scoringArea < UPPER_SLOTS) {
+            return scoringArea;
+        }
+        if (scoringPart == 1 && scoringArea >= 0 && scoringArea < LOWER_SLOTS) {
+            return UPPER_SLOTS + scoringArea;
+        }
+        return -1;
+    }
+
+    private static long pack(final int playerID, final int score) {
+        return ((long) playerID << 32) | (score & 0xFFFFFFFFL);
+    }
+
+    private static int value(final long slot) {
+        return (int) slot;
+    }
+}
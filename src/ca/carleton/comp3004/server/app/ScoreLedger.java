@@ -0,0 +1,118 @@
+package ca.carleton.comp3004.server.app;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Running score totals for each player in a game, updated as each score is accepted so that no query has to rescan
+ * the board.
+ * <p/>
+ * The upper area earns a bonus of {@value #UPPER_BONUS} once its subtotal reaches {@value #UPPER_BONUS_THRESHOLD}.
+ * Only the game's own thread records scores; any thread may read the totals.
+ */
+public class ScoreLedger {
+
+    public static final int UPPER_BONUS_THRESHOLD = 63;
+
+    public static final int UPPER_BONUS = 35;
+
+    private static final int UPPER_SUBTOTAL = 0;
+
+    private static final int BONUS = 1;
+
+    private static final int TOP_TOTAL = 2;
+
+    private static final int BOTTOM_TOTAL = 3;
+
+    private static final int GRAND_TOTAL = 4;
+
+    private static final int FIELDS = 5;
+
+    private final AtomicIntegerArray players;
+
+    private final AtomicIntegerArray totals;
+
+    private int rows;
+
+    /**
+     * @param capacity the most players the game can have.
+     */
+    public ScoreLedger(final int capacity) {
+        this.players = new AtomicIntegerArray(capacity);
+        this.totals = new AtomicIntegerArray(capacity * FIELDS);
+        for (int row = 0; row < capacity; row++) {
+            this.players.set(row, ScoreBoard.NO_PLAYER);
+        }
+    }
+
+    /**
+     * Record an accepted score.
+     *
+     * @param playerID    the player.
+     * @param scoringPart 0 for upper board, 1 for lower.
+     * @param score       the value.
+     */
+    public void record(final int playerID, final int scoringPart, final int score) {
+        final int row = this.rowFor(playerID);
+        if (row < 0) {
+            throw new IllegalStateException("No room in the ledger for player " + playerID);
+        }
+        final int base = row * FIELDS;
+        if (scoringPart == 0) {
+            final int subtotal = this.totals.addAndGet(base + UPPER_SUBTOTAL, score);
+            final int bonus = subtotal >= UPPER_BONUS_THRESHOLD ? UPPER_BONUS : 0;
+            this.totals.set(base + BONUS, bonus);
+            this.totals.set(base + TOP_TOTAL, subtotal + bonus);
+        } else {
+            this.totals.addAndGet(base + BOTTOM_TOTAL, score);
+        }
+        this.totals.set(base + GRAND_TOTAL, this.totals.get(base + TOP_TOTAL) + this.totals.get(base + BOTTOM_TOTAL));
+    }
+
+    public int getUpperSubtotal(final int playerID) {
+        return this.get(playerID, UPPER_SUBTOTAL);
+    }
+
+    public int getUpperBonus(final int playerID) {
+        return this.get(playerID, BONUS);
+    }
+
+    public int getTopTotal(final int playerID) {
+        return this.get(playerID, TOP_TOTAL);
+    }
+
+    public int getBottomTotal(final int playerID) {
+        return this.get(playerID, BOTTOM_TOTAL);
+    }
+
+    public int getGrandTotal(final int playerID) {
+        return this.get(playerID, GRAND_TOTAL);
+    }
+
+    private int get(final int playerID, final int field) {
+        final int row = this.find(playerID);
+        return row < 0 ? 0 : this.totals.get(row * FIELDS + field);
+    }
+
+    private int find(final int playerID) {
+        // Rows are published in order, so a reader stops at the first one not claimed yet.
+        for (int row = 0; row < this.players.length(); row++) {
+            final int id = this.players.get(row);
+            if (id == playerID) {
+                return row;
+            }
+            if (id == ScoreBoard.NO_PLAYER) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private int rowFor(final int playerID) {
+        final int row = this.find(playerID);
+        if (row >= 0 || this.rows == this.players.length()) {
+            return row;
+        }
+        this.players.set(this.rows, playerID);
+        return this.rows++;
+    }
+}
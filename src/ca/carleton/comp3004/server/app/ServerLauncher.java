@@ -1,6 +1,7 @@
 package ca.carleton.comp3004.server.app;
 
 import ca.carleton.comp3004.server.app.net.ServerNetwork;
+import ca.carleton.comp3004.server.app.net.Transport;
 import ca.carleton.comp3004.util.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,6 +9,11 @@ import org.slf4j.LoggerFactory;
 /**
  * Main class for the server.
  * <p/>
+ * Pass {@code --lobby} to keep hosting games in this process until it is killed, rather than stopping once the first
+ * game is over, and {@code --transport=nio} to serve clients from a few selector threads instead of one blocking
+ * thread each (see {@link ca.carleton.comp3004.util.Config} for the related tuning properties).
+ * {@code --transport=virtual} keeps the blocking reads but runs them on virtual threads when the JVM has them.
+ * <p/>
  * Created with IntelliJ IDEA.
  * Date: 23/01/15
  * Time: 6:10 PM
@@ -17,8 +23,20 @@ public class ServerLauncher {
     private static final Logger LOG = LoggerFactory.getLogger(ServerLauncher.class);
 
     public static void main(String[] args) {
-        ServerNetwork network = new ServerNetwork(Config.DEFAULT_PORT, Config.DEFAULT_NUMBER_OF_PLAYERS);
-        LOG.info("Server terminated.");
+        boolean lobby = false;
+        Transport transport = Transport.BLOCKING;
+        for (final String arg : args) {
+            if (arg.equals("--lobby")) {
+                lobby = true;
+            } else if (arg.startsWith("--transport=")) {
+                transport = Transport.fromName(arg.substring("--transport=".length()));
+            } else {
+                LOG.warn("Ignoring unknown argument {}.", arg);
+            }
+        }
+
+        ServerNetwork network = new ServerNetwork(Config.DEFAULT_PORT, Config.DEFAULT_NUMBER_OF_PLAYERS, lobby, transport);
+        LOG.info("Server no longer accepting connections.");
     }
 
 }
@@ -1,15 +1,17 @@
 package ca.carleton.comp3004.server.app;
 
-import ca.carleton.comp3004.server.app.net.PlayerThread;
-import ca.carleton.comp3004.server.app.net.ServerNetwork;
+import ca.carleton.comp3004.server.app.net.PlayerConnection;
+import ca.carleton.comp3004.server.app.net.GameSession;
+import ca.carleton.comp3004.util.ScoringTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import yahtzeeTrace.ScoreTypeConverter;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
+
 
 /**
  * Main game class for the server.
@@ -24,157 +26,185 @@ public class YahtzeeGame {
 
     private static final Logger LOG = LoggerFactory.getLogger(YahtzeeGame.class);
 
-    public BoardEntry[] upperBoard;
+    public final ScoreBoard board = new ScoreBoard();
+
+    public final ScoreLedger ledger;
+
+    private final GameSession session;
 
-    public BoardEntry[] lowerBoard;
+    private final SplittableRandom random;
 
-    private final ServerNetwork network;
+    /**
+     * Each seated player's dice, by player id. A cup also records whether its player has scored this round.
+     */
+    private final Map<Integer, DiceCup> cups = new HashMap<Integer, DiceCup>();
 
     private int round = 1;
 
-    private int playersScoredThisTurn = 0;
+    private boolean over = false;
 
-    public YahtzeeGame(final ServerNetwork network) {
-        this.network = network;
-        this.setupBoard();
+    /**
+     * @param session  the session hosting the game.
+     * @param capacity the most players the game can have.
+     * @param random   the game's dice; each player gets a stream split from it as they are seated.
+     */
+    public YahtzeeGame(final GameSession session, final int capacity, final SplittableRandom random) {
+        this.session = session;
+        this.ledger = new ScoreLedger(capacity);
+        this.random = random;
     }
 
     /**
-     * Gets a score for the player.
+     * Give a newly seated player their dice.
      *
-     * @param player the player to look for.
-     * @return their score.
+     * @param playerID the player.
      */
-    public int getScoreForPlayer(final int player) {
-        int temp = 0;
+    public void addPlayer(final int playerID) {
+        this.cups.put(playerID, new DiceCup(this.random.split()));
+    }
 
-        for (BoardEntry entry : this.upperBoard) {
-            if (entry.playerID == player) {
-                temp += entry.value;
-            }
-        }
-        for (BoardEntry entry : this.lowerBoard) {
-            if (entry.playerID == player) {
-                temp += entry.value;
-            }
+    /**
+     * Forget a player who has left, so the round no longer waits for them.
+     *
+     * @param playerID the player.
+     */
+    public void removePlayer(final int playerID) {
+        this.cups.remove(playerID);
+    }
+
+    /**
+     * Roll a player's dice.
+     *
+     * @param playerID the player.
+     * @param held     bit i set to keep die i.
+     * @return the dice, or null if the player may not roll.
+     */
+    public int[] roll(final int playerID, final int held) {
+        final DiceCup cup = this.cups.get(playerID);
+        if (cup == null || !cup.roll(held)) {
+            LOG.warn("Client {} may not roll again this round.", playerID);
+            return null;
         }
+        return cup.getDice();
+    }
 
-        return temp;
+    /**
+     * Gets a score for the player. Safe to call from any thread.
+     *
+     * @param player the player to look for.
+     * @return their score.
+     */
+    public int getScoreForPlayer(final int player) {
+        return this.ledger.getGrandTotal(player);
     }
 
     /**
      * Attempts to start the next round, if possible.
      */
     public void tryToStartNextRound() {
-        if (this.playersScoredThisTurn == this.network.numberOfPlayers) {
+        if (this.over) {
+            return;
+        }
+        if (this.allScored()) {
             LOG.info("All players have scored this turn, sending next round command.");
-            this.network.startNextRound();
+            this.session.startNextRound();
             this.round++;
+            for (final DiceCup cup : this.cups.values()) {
+                cup.reset();
+            }
 
             if (this.round > YahtzeeGame.MAX_ROUNDS) {
                 LOG.info("Maximum rounds reached. Game over.");
-                final PlayerThread winner = this.determineWinner();
-                this.network.endGame(winner.getUID());
+                final PlayerConnection winner = this.determineWinner();
+                this.session.endGame(winner.getUID());
                 this.gameOver();
+                return;
             }
-
-            this.playersScoredThisTurn = 0;
         }
 
     }
 
+    /**
+     * @return true once every player still in the game has scored this round.
+     */
+    private boolean allScored() {
+        for (final DiceCup cup : this.cups.values()) {
+            if (!cup.hasScored()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Update the board.
      *
-     * @param entry    the entry.
-     * @param playerID the player who made the move.
+     * @param scoringPart 0 for upper board, 1 for lower, -1 for no score.
+     * @param scoringArea index of the array.
+     * @param score       the value.
+     * @param playerID    the player who made the move.
      * @return true if successful.
      */
-    public boolean updateBoardEntry(final String entry, final int playerID) {
-
-        // Deconstruct result
-        final String[] results = entry.split("_");
-        int scoringPart = Integer.parseInt(results[1]);  // 0 for upper board, 1 for lower
-        int scoringArea = Integer.parseInt(results[2]);  // index of the array
-        int score = Integer.parseInt(results[3]);  // the value
-
+    public boolean updateBoardEntry(final int scoringPart, final int scoringArea, final int score, final int playerID) {
+        final DiceCup cup = this.cups.get(playerID);
+        if (cup == null || cup.hasScored()) {
+            LOG.warn("Client {} has already scored this round.", playerID);
+            return false;
+        }
+        final int[] dice = cup.getDice();
         if (scoringPart == -1) {
             LOG.info("Client {} submitted no score for this round.", playerID);
-            this.playersScoredThisTurn++;
+            cup.scored();
             // Note here tracer will not report properly, since the user submitted no score for the round.
-            ServerNetwork.TRACER.traceScore(this.round, playerID, new int[]{0, 0, 0, 0, 0, 0}, 0, ScoreTypeConverter.getScoreTypeFromInt(scoringPart,scoringArea));
+            this.session.tracer.traceScore(this.round, playerID, dice, 0, ScoreTypeConverter.getScoreTypeFromInt(scoringPart,scoringArea));
+            return false;
+        } else if (ScoringTable.category(scoringPart, scoringArea) < 0) {
+            LOG.warn("Board location {}/{} is not on the board.", scoringPart, scoringArea);
             return false;
-        } else if (scoringPart == 0) {
+        } else if (!cup.hasRolled() || ScoringTable.score(dice, scoringPart, scoringArea) != score) {
+            LOG.warn("Client {} submitted {} for {}/{}, which its dice {} do not score.", playerID, score, scoringPart,
+                    scoringArea, Arrays.toString(dice));
+            return false;
+        } else if (this.board.claim(scoringPart, scoringArea, playerID, score)) {
             // no entry yet, valid move.
-            if (this.upperBoard[scoringArea].value == 0) {
-                this.upperBoard[scoringArea].playerID = playerID;
-                this.upperBoard[scoringArea].value = score;
-                LOG.info("Successfully entered score.");
-                ServerNetwork.TRACER.traceScore(this.round, playerID, new int[]{0, 0, 0, 0, 0, 0}, score, ScoreTypeConverter.getScoreTypeFromInt(scoringPart, scoringArea));
-            } else {
-                LOG.warn("Upper Board Location already taken by another player.");
-                return false;
-            }
+            cup.scored();
+            this.ledger.record(playerID, scoringPart, score);
+            LOG.info("Successfully entered score.");
+            this.session.tracer.traceScore(this.round, playerID, dice, score, ScoreTypeConverter.getScoreTypeFromInt(scoringPart, scoringArea));
         } else {
-            // no entry yet, valid move.
-            if (this.lowerBoard[scoringArea].value == 0) {
-                this.lowerBoard[scoringArea].playerID = playerID;
-                this.lowerBoard[scoringArea].value = score;
-                LOG.info("Successfully entered score.");
-                ServerNetwork.TRACER.traceScore(this.round, playerID, new int[]{0, 0, 0, 0, 0, 0}, score, ScoreTypeConverter.getScoreTypeFromInt(scoringPart, scoringArea));
-            } else {
-                LOG.warn("Lower Board Location already taken by another player.");
-                return false;
-            }
+            LOG.warn("Board location {}/{} already taken by another player.", scoringPart, scoringArea);
+            return false;
         }
 
-        this.playersScoredThisTurn++;
-
         if (this.isGameOver()) {
             LOG.info("All filled slots have been determined. Calculating winner and sending message.");
-            final PlayerThread winner = this.determineWinner();
-            this.network.endGame(winner.getUID());
+            final PlayerConnection winner = this.determineWinner();
+            this.session.endGame(winner.getUID());
             this.gameOver();
         }
         return true;
     }
 
     /**
-     * Setup the server side board.
+     * Ends the game, disconnecting the players and releasing the session.
      */
-    private void setupBoard() {
-        this.upperBoard = new BoardEntry[6];
-        this.lowerBoard = new BoardEntry[7];
-
-        for (int i = 0; i < this.upperBoard.length; i++) {
-            this.upperBoard[i] = new BoardEntry();
+    public void gameOver() {
+        if (this.over) {
+            return;
         }
+        this.over = true;
 
-        for (int i = 0; i < this.lowerBoard.length; i++) {
-            this.lowerBoard[i] = new BoardEntry();
-        }
+        this.session.tracer.traceEndGame();
+        this.session.finish();
+
+        LOG.info("Threads removed, game {} released.", this.session.getId());
     }
 
     /**
-     * Ends the game.
+     * @return true once the game has ended.
      */
-    public void gameOver() {
-
-        ServerNetwork.TRACER.traceEndGame();
-
-        final List<Integer> ids = new ArrayList<Integer>();
-
-        for (final PlayerThread players : this.network.players) {
-            ids.add(players.getUID());
-        }
-
-        for (final Integer id : ids) {
-            this.network.removePlayer(id);
-        }
-
-        LOG.info("Threads removed, server exiting.");
-        System.exit(0);
-
+    public boolean isOver() {
+        return this.over;
     }
 
     /**
@@ -183,20 +213,7 @@ public class YahtzeeGame {
      * @return true if yes, false if no.
      */
     private boolean isGameOver() {
-        int unfilledSlots = 0;
-
-        for (BoardEntry entry : this.upperBoard) {
-            if (entry.value == 0 && entry.playerID == -1) {
-                unfilledSlots++;
-            }
-        }
-        for (BoardEntry entry : this.lowerBoard) {
-            if (entry.value == 0 && entry.playerID == -1) {
-                unfilledSlots++;
-            }
-        }
-
-        return unfilledSlots == 0;
+        return this.board.isFull();
     }
 
     /**
@@ -204,33 +221,18 @@ public class YahtzeeGame {
      *
      * @return The thread that won.
      */
-    private PlayerThread determineWinner() {
-        final Map<PlayerThread, Integer> scores = new HashMap<PlayerThread, Integer>();
-
-        for (PlayerThread player : this.network.players) {
-            if (!scores.containsKey(player)) {
-                scores.put(player, 0);
-            }
-            for (BoardEntry entry : this.upperBoard) {
-                if (entry.playerID == player.getUID()) {
-                    scores.put(player, scores.get(player) + entry.value);
-                }
-            }
-            for (BoardEntry entry : this.lowerBoard) {
-                if (entry.playerID == player.getUID()) {
-                    scores.put(player, scores.get(player) + entry.value);
-                }
-            }
-        }
-
+    private PlayerConnection determineWinner() {
         int currHighest = 0;
-        PlayerThread toReturn = null;
-
-        for (PlayerThread player : scores.keySet()) {
-            ServerNetwork.TRACER.tracePlayerTotal(player.getUID(), 0, 0, 0, 0, 0, scores.get(player));
-            if (scores.get(player) >= currHighest) {
+        PlayerConnection toReturn = null;
+
+        for (final PlayerConnection player : this.session.players) {
+            final int id = player.getUID();
+            final int total = this.ledger.getGrandTotal(id);
+            this.session.tracer.tracePlayerTotal(id, this.ledger.getUpperSubtotal(id), this.ledger.getUpperBonus(id),
+                    this.ledger.getTopTotal(id), 0, this.ledger.getBottomTotal(id), total);
+            if (total >= currHighest) {
                 toReturn = player;
-                currHighest = scores.get(player);
+                currHighest = total;
             }
         }
         return toReturn;
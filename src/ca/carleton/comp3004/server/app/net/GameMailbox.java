@@ -0,0 +1,131 @@
+package ca.carleton.comp3004.server.app.net;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The event queue of one game. Events run one at a time, in the order they were posted, on a pool shared by every
+ * game, so a game's state is only ever touched by one thread at a time and needs no locking.
+ * <p/>
+ * A game gives up its pool thread after a batch of events so a busy table cannot starve the others. The time each
+ * event spent waiting to run is recorded as the game's queueing delay.
+ */
+public class GameMailbox implements Executor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GameMailbox.class);
+
+    private static final int BATCH = 64;
+
+    private final Queue<Event> events = new ConcurrentLinkedQueue<Event>();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final Executor pool;
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            GameMailbox.this.drain();
+        }
+    };
+
+    private volatile long eventCount;
+
+    private volatile long totalDelay;
+
+    private volatile long maxDelay;
+
+    /**
+     * @param pool the threads that run the games.
+     */
+    public GameMailbox(final Executor pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Post an event to the game.
+     *
+     * @param task the event.
+     */
+    @Override
+    public void execute(final Runnable task) {
+        this.events.add(new Event(task, System.nanoTime()));
+        this.schedule();
+    }
+
+    /**
+     * @return the number of events run so far.
+     */
+    public long getEventCount() {
+        return this.eventCount;
+    }
+
+    /**
+     * @return the mean time, in microseconds, events waited before running.
+     */
+    public long getMeanDelayMicros() {
+        final long count = this.eventCount;
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(this.totalDelay / count);
+    }
+
+    /**
+     * @return the longest time, in microseconds, an event waited before running.
+     */
+    public long getMaxDelayMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(this.maxDelay);
+    }
+
+    private void schedule() {
+        if (this.scheduled.compareAndSet(false, true)) {
+            try {
+                this.pool.execute(this.drain);
+            } catch (final RejectedExecutionException exception) {
+                // The server is shutting down; the game is gone with it.
+                LOG.debug("Dropping game events, the server is shutting down.");
+            }
+        }
+    }
+
+    private void drain() {
+        for (int i = 0; i < BATCH; i++) {
+            final Event event = this.events.poll();
+            if (event == null) {
+                break;
+            }
+            final long delay = System.nanoTime() - event.posted;
+            this.eventCount++;
+            this.totalDelay += delay;
+            if (delay > this.maxDelay) {
+                this.maxDelay = delay;
+            }
+            try {
+                event.task.run();
+            } catch (final RuntimeException exception) {
+                LOG.error("Game event failed.", exception);
+            }
+        }
+        this.scheduled.set(false);
+        if (!this.events.isEmpty()) {
+            this.schedule();
+        }
+    }
+
+    private static final class Event {
+
+        private final Runnable task;
+
+        private final long posted;
+
+        private Event(final Runnable task, final long posted) {
+            this.task = task;
+            this.posted = posted;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package ca.carleton.comp3004.server.app.net;
+
+import ca.carleton.comp3004.server.app.YahtzeeGame;
+import ca.carleton.comp3004.trace.AsyncTracer;
+import ca.carleton.comp3004.trace.TraceWriter;
+import ca.carleton.comp3004.util.Config;
+import ca.carleton.comp3004.util.OutboundMessage;
+import ca.carleton.comp3004.util.ProtocolMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import yahtzeeTrace.BinaryYahtzeeTracer;
+import yahtzeeTrace.StreamingYahtzeeTracer;
+import yahtzeeTrace.YahtzeeTrace;
+import yahtzeeTrace.YahtzeeTracer;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single game hosted by the server: its players, board and tracer.
+ * <p/>
+ * The lobby in {@link ServerNetwork} fills one session at a time; once full it is started and lives until the game
+ * ends or every player has left, at which point it is handed back to the lobby to be discarded.
+ * <p/>
+ * Everything that changes the game - players joining and leaving, the start, their messages - is posted to the game's
+ * {@link GameMailbox} and runs there one event at a time, so the game's state needs no locking and games never contend
+ * with each other. Only the seat count, which the lobby needs straight away, is shared.
+ * <p/>
+ * Score requests are the exception: the board can be read from any thread, so when no submission is waiting in the
+ * mailbox they are answered straight from the connection's thread without queuing behind other events.
+ */
+public class GameSession {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GameSession.class);
+
+    public final YahtzeeTrace tracer;
+
+    public int numberOfPlayers;
+
+    /**
+     * Replaced rather than modified, so other threads can read whichever array is current.
+     */
+    public volatile PlayerConnection[] players;
+
+    private final int id;
+
+    private final int capacity;
+
+    private final ServerNetwork network;
+
+    private final YahtzeeGame game;
+
+    private final GameMailbox mailbox;
+
+    /**
+     * Players seated so far, as seen by the lobby. Counts joins that are still waiting in the mailbox.
+     */
+    private final AtomicInteger seats = new AtomicInteger();
+
+    /**
+     * Submissions posted but not processed yet. While there are any, the board may not reflect a player's last move.
+     */
+    private final AtomicInteger pendingSubmissions = new AtomicInteger();
+
+    private volatile boolean started;
+
+    private volatile boolean finished;
+
+    /**
+     * @param network     the server.
+     * @param id          the id of this game within the server.
+     * @param capacity    the number of players to wait for.
+     * @param gameThreads the threads that run the games.
+     * @param seed        seed for the game's dice.
+     */
+    public GameSession(final ServerNetwork network, final int id, final int capacity, final Executor gameThreads,
+                       final long seed) {
+        this(network, id, capacity, gameThreads, seed, newTracer(Config.TRACER, network.getTraceWriter()));
+    }
+
+    /**
+     * @param network     the server, or null for a game hosted on its own (the benchmarks run one this way).
+     * @param id          the id of this game within the server.
+     * @param capacity    the number of players to wait for.
+     * @param gameThreads the threads that run the games.
+     * @param seed        seed for the game's dice.
+     * @param tracer      the game's tracer.
+     */
+    public GameSession(final ServerNetwork network, final int id, final int capacity, final Executor gameThreads,
+                       final long seed, final YahtzeeTrace tracer) {
+        this.network = network;
+        this.tracer = tracer;
+        this.id = id;
+        this.capacity = capacity;
+        this.players = new PlayerConnection[0];
+        this.mailbox = new GameMailbox(gameThreads);
+        this.game = new YahtzeeGame(this, capacity, new SplittableRandom(seed));
+        LOG.info("Game {} dice seed {}.", id, seed);
+    }
+
+    /**
+     * Add a client to this game.
+     *
+     * @param player the client's connection.
+     * @return true if the game is now full.
+     * @throws IOException
+     */
+    public boolean addPlayer(final PlayerConnection player) throws IOException {
+        LOG.info("Game {} accepting client: {}", this.id, player);
+        player.open();
+        this.mailbox.execute(new Runnable() {
+            @Override
+            public void run() {
+                GameSession.this.seat(player);
+            }
+        });
+        return this.seats.incrementAndGet() >= this.capacity;
+    }
+
+    /**
+     * Tells the clients to start the game.
+     */
+    public void start() {
+        this.mailbox.execute(new Runnable() {
+            @Override
+            public void run() {
+                GameSession.this.startGame();
+            }
+        });
+    }
+
+    /**
+     * Remove a client.
+     *
+     * @param id the player to remove.
+     */
+    public void removePlayer(final int id) {
+        this.mailbox.execute(new Runnable() {
+            @Override
+            public void run() {
+                GameSession.this.dropPlayer(id);
+            }
+        });
+    }
+
+    /**
+     * Handle a decoded message from a client.
+     *
+     * @param message  the message sent. Copied, so the caller may reuse it once this returns.
+     * @param clientID the client sending it.
+     */
+    public void handle(final ProtocolMessage message, final int clientID) {
+        if (message.type == ProtocolMessage.UNKNOWN) {
+            return;
+        }
+        if (message.type == ProtocolMessage.SCORE_REQUEST && this.answerScore(clientID)) {
+            return;
+        }
+        final ProtocolMessage copy = message.copy();
+        if (copy.type == ProtocolMessage.SUBMIT) {
+            this.pendingSubmissions.incrementAndGet();
+        }
+        this.mailbox.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    GameSession.this.process(copy, clientID);
+                } finally {
+                    if (copy.type == ProtocolMessage.SUBMIT) {
+                        GameSession.this.pendingSubmissions.decrementAndGet();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Answer a score request from the board directly, if it is up to date.
+     *
+     * @param clientID the client asking.
+     * @return false if the request has to go through the mailbox instead.
+     */
+    private boolean answerScore(final int clientID) {
+        if (!this.started || this.finished || this.pendingSubmissions.get() != 0) {
+            return false;
+        }
+        for (final PlayerConnection player : this.players) {
+            if (player != null && player.getUID() == clientID) {
+                LOG.info("Sending score response...");
+                player.send(OutboundMessage.of(ProtocolMessage.scoreResponse(clientID, this.game.getScoreForPlayer(clientID))));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells the clients to start the next round. Called by the game, from the mailbox.
+     */
+    public void startNextRound() {
+        this.broadcast(ProtocolMessage.nextRound());
+        LOG.info("Sent next round command to clients.");
+    }
+
+    /**
+     * Tells the clients to end the game. Called by the game, from the mailbox.
+     *
+     * @param winningPlayerID the winner.
+     */
+    public void endGame(final int winningPlayerID) {
+        LOG.info("Sending out game over message.");
+        this.broadcast(ProtocolMessage.gameOver(winningPlayerID));
+    }
+
+    /**
+     * Disconnects the remaining players and hands the session back to the lobby. Called from the mailbox; safe to
+     * call more than once.
+     */
+    public void finish() {
+        if (this.finished) {
+            return;
+        }
+        this.finished = true;
+
+        for (final PlayerConnection player : this.players.clone()) {
+            this.dropPlayer(player.getUID());
+        }
+
+        LOG.info("Game {} finished, releasing it. {} events, queueing delay mean {} us, max {} us.", this.id,
+                this.mailbox.getEventCount(), this.mailbox.getMeanDelayMicros(), this.mailbox.getMaxDelayMicros());
+        if (this.network != null) {
+            this.network.gameFinished(this);
+        }
+    }
+
+    /**
+     * @return true once the game has been played out (or abandoned).
+     */
+    public boolean isFinished() {
+        return this.finished;
+    }
+
+    /**
+     * @return true if no more players can join.
+     */
+    public boolean isFull() {
+        return this.seats.get() >= this.capacity;
+    }
+
+    /**
+     * @return the number of players seated, including any whose join has not been processed yet.
+     */
+    public int getSeatCount() {
+        return this.seats.get();
+    }
+
+    /**
+     * @return the id of this game within the server.
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * @return the game's event queue.
+     */
+    public GameMailbox getMailbox() {
+        return this.mailbox;
+    }
+
+    private void seat(final PlayerConnection player) {
+        final PlayerConnection[] newArray = new PlayerConnection[this.numberOfPlayers + 1];
+        System.arraycopy(this.players, 0, newArray, 0, this.numberOfPlayers);
+        newArray[this.numberOfPlayers] = player;
+        this.players = newArray;
+        this.numberOfPlayers++;
+        this.game.addPlayer(player.getUID());
+
+        player.start();
+    }
+
+    private void startGame() {
+        this.started = true;
+        if (this.numberOfPlayers == 0) {
+            LOG.info("Every player left game {} before it started.", this.id);
+            this.finish();
+            return;
+        }
+        this.tracer.traceNewGame(this.numberOfPlayers);
+        try {
+            this.broadcast(ProtocolMessage.start());
+        } catch (final Exception exception) {
+            LOG.error("Error with communication with clients.", exception);
+        }
+
+        LOG.info("Sent start game commands to the clients of game {}.", this.id);
+    }
+
+    private void dropPlayer(final int id) {
+        final int index = this.findPlayer(id);
+        if (index >= 0) {
+            PlayerConnection threadToRemove = this.players[index];
+            LOG.info("Removing client thread {}.", threadToRemove);
+            // shift clients into a new array; the published one may still be read by other threads.
+            final PlayerConnection[] newArray = new PlayerConnection[this.numberOfPlayers - 1];
+            System.arraycopy(this.players, 0, newArray, 0, index);
+            System.arraycopy(this.players, index + 1, newArray, index, this.numberOfPlayers - index - 1);
+
+            this.players = newArray;
+            this.numberOfPlayers--;
+            this.game.removePlayer(id);
+
+            try {
+                threadToRemove.close();
+            } catch (final IOException exception) {
+                LOG.error("Error closing client thread!", exception);
+            }
+
+            LOG.info("Removed played {}. New player count --> {}.", id, this.numberOfPlayers);
+
+            if (!this.started) {
+                // Free the seat for someone else.
+                this.seats.decrementAndGet();
+                return;
+            }
+            if (this.finished) {
+                return;
+            }
+
+            this.tracer.tracePlayerDropped(id);
+
+            if (this.numberOfPlayers == 0) {
+                LOG.info("Every player has left game {}. Ending it.", this.id);
+                this.finish();
+            } else {
+                this.game.tryToStartNextRound();
+            }
+        }
+    }
+
+    private void process(final ProtocolMessage message, final int clientID) {
+        if (message.type == ProtocolMessage.QUIT) {
+            LOG.info("Removing client {}.", clientID);
+            final int index = this.findPlayer(clientID);
+            if (index != -1) {
+                this.players[index].send(OutboundMessage.of(ProtocolMessage.quit()));
+                this.dropPlayer(clientID);
+            }
+            return;
+        }
+
+        final int index = this.findPlayer(clientID);
+        if (!this.started || this.finished) {
+            LOG.info("Ignoring {} from client {}, game {} is not in progress.", message, clientID, this.id);
+        } else if (index == -1) {
+            LOG.info("Ignoring {} from client {}, no longer in game {}.", message, clientID, this.id);
+        } else {
+            // Handle all commands from here.
+            LOG.info("Received {} from client {}.", message, clientID);
+
+            if (message.type == ProtocolMessage.SUBMIT) {
+                if (this.game.updateBoardEntry(message.scoringPart, message.scoringArea, message.score, clientID)) {
+                    LOG.info("Sending out update command.");
+                    this.broadcast(ProtocolMessage.update(clientID, message.scoringPart, message.scoringArea, message.score));
+                } else {
+                    if (!(message.scoringPart == -1)) {
+                        LOG.info("Sending INVALID (try again) reply.");
+                        PlayerConnection player = this.players[index];
+                        player.send(OutboundMessage.of(ProtocolMessage.retry(player.getUID())));
+                    } else {
+                        LOG.info("Ignore submission, was invalid.");
+                    }
+                }
+                this.game.tryToStartNextRound();
+            } else if (message.type == ProtocolMessage.ROLL) {
+                final int[] dice = this.game.roll(clientID, message.held);
+                if (dice != null) {
+                    this.players[index].send(OutboundMessage.of(ProtocolMessage.rolled(dice)));
+                }
+            } else if (message.type == ProtocolMessage.SCORE_REQUEST) {
+                LOG.info("Sending score response...");
+                int score = this.game.getScoreForPlayer(clientID);
+                PlayerConnection player = this.players[index];
+                player.send(OutboundMessage.of(ProtocolMessage.scoreResponse(player.getUID(), score)));
+            } else {
+                LOG.warn("Unexpected message {} from client {}.", message, clientID);
+            }
+        }
+    }
+
+    /**
+     * Send the same message to every player. It is encoded once per wire format and the bytes are shared by all the
+     * recipients.
+     *
+     * @param message the message.
+     */
+    private void broadcast(final ProtocolMessage message) {
+        final OutboundMessage outbound = OutboundMessage.of(message);
+        for (final PlayerConnection player : this.players) {
+            player.send(outbound);
+        }
+    }
+
+    /**
+     * Find a player (index into the array) from the clientID.
+     *
+     * @param id the UID.
+     * @return the index.
+     */
+    private int findPlayer(final int id) {
+        for (int i = 0; i < this.numberOfPlayers; i++) {
+            if (this.players[i].getUID() == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The tracer for a new game.
+     *
+     * @param name   dom, streaming or binary, see {@link Config#TRACER}.
+     * @param writer the server's background trace writer, or null to trace on the game's thread.
+     * @return the tracer.
+     */
+    private static YahtzeeTrace newTracer(final String name, final TraceWriter writer) {
+        final YahtzeeTrace tracer;
+        if ("dom".equals(name)) {
+            tracer = new YahtzeeTracer();
+        } else if ("streaming".equals(name)) {
+            tracer = new StreamingYahtzeeTracer();
+        } else if ("binary".equals(name)) {
+            tracer = new BinaryYahtzeeTracer(Config.TRACE_GZIP);
+        } else {
+            throw new IllegalArgumentException("Unknown tracer: " + name);
+        }
+        return writer == null ? tracer : new AsyncTracer(tracer, writer);
+    }
+}
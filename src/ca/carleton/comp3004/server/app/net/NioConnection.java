@@ -0,0 +1,307 @@
+package ca.carleton.comp3004.server.app.net;
+
+import ca.carleton.comp3004.util.BinaryCodec;
+import ca.carleton.comp3004.util.Config;
+import ca.carleton.comp3004.util.MalformedMessageException;
+import ca.carleton.comp3004.util.NetworkConstants;
+import ca.carleton.comp3004.util.OutboundMessage;
+import ca.carleton.comp3004.util.ProtocolMessage;
+import ca.carleton.comp3004.util.TextCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Non-blocking counterpart of {@link PlayerThread}. Reads are framed into lines straight out of the channel's buffer
+ * and handed to the game; writes are queued and flushed by the owning {@link NioEventLoop}, as many at a time as the
+ * socket will take.
+ * <p/>
+ * The loop that drains the queue can never wait for room in it, so under {@link OverflowPolicy#BLOCK} a message sent
+ * from the loop itself (the HELLO reply, or a score answered straight from the board) disconnects the client instead.
+ */
+public class NioConnection implements PlayerConnection {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioConnection.class);
+
+    private static final int MAX_GATHER = 16;
+
+    private final int UID;
+
+    private final SocketChannel channel;
+
+    private final NioEventLoop loop;
+
+    private final GameSession server;
+
+    private final ByteBuffer in = ByteBuffer.allocate(Config.MAX_LINE_LENGTH);
+
+    private final OutboundQueue out = new OutboundQueue(Config.OUTBOUND_QUEUE_LIMIT,
+            OverflowPolicy.fromName(Config.OUTBOUND_OVERFLOW), Config.OUTBOUND_BLOCK_MILLIS);
+
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+
+    private final AtomicBoolean writeRequested = new AtomicBoolean();
+
+    private final ReentrantLock sendLock = new ReentrantLock();
+
+    private final ProtocolMessage message = new ProtocolMessage();
+
+    private final TextCodec decoder = new TextCodec();
+
+    private boolean binary;
+
+    private SelectionKey key;
+
+    private volatile boolean closing;
+
+    private volatile boolean done;
+
+    public NioConnection(final GameSession session, final SocketChannel channel, final NioEventLoop loop) throws IOException {
+        this.server = session;
+        this.channel = channel;
+        this.loop = loop;
+        this.UID = ((InetSocketAddress) channel.getRemoteAddress()).getPort();
+    }
+
+    /**
+     * Configure the channel for non-blocking use.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void open() throws IOException {
+        LOG.info("Opening channel for client {}", this.UID);
+        this.channel.configureBlocking(false);
+    }
+
+    /**
+     * Hand the channel to its event loop.
+     */
+    @Override
+    public void start() {
+        this.loop.register(this);
+    }
+
+    /**
+     * Queue a message for the client; the event loop writes it. The queue holds views of the message's shared bytes,
+     * so a broadcast costs no copying per recipient.
+     *
+     * @param message the message.
+     */
+    @Override
+    public void send(final OutboundMessage message) {
+        if (this.done || this.closing || this.out.isOverflowed()) {
+            return;
+        }
+        final boolean queued;
+        this.sendLock.lock();
+        try {
+            queued = this.out.offer(message.buffer(this.binary), Thread.currentThread() != this.loop);
+        } finally {
+            this.sendLock.unlock();
+        }
+        if (queued) {
+            LOG.debug("Queued {} for client {}.", message, this.UID);
+        } else if (this.out.isOverflowed()) {
+            LOG.warn("Client ID -- {}. Too far behind, disconnecting.", this.UID);
+        } else {
+            LOG.warn("Client ID -- {}. Too far behind, dropped {}.", this.UID, message);
+            return;
+        }
+        this.requestWrite();
+    }
+
+    /**
+     * Answer a client's HELLO. If we speak its version, the reply is the last text message it gets from us.
+     *
+     * @param version the version offered.
+     */
+    private void hello(final int version) {
+        if (!Config.BINARY_PROTOCOL || version < NetworkConstants.BINARY_PROTOCOL_VERSION) {
+            LOG.info("Client {} offered protocol version {}, staying on text.", this.UID, version);
+            return;
+        }
+        this.sendLock.lock();
+        try {
+            this.send(OutboundMessage.of(ProtocolMessage.hello(NetworkConstants.BINARY_PROTOCOL_VERSION)));
+            this.binary = true;
+            LOG.info("Client {} switched to the binary protocol.", this.UID);
+        } finally {
+            this.sendLock.unlock();
+        }
+    }
+
+    /**
+     * Close once everything already queued has been written.
+     */
+    @Override
+    public void close() {
+        this.closing = true;
+        this.requestWrite();
+    }
+
+    @Override
+    public int getUID() {
+        return this.UID;
+    }
+
+    /**
+     * Called on the loop thread to attach the channel to its selector.
+     *
+     * @param selector the loop's selector.
+     */
+    void register(final Selector selector) {
+        if (this.done) {
+            return;
+        }
+        try {
+            this.key = this.channel.register(selector, SelectionKey.OP_READ, this);
+            // Anything queued before registration still needs flushing.
+            this.onWritable();
+        } catch (final ClosedChannelException exception) {
+            this.dropped("channel closed before registration");
+        }
+    }
+
+    /**
+     * Read what is available and pass every complete message - text line or binary frame - to the game.
+     */
+    void onReadable() {
+        try {
+            if (this.channel.read(this.in) < 0) {
+                this.dropped("connection closed by the client");
+                return;
+            }
+        } catch (final IOException exception) {
+            this.dropped("error reading input - connection may be closed");
+            return;
+        }
+
+        this.in.flip();
+        final byte[] bytes = this.in.array();
+        while (this.in.hasRemaining() && !this.done && !this.closing && !this.out.isOverflowed()) {
+            final int start = this.in.position();
+            if (BinaryCodec.isBinary(bytes[start])) {
+                try {
+                    if (!BinaryCodec.decode(this.in, this.message)) {
+                        break;
+                    }
+                } catch (final ProtocolException exception) {
+                    this.dropped(exception.getMessage());
+                    return;
+                }
+            } else {
+                int end = start;
+                while (end < this.in.limit() && bytes[end] != '\n') {
+                    end++;
+                }
+                if (end == this.in.limit()) {
+                    break;
+                }
+                this.in.position(end + 1);
+                if (end > start && bytes[end - 1] == '\r') {
+                    end--;
+                }
+                try {
+                    this.decoder.decode(bytes, start, end - start, this.message);
+                } catch (final MalformedMessageException exception) {
+                    LOG.warn("Client ID -- {}. {}", this.UID, exception.getMessage());
+                    continue;
+                }
+            }
+
+            if (this.message.type == ProtocolMessage.HELLO) {
+                this.hello(this.message.version);
+            } else {
+                this.server.handle(this.message, this.UID);
+            }
+        }
+        this.in.compact();
+
+        if (!this.in.hasRemaining()) {
+            LOG.warn("Client ID -- {}. Line longer than {} bytes.", this.UID, Config.MAX_LINE_LENGTH);
+            this.dropped("line too long");
+        }
+    }
+
+    /**
+     * Write as much of the queue as the socket will take, in one gathering write where possible.
+     */
+    void onWritable() {
+        this.writeRequested.set(false);
+        if (this.done || this.key == null) {
+            return;
+        }
+        if (this.out.isOverflowed()) {
+            this.dropped("outbound queue full");
+            return;
+        }
+        try {
+            while (!this.out.isEmpty()) {
+                final int count = this.out.peek(this.gather);
+                this.channel.write(this.gather, 0, count);
+
+                for (int i = 0; i < count; i++) {
+                    if (this.gather[i].hasRemaining()) {
+                        break;
+                    }
+                    this.out.poll();
+                }
+                if (this.gather[count - 1].hasRemaining()) {
+                    // Socket buffer full, wait to be told it is writable again.
+                    this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            this.key.interestOps(SelectionKey.OP_READ);
+
+            if (this.closing) {
+                this.closeChannel();
+            }
+        } catch (final IOException exception) {
+            LOG.error("Error sending message!", exception);
+            this.dropped("error writing output");
+        }
+    }
+
+    private void requestWrite() {
+        if (this.writeRequested.compareAndSet(false, true)) {
+            this.loop.requestWrite(this);
+        }
+    }
+
+    private void dropped(final String reason) {
+        if (this.done) {
+            return;
+        }
+        LOG.warn("Client ID -- {}. {}.", this.UID, reason);
+        this.closeChannel();
+        if (!this.closing) {
+            this.server.removePlayer(this.UID);
+        }
+    }
+
+    private void closeChannel() {
+        this.done = true;
+        this.out.close();
+        try {
+            this.channel.close();
+        } catch (final IOException exception) {
+            LOG.error("Error closing client channel!", exception);
+        }
+    }
+
+    public String toString() {
+        return "NioConnection : " + this.UID;
+    }
+}
@@ -0,0 +1,115 @@
+package ca.carleton.comp3004.server.app.net;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A selector thread serving a share of the NIO connections.
+ * <p/>
+ * Registration and write interest are requested from other threads through queues and applied here, so selection keys
+ * are only ever touched by the loop itself.
+ */
+public class NioEventLoop extends Thread {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioEventLoop.class);
+
+    private final Selector selector;
+
+    private final Queue<NioConnection> registrations = new ConcurrentLinkedQueue<NioConnection>();
+
+    private final Queue<NioConnection> writeRequests = new ConcurrentLinkedQueue<NioConnection>();
+
+    private volatile boolean done;
+
+    public NioEventLoop(final int index) throws IOException {
+        super("nio-loop-" + index);
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Start serving a connection.
+     *
+     * @param connection the connection.
+     */
+    public void register(final NioConnection connection) {
+        this.registrations.add(connection);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Ask the loop to flush a connection's outbound messages.
+     *
+     * @param connection the connection.
+     */
+    public void requestWrite(final NioConnection connection) {
+        this.writeRequests.add(connection);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Stop the loop and close its selector. Writes already requested are given one last chance to go out.
+     */
+    public void shutdown() {
+        this.done = true;
+        this.selector.wakeup();
+    }
+
+    public void run() {
+        LOG.info("{} running.", this.getName());
+        while (!this.done) {
+            try {
+                this.selector.select();
+                this.processRegistrations();
+                this.processWriteRequests();
+
+                final Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    final NioConnection connection = (NioConnection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.onWritable();
+                        }
+                    } catch (final CancelledKeyException exception) {
+                        // Closed from another thread while selected, nothing left to do.
+                    }
+                }
+            } catch (final IOException exception) {
+                LOG.error("Selector failure in {}.", this.getName(), exception);
+            }
+        }
+
+        this.processWriteRequests();
+        try {
+            this.selector.close();
+        } catch (final IOException exception) {
+            LOG.error("Error closing selector.", exception);
+        }
+    }
+
+    private void processRegistrations() {
+        NioConnection connection;
+        while ((connection = this.registrations.poll()) != null) {
+            connection.register(this.selector);
+        }
+    }
+
+    private void processWriteRequests() {
+        NioConnection connection;
+        while ((connection = this.writeRequests.poll()) != null) {
+            connection.onWritable();
+        }
+    }
+}
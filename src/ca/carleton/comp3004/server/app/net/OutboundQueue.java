@@ -0,0 +1,167 @@
+package ca.carleton.comp3004.server.app.net;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Encoded messages waiting to be written to one client, filled by the game and drained by the connection's I/O.
+ * <p/>
+ * The queue is bounded by message count. When a client stops reading and the queue fills up, the {@link OverflowPolicy}
+ * decides whether new messages are dropped, the client is marked for disconnection, or the sender waits for room.
+ * Waiting is bounded: senders run on game threads shared by every game, so a client that never catches up is marked
+ * for disconnection once the wait runs out rather than holding up other tables indefinitely.
+ */
+public class OutboundQueue {
+
+    private final Queue<ByteBuffer> queue = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final int limit;
+
+    private final OverflowPolicy policy;
+
+    private final long blockNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notFull = this.lock.newCondition();
+
+    private volatile int waiting;
+
+    private volatile boolean overflowed;
+
+    private volatile boolean closed;
+
+    /**
+     * @param limit       messages that may be queued.
+     * @param policy      what to do once that many are.
+     * @param blockMillis how long a sender waits for room under {@link OverflowPolicy#BLOCK}.
+     */
+    public OutboundQueue(final int limit, final OverflowPolicy policy, final long blockMillis) {
+        this.limit = limit;
+        this.policy = policy;
+        this.blockNanos = TimeUnit.MILLISECONDS.toNanos(blockMillis);
+    }
+
+    /**
+     * Queue a message.
+     *
+     * @param buffer   the encoded message.
+     * @param mayBlock false if the caller must not wait even under {@link OverflowPolicy#BLOCK}, e.g. because it is
+     *                 the thread that drains the queue. The client is marked for disconnection instead.
+     * @return true if the message was queued. If not, {@link #isOverflowed()} says whether the client should be
+     * disconnected or the message was simply dropped.
+     */
+    public boolean offer(final ByteBuffer buffer, final boolean mayBlock) {
+        while (!this.closed) {
+            final int current = this.size.get();
+            if (current < this.limit) {
+                if (this.size.compareAndSet(current, current + 1)) {
+                    this.queue.add(buffer);
+                    return true;
+                }
+            } else if (this.policy == OverflowPolicy.DROP) {
+                return false;
+            } else if (this.policy == OverflowPolicy.DISCONNECT || !mayBlock) {
+                this.overflowed = true;
+                return false;
+            } else if (!this.awaitRoom()) {
+                this.overflowed = !this.closed;
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copy the messages at the head of the queue, without removing them, for a gathering write.
+     *
+     * @param buffers where to copy them.
+     * @return how many were copied.
+     */
+    public int peek(final ByteBuffer[] buffers) {
+        int count = 0;
+        final Iterator<ByteBuffer> iterator = this.queue.iterator();
+        while (count < buffers.length && iterator.hasNext()) {
+            buffers[count++] = iterator.next();
+        }
+        return count;
+    }
+
+    /**
+     * Remove the message at the head of the queue.
+     *
+     * @return the message, or null if the queue is empty.
+     */
+    public ByteBuffer poll() {
+        final ByteBuffer buffer = this.queue.poll();
+        if (buffer != null) {
+            this.size.decrementAndGet();
+            if (this.waiting > 0) {
+                this.signal();
+            }
+        }
+        return buffer;
+    }
+
+    public boolean isEmpty() {
+        return this.queue.isEmpty();
+    }
+
+    /**
+     * @return true if a message could not be queued and the client should be disconnected.
+     */
+    public boolean isOverflowed() {
+        return this.overflowed;
+    }
+
+    /**
+     * Discard everything queued and refuse new messages. Senders waiting for room give up.
+     */
+    public void close() {
+        this.closed = true;
+        this.queue.clear();
+        this.size.set(0);
+        this.signal();
+    }
+
+    /**
+     * @return false if the queue was still full when the wait ran out, or the wait was interrupted.
+     */
+    private boolean awaitRoom() {
+        this.lock.lock();
+        try {
+            this.waiting++;
+            long remaining = this.blockNanos;
+            while (this.size.get() >= this.limit && !this.closed) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = this.notFull.awaitNanos(remaining);
+            }
+            return true;
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            this.waiting--;
+            this.lock.unlock();
+        }
+    }
+
+    private void signal() {
+        this.lock.lock();
+        try {
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
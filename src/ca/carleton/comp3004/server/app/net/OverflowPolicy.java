@@ -0,0 +1,34 @@
+package ca.carleton.comp3004.server.app.net;
+
+/**
+ * What to do when a client has fallen so far behind that its {@link OutboundQueue} is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Discard the new message. The client misses it but the rest of the table is unaffected.
+     */
+    DROP,
+
+    /**
+     * Disconnect the client; the game carries on without it as if it had left.
+     */
+    DISCONNECT,
+
+    /**
+     * Make the sender wait for room, up to {@code yahtzee.outbound.blockMillis}, then disconnect the client. Everyone
+     * else in the game waits with it, as do other games sharing its game thread, so only suitable when clients are
+     * trusted to keep up.
+     */
+    BLOCK;
+
+    /**
+     * Parse a policy name, ignoring case.
+     *
+     * @param name the name.
+     * @return the policy.
+     */
+    public static OverflowPolicy fromName(final String name) {
+        return OverflowPolicy.valueOf(name.trim().toUpperCase());
+    }
+}
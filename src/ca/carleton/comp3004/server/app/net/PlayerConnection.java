@@ -0,0 +1,48 @@
+package ca.carleton.comp3004.server.app.net;
+
+import ca.carleton.comp3004.util.OutboundMessage;
+import ca.carleton.comp3004.util.ProtocolMessage;
+
+import java.io.IOException;
+
+/**
+ * A connected client, as seen by its game. Implemented once per transport so the game logic does not care how the
+ * bytes get to and from the client.
+ *
+ * @see ca.carleton.comp3004.server.app.net.Transport
+ */
+public interface PlayerConnection {
+
+    /**
+     * Prepare the connection for use.
+     *
+     * @throws IOException
+     */
+    void open() throws IOException;
+
+    /**
+     * Start delivering the client's messages to {@link GameSession#handle(ProtocolMessage, int)}.
+     */
+    void start();
+
+    /**
+     * Send a message to the client, in whichever format it negotiated.
+     *
+     * @param message the message. May be shared with other connections.
+     */
+    void send(OutboundMessage message);
+
+    /**
+     * Close the connection.
+     *
+     * @throws IOException
+     */
+    void close() throws IOException;
+
+    /**
+     * Return the UID for this client.
+     *
+     * @return the uid.
+     */
+    int getUID();
+}
@@ -1,54 +1,137 @@
 package ca.carleton.comp3004.server.app.net;
 
+import ca.carleton.comp3004.util.Config;
+import ca.carleton.comp3004.util.NetworkConstants;
+import ca.carleton.comp3004.util.OutboundMessage;
+import ca.carleton.comp3004.util.ProtocolMessage;
+import ca.carleton.comp3004.util.MalformedMessageException;
+import ca.carleton.comp3004.util.ProtocolReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Thread to handle communications back and forth with the clients.
+ * Handles communications back and forth with a client using blocking I/O. The read loop runs on whichever thread the
+ * session's thread factory provides - a platform thread or a virtual one.
+ * <p/>
+ * Sending only queues the message. A writer task borrowed from a shared executor drains the queue whenever it is not
+ * empty, writing everything pending before a single flush, so a client that stops reading ties up a writer rather than
+ * the game.
  * <p/>
  * Created with IntelliJ IDEA.
  * Date: 23/01/15
  * Time: 6:17 PM
  */
-public class PlayerThread extends Thread {
+public class PlayerThread implements PlayerConnection, Runnable {
 
     private static final Logger LOG = LoggerFactory.getLogger(PlayerThread.class);
 
     private int UID = -1;
 
-    private BufferedReader in;
+    private ProtocolReader in;
+
+    private OutputStream out;
+
+    private WritableByteChannel channel;
+
+    private final OutboundQueue queue = new OutboundQueue(Config.OUTBOUND_QUEUE_LIMIT,
+            OverflowPolicy.fromName(Config.OUTBOUND_OVERFLOW), Config.OUTBOUND_BLOCK_MILLIS);
+
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile boolean binary;
 
-    private BufferedWriter out;
+    private volatile boolean done;
 
-    private boolean done;
+    private volatile boolean closing;
 
     private final Socket socket;
 
-    private final ServerNetwork server;
+    private final GameSession server;
 
-    public PlayerThread(final ServerNetwork serverLauncher, final Socket socket) {
-        super();
-        this.server = serverLauncher;
+    private final ThreadFactory threads;
+
+    private final Executor writers;
+
+    private final Runnable writer = new Runnable() {
+        @Override
+        public void run() {
+            PlayerThread.this.flush();
+        }
+    };
+
+    public PlayerThread(final GameSession session, final Socket socket, final ThreadFactory threads, final Executor writers) {
+        this.server = session;
         this.socket = socket;
+        this.threads = threads;
+        this.writers = writers;
         this.UID = socket.getPort();
     }
 
     /**
-     * Send a message to the client.
+     * Start the read loop on a new thread.
+     */
+    public void start() {
+        this.threads.newThread(this).start();
+    }
+
+    /**
+     * Queue a message for the client; a writer sends it.
      *
      * @param message the message.
      */
-    public void send(final String message) {
+    public void send(final OutboundMessage message) {
+        if (this.done) {
+            return;
+        }
+        final boolean queued;
+        this.writeLock.lock();
         try {
-            this.out.write(message + "\n");
-            LOG.info("Sent {} to client {}.", message, this.UID);
-            this.out.flush();
-        } catch (final IOException exception) {
-            LOG.error("Error sending message!", exception);
-            this.server.removePlayer(this.getUID());
+            queued = this.queue.offer(message.buffer(this.binary), true);
+        } finally {
+            this.writeLock.unlock();
+        }
+        if (queued) {
+            LOG.debug("Queued {} for client {}.", message, this.UID);
+            this.scheduleWrite();
+        } else if (this.queue.isOverflowed()) {
+            // Closing the socket ends the read loop, which removes the player from its own thread.
+            LOG.warn("Client ID -- {}. Too far behind, disconnecting.", this.UID);
+            this.abort();
+        } else {
+            LOG.warn("Client ID -- {}. Too far behind, dropped {}.", this.UID, message);
+        }
+    }
+
+    /**
+     * Answer a client's HELLO. If we speak its version, the reply is the last text message it gets from us.
+     *
+     * @param version the version offered.
+     */
+    private void hello(final int version) {
+        if (!Config.BINARY_PROTOCOL || version < NetworkConstants.BINARY_PROTOCOL_VERSION) {
+            LOG.info("Client {} offered protocol version {}, staying on text.", this.UID, version);
+            return;
+        }
+        this.writeLock.lock();
+        try {
+            this.send(OutboundMessage.of(ProtocolMessage.hello(NetworkConstants.BINARY_PROTOCOL_VERSION)));
+            this.binary = true;
+            LOG.info("Client {} switched to the binary protocol.", this.UID);
+        } finally {
+            this.writeLock.unlock();
         }
     }
 
@@ -57,11 +140,23 @@ public class PlayerThread extends Thread {
      */
     public void run() {
         LOG.info("Thread {} running.", this.UID);
+        final ProtocolMessage message = new ProtocolMessage();
         while (!this.done) {
             try {
-                this.server.handle(this.in.readLine(), this.UID);
+                if (!this.in.read(message)) {
+                    LOG.info("Client ID -- {}. Connection closed by the client.", this.UID);
+                    this.server.removePlayer(this.UID);
+                    break;
+                }
+                if (message.type == ProtocolMessage.HELLO) {
+                    this.hello(message.version);
+                } else {
+                    this.server.handle(message, this.UID);
+                }
+            } catch (final MalformedMessageException exception) {
+                LOG.warn("Client ID -- {}. {}", this.UID, exception.getMessage());
             } catch (final IOException exception) {
-                LOG.warn("Client ID -- {}. Error reading input - connection may be closed.", this.UID);
+                LOG.warn("Client ID -- {}. Error reading input - connection may be closed: {}", this.UID, exception.getMessage());
                 this.server.removePlayer(this.UID);
                 break;
             }
@@ -75,22 +170,70 @@ public class PlayerThread extends Thread {
      */
     public void open() throws IOException {
         LOG.info("Opening streams for client {}", this.UID);
-        this.in = new BufferedReader(new InputStreamReader(this.socket.getInputStream()));
-        this.out = new BufferedWriter(new OutputStreamWriter(this.socket.getOutputStream()));
+        this.in = new ProtocolReader(new BufferedInputStream(this.socket.getInputStream()));
+        this.out = new BufferedOutputStream(this.socket.getOutputStream());
+        this.channel = Channels.newChannel(this.out);
     }
 
     /**
-     * Close the client socket and marks the work done.
+     * Mark the work done and close the client socket once everything already queued has been written.
      *
      * @throws IOException
      */
     public void close() throws IOException {
         this.done = true;
-        if (this.socket != null) {
-            this.socket.close();
+        this.closing = true;
+        this.scheduleWrite();
+    }
+
+    private void scheduleWrite() {
+        if (this.writeScheduled.compareAndSet(false, true)) {
+            try {
+                this.writers.execute(this.writer);
+            } catch (final RejectedExecutionException exception) {
+                // The server is shutting down.
+                this.abort();
+            }
+        }
+    }
+
+    /**
+     * Runs on a writer: write everything queued, flush once, and repeat until the queue stays empty.
+     */
+    private void flush() {
+        try {
+            do {
+                ByteBuffer buffer;
+                while ((buffer = this.queue.poll()) != null) {
+                    this.channel.write(buffer);
+                }
+                this.out.flush();
+                this.writeScheduled.set(false);
+                if (this.closing) {
+                    this.abort();
+                    return;
+                }
+            } while (!this.queue.isEmpty() && this.writeScheduled.compareAndSet(false, true));
+        } catch (final IOException exception) {
+            this.writeScheduled.set(false);
+            if (!this.closing) {
+                LOG.error("Error sending message!", exception);
+            }
+            this.abort();
+            this.server.removePlayer(this.getUID());
         }
-        if (this.in != null) {
-            this.in.close();
+    }
+
+    /**
+     * Close the socket straight away, discarding anything still queued.
+     */
+    private void abort() {
+        this.done = true;
+        this.queue.close();
+        try {
+            this.socket.close();
+        } catch (final IOException exception) {
+            LOG.error("Error closing client socket!", exception);
         }
     }
 
@@ -104,6 +247,6 @@ public class PlayerThread extends Thread {
     }
 
     public String toString() {
-        return super.toString() + " : " + this.UID;
+        return "PlayerThread : " + this.UID;
     }
 }
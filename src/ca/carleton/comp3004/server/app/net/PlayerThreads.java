@@ -0,0 +1,84 @@
+package ca.carleton.comp3004.server.app.net;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads that run {@link PlayerThread} read loops and write out their queued messages.
+ * <p/>
+ * Virtual threads are looked up reflectively so the project still builds for Java 8; on a JVM without them the
+ * factory falls back to platform threads.
+ */
+public final class PlayerThreads {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PlayerThreads.class);
+
+    private PlayerThreads() {
+        // Do nothing.
+    }
+
+    /**
+     * One platform thread per client, as the server has always done.
+     *
+     * @return the factory.
+     */
+    public static ThreadFactory platform() {
+        return platform("player-");
+    }
+
+    /**
+     * One virtual thread per client, if the running JVM supports them.
+     *
+     * @return the factory.
+     */
+    public static ThreadFactory virtual() {
+        return virtual("player-");
+    }
+
+    /**
+     * Threads that drain {@link PlayerThread} outbound queues. A thread is only busy while a client has messages
+     * pending, so a handful serve every connection; idle ones go away after a few seconds.
+     * <p/>
+     * The blocking transport uses platform threads. The virtual transport uses virtual threads, so a client whose
+     * socket buffer is full parks a virtual thread in its write rather than pinning a platform thread; the server
+     * waits for them on shutdown since they do not keep the JVM alive.
+     *
+     * @param virtual whether to write on virtual threads, if the running JVM supports them.
+     * @return the executor.
+     */
+    public static ExecutorService writers(final boolean virtual) {
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 5, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                virtual ? virtual("writer-") : platform("writer-"));
+    }
+
+    private static ThreadFactory platform(final String prefix) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(runnable, prefix + count.getAndIncrement());
+            }
+        };
+    }
+
+    private static ThreadFactory virtual(final String prefix) {
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Method name = builderClass.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (final Exception exception) {
+            LOG.warn("Virtual threads are not available on this JVM ({}), using platform threads.", System.getProperty("java.version"));
+            return platform(prefix);
+        }
+    }
+}
@@ -1,18 +1,34 @@
 package ca.carleton.comp3004.server.app.net;
 
-import ca.carleton.comp3004.server.app.YahtzeeGame;
-import ca.carleton.comp3004.util.NetworkConstants;
-import ca.carleton.comp3004.util.StringUtils;
+import ca.carleton.comp3004.trace.TraceWriter;
+import ca.carleton.comp3004.util.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import yahtzeeTrace.YahtzeeTracer;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Networking class that handles communications with the clients.
+ * Networking class that accepts clients and groups them into games.
+ * <p/>
+ * Connections are seated in the game currently being filled; once it has enough players it is started and a new one
+ * is opened. In lobby mode the server keeps hosting games until it is stopped, otherwise it stops accepting after the
+ * first game has finished.
+ * <p/>
+ * Clients are served by the {@link Transport} chosen at startup; the games themselves are unaware of which one is in
+ * use. Games run on a shared pool of game threads, each one driven through its own {@link GameMailbox}.
  * <p/>
  * Created with IntelliJ IDEA.
  * Date: 23/01/15
@@ -20,22 +36,73 @@ import java.net.Socket;
  */
 public class ServerNetwork {
 
-    public static final YahtzeeTracer TRACER = new YahtzeeTracer();
-
     private static final Logger LOG = LoggerFactory.getLogger(ServerNetwork.class);
 
+    /**
+     * How long stopping waits for virtual writer threads to send what is still queued.
+     */
+    private static final int WRITER_DRAIN_SECONDS = 5;
+
     private ServerSocket socket;
 
-    public int numberOfPlayers;
+    private ServerSocketChannel channel;
+
+    private NioEventLoop[] loops;
+
+    private int nextLoop;
+
+    private ThreadFactory playerThreads;
+
+    private ExecutorService playerWriters;
+
+    private final ExecutorService gameThreads;
+
+    /**
+     * Writes the games' traces in the background, or null when they trace on their own threads.
+     */
+    private final TraceWriter traceWriter;
+
+    private final Transport transport;
+
+    private final int playersPerGame;
+
+    private final boolean lobby;
+
+    private final AtomicInteger nextGameID = new AtomicInteger(1);
+
+    /**
+     * Hands each new game the seed for its dice. Only the acceptor opens games, so it is never shared.
+     */
+    private final SplittableRandom seeds;
+
+    private final Map<Integer, GameSession> games = new ConcurrentHashMap<Integer, GameSession>();
 
-    public PlayerThread[] players;
+    private GameSession filling;
 
-    private final YahtzeeGame game;
+    private volatile boolean running;
 
-    public ServerNetwork(final int port, final int initialNumberOfPlayers) {
-        this.game = new YahtzeeGame(this);
-        this.players = new PlayerThread[initialNumberOfPlayers];
-        TRACER.traceNewGame(initialNumberOfPlayers);
+    public ServerNetwork(final int port, final int playersPerGame, final boolean lobby, final Transport transport) {
+        this.transport = transport;
+        this.playersPerGame = playersPerGame;
+        this.lobby = lobby;
+        final long seed = Config.DICE_SEED != null ? Config.DICE_SEED : new SplittableRandom().nextLong();
+        LOG.info("Dice seed {}.", seed);
+        this.seeds = new SplittableRandom(seed);
+        this.gameThreads = Executors.newFixedThreadPool(Config.GAME_THREADS, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(runnable, "game-" + this.count.getAndIncrement());
+            }
+        });
+        if (Config.TRACE_ASYNC) {
+            this.traceWriter = new TraceWriter(Config.TRACE_QUEUE,
+                    TimeUnit.MICROSECONDS.toNanos(Config.TRACE_WAIT_MICROS));
+            this.traceWriter.start();
+        } else {
+            this.traceWriter = null;
+        }
         this.start(port);
     }
 
@@ -46,190 +113,178 @@ public class ServerNetwork {
      */
     public void start(final int port) {
         try {
-            LOG.info("Starting server listening on port {}.", port);
-            this.socket = new ServerSocket(port);
-            this.socket.setReuseAddress(true);
+            LOG.info("Starting {} server listening on port {}.", this.transport, port);
+            if (this.transport == Transport.NIO) {
+                this.channel = ServerSocketChannel.open();
+                this.channel.socket().setReuseAddress(true);
+                this.channel.bind(new InetSocketAddress(port));
+                this.startEventLoops();
+            } else {
+                this.playerThreads = this.transport == Transport.VIRTUAL ? PlayerThreads.virtual() : PlayerThreads.platform();
+                this.playerWriters = PlayerThreads.writers(this.transport == Transport.VIRTUAL);
+                this.socket = new ServerSocket(port);
+                this.socket.setReuseAddress(true);
+            }
+            this.running = true;
             LOG.info("Server started successfully.");
             this.waitForConnections();
         } catch (final IOException exception) {
-            LOG.error("Unable to initialize server.", exception);
+            if (this.running) {
+                LOG.error("Unable to initialize server.", exception);
+            }
         }
     }
 
     /**
-     * Waits until the number of playrs has been reached.
-     *
-     * @throws IOException
+     * Stop accepting connections.
      */
-    private void waitForConnections() throws IOException {
-        LOG.info("Waiting for {} connections before starting the game...", this.players.length);
-        while (this.numberOfPlayers < this.players.length) {
-            this.addPlayer(this.socket.accept());
-            LOG.info("Added player. Waiting for {} more connections.", this.players.length - this.numberOfPlayers);
+    public void stop() {
+        this.running = false;
+        try {
+            if (this.socket != null) {
+                this.socket.close();
+            }
+            if (this.channel != null) {
+                this.channel.close();
+            }
+        } catch (final IOException exception) {
+            LOG.error("Error closing server socket.", exception);
+        }
+        if (this.loops != null) {
+            for (final NioEventLoop loop : this.loops) {
+                loop.shutdown();
+            }
+        }
+        if (this.playerWriters != null) {
+            // Lets pending writes finish, then the idle writers exit.
+            this.playerWriters.shutdown();
+            if (this.transport == Transport.VIRTUAL) {
+                // Virtual writers do not keep the JVM alive, so give the last messages of the game time to go out.
+                try {
+                    if (!this.playerWriters.awaitTermination(WRITER_DRAIN_SECONDS, TimeUnit.SECONDS)) {
+                        LOG.warn("Clients still had messages pending after {} seconds.", WRITER_DRAIN_SECONDS);
+                    }
+                } catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        this.gameThreads.shutdown();
+        if (this.traceWriter != null) {
+            // Every game has posted its last trace event by now.
+            this.traceWriter.shutdown();
         }
-        LOG.info("Number of players reached. Sending start game command to clients.");
-        this.startGame();
-
     }
 
     /**
-     * Tells the clients to start the game.
+     * Accepts clients until the server is stopped, seating each one in the game being filled.
+     *
+     * @throws IOException
      */
-    private void startGame() {
-        try {
-            for (final PlayerThread player : this.players) {
-                player.send(NetworkConstants.START_GAME);
+    private void waitForConnections() throws IOException {
+        LOG.info("Waiting for connections, {} players per game...", this.playersPerGame);
+        while (this.running) {
+            if (this.transport == Transport.NIO) {
+                final SocketChannel client = this.channel.accept();
+                this.configure(client.socket());
+                final GameSession session = this.sessionToFill();
+                this.addPlayer(session, new NioConnection(session, client, this.loops[this.nextLoop++ % this.loops.length]));
+            } else {
+                final Socket client = this.socket.accept();
+                this.configure(client);
+                final GameSession session = this.sessionToFill();
+                this.addPlayer(session, new PlayerThread(session, client, this.playerThreads, this.playerWriters));
             }
-        } catch (final Exception exception) {
-            LOG.error("Error with communication with clients.", exception);
         }
-
-        LOG.info("Sent start game commands to the clients.");
-
     }
 
     /**
-     * Add a client.
+     * Start the selector threads used by the NIO transport.
      *
-     * @param socket the client's socket.
      * @throws IOException
      */
-    private void addPlayer(final Socket socket) throws IOException {
-        if (this.numberOfPlayers < this.players.length) {
-            LOG.info("Accepting client: " + socket);
-            this.players[this.numberOfPlayers] = new PlayerThread(this, socket);
-            this.players[this.numberOfPlayers].open();
-            this.players[this.numberOfPlayers].start();
-            this.numberOfPlayers++;
-        } else {
-            LOG.warn("Maximum client count reached. Client refused. [Max - {}]", this.players.length);
+    private void startEventLoops() throws IOException {
+        this.loops = new NioEventLoop[Config.NIO_EVENT_LOOPS];
+        for (int i = 0; i < this.loops.length; i++) {
+            this.loops[i] = new NioEventLoop(i);
+            this.loops[i].start();
         }
+        LOG.info("Started {} NIO event loops.", this.loops.length);
     }
 
     /**
-     * Remove a client.
+     * Apply the configured TCP options to a client socket.
      *
-     * @param id the player to remove.
+     * @param client the socket.
+     * @throws IOException
      */
-    public synchronized void removePlayer(final int id) {
-        final int index = this.findPlayer(id);
-        if (index >= 0) {
-            PlayerThread threadToRemove = this.players[index];
-            LOG.info("Removing client thread {}.", threadToRemove);
-            // shift clients
-            this.players[index] = null;
-            PlayerThread[] newArray = new PlayerThread[this.numberOfPlayers - 1];
-            int count = 0;
-            for (final PlayerThread player : this.players) {
-                if (player != null) {
-                    newArray[count++] = player;
-                }
-            }
-
-            this.players = newArray;
-            this.numberOfPlayers--;
-
-            try {
-                threadToRemove.close();
-            } catch (final IOException exception) {
-                LOG.error("Error closing client thread!", exception);
-            }
-
-            LOG.info("Removed played {}. New player count --> {}.", id, this.numberOfPlayers);
-
-            TRACER.tracePlayerDropped(id);
-
-            this.game.tryToStartNextRound();
+    private void configure(final Socket client) throws IOException {
+        client.setTcpNoDelay(Config.TCP_NO_DELAY);
+        if (Config.TCP_SEND_BUFFER > 0) {
+            client.setSendBufferSize(Config.TCP_SEND_BUFFER);
+        }
+        if (Config.TCP_RECEIVE_BUFFER > 0) {
+            client.setReceiveBufferSize(Config.TCP_RECEIVE_BUFFER);
         }
     }
 
     /**
-     * Handle a message from a client.
-     *
-     * @param command  the message sent.
-     * @param clientID the client sending it.
+     * @return the game new clients should join, opening a new one if needed.
      */
-    public synchronized void handle(final String command, final int clientID) {
-        if (StringUtils.isEmpty(command)) {
-            return;
+    private GameSession sessionToFill() {
+        if (this.filling == null || this.filling.isFull() || this.filling.isFinished()) {
+            this.filling = new GameSession(this, this.nextGameID.getAndIncrement(), this.playersPerGame, this.gameThreads,
+                    this.seeds.nextLong());
+            this.games.put(this.filling.getId(), this.filling);
         }
+        return this.filling;
+    }
 
-        if (command.equals("quit")) {
-            LOG.info("Removing client {}.", clientID);
-            final int index = this.findPlayer(clientID);
-            if (index != -1) {
-                this.players[index].send("quit");
-                this.removePlayer(clientID);
+    /**
+     * Add a client to the game currently being filled, starting it if it is now full.
+     *
+     * @param session the game being filled.
+     * @param player  the client's connection.
+     * @throws IOException
+     */
+    private void addPlayer(final GameSession session, final PlayerConnection player) throws IOException {
+        if (session.addPlayer(player)) {
+            LOG.info("Number of players reached. Starting game {} ({} games running).", session.getId(), this.games.size());
+            session.start();
+            this.filling = null;
+            if (!this.lobby) {
+                LOG.info("Not in lobby mode, no longer accepting clients.");
+                this.running = false;
             }
         } else {
-            // Handle all commands from here.
-            LOG.info("Received {} from client {}.", command, clientID);
-
-            final String[] deconstructed = command.split("_");
-
-            if (deconstructed[0].equals("SUBMIT")) {
-                if (this.game.updateBoardEntry(command, clientID)) {
-                    LOG.info("Sending out update command.");
-                    for (final PlayerThread player : this.players) {
-                        player.send(String.format(NetworkConstants.UPDATE_BOARD,
-                                this.players[this.findPlayer(clientID)].getUID(),
-                                Integer.parseInt(deconstructed[1]),
-                                Integer.parseInt(deconstructed[2]),
-                                Integer.parseInt(deconstructed[3])));
-                    }
-                } else {
-                    if (!(Integer.parseInt(deconstructed[1]) == -1)) {
-                        LOG.info("Sending INVALID (try again) reply.");
-                        PlayerThread player = this.players[this.findPlayer(clientID)];
-                        player.send(String.format(NetworkConstants.SCORE_TAKEN_RETRY, player.getUID()));
-                    } else {
-                        LOG.info("Ignore submission, was invalid.");
-                    }
-                }
-                this.game.tryToStartNextRound();
-            } else if (deconstructed[0].equals("SCORE")) {
-                LOG.info("Sending score response...");
-                int score = this.game.getScoreForPlayer(clientID);
-                PlayerThread player = this.players[this.findPlayer(clientID)];
-                player.send(String.format(NetworkConstants.SCORE_RESPONSE, player.getUID(), score));
-            }
+            LOG.info("Added player. Waiting for {} more connections.", this.playersPerGame - session.getSeatCount());
         }
     }
 
     /**
-     * Tells the clients to start the next round.
+     * Called by a session once it is over so its resources can be released.
+     *
+     * @param session the finished game.
      */
-    public void startNextRound() {
-        for (final PlayerThread player : this.players) {
-            player.send(String.format(NetworkConstants.NEXT_ROUND));
+    public void gameFinished(final GameSession session) {
+        this.games.remove(session.getId());
+        LOG.info("Released game {}. {} games still running.", session.getId(), this.games.size());
+        if (!this.lobby && this.games.isEmpty()) {
+            this.stop();
         }
-        LOG.info("Sent next round command to clients.");
     }
 
     /**
-     * Tells the clients to end the game.
-     *
-     * @param winningPlayerID the winner.
+     * @return the background trace writer, or null when games trace on their own threads.
      */
-    public void endGame(final int winningPlayerID) {
-        LOG.info("Sending out game over message.");
-        for (final PlayerThread player : this.players) {
-            player.send(String.format(NetworkConstants.GAME_OVER, winningPlayerID));
-        }
+    public TraceWriter getTraceWriter() {
+        return this.traceWriter;
     }
 
     /**
-     * Find a player (index into the array) from the clientID.
-     *
-     * @param id the UID.
-     * @return the index.
+     * @return the number of games currently hosted (including the one being filled).
      */
-    private synchronized int findPlayer(final int id) {
-        for (int i = 0; i < this.numberOfPlayers; i++) {
-            if (this.players[i].getUID() == id) {
-                return i;
-            }
-        }
-        return -1;
+    public int getGameCount() {
+        return this.games.size();
     }
 }
@@ -0,0 +1,32 @@
+package ca.carleton.comp3004.server.app.net;
+
+/**
+ * The I/O strategies the server can use for its client connections.
+ */
+public enum Transport {
+
+    /**
+     * One {@link PlayerThread} per client doing blocking reads.
+     */
+    BLOCKING,
+
+    /**
+     * Like {@link #BLOCKING}, but each {@link PlayerThread} read loop runs on a virtual thread (Java 21+).
+     */
+    VIRTUAL,
+
+    /**
+     * A few {@link NioEventLoop} threads multiplexing every client with a selector.
+     */
+    NIO;
+
+    /**
+     * Parse a transport name, ignoring case.
+     *
+     * @param name the name.
+     * @return the transport.
+     */
+    public static Transport fromName(final String name) {
+        return Transport.valueOf(name.trim().toUpperCase());
+    }
+}
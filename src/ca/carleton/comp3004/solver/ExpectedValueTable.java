@@ -0,0 +1,228 @@
+package ca.carleton.comp3004.solver;
+
+import ca.carleton.comp3004.util.ScoringTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The expected final score of a solitaire game played perfectly from every state between turns, where a state is the
+ * set of filled categories and the upper area subtotal (capped at {@value #UPPER_CAP}, where the bonus is earned).
+ * <p/>
+ * The table is computed backwards, one layer of states with the same number of filled categories at a time: a layer
+ * only depends on the one after it, so its states are spread over a fork/join pool. Once written to a file it is
+ * mapped back into memory read-only, so loading it is immediate and every process using the file shares one copy.
+ * <p/>
+ * File layout, big-endian: magic, version, number of states, then one float per state indexed by
+ * {@code filled * 64 + upper}. Unreachable states are 0.
+ */
+public final class ExpectedValueTable {
+
+    public static final int UPPER_CAP = 63;
+
+    public static final int UPPER_BONUS = 35;
+
+    private static final int UPPER_STATES = UPPER_CAP + 1;
+
+    private static final int STATES = (1 << ScoringTable.CATEGORIES) * UPPER_STATES;
+
+    private static final int MAGIC = 0x59455654;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER = 12;
+
+    /**
+     * Masks of filled categories handled by one task.
+     */
+    private static final int MASKS_PER_TASK = 8;
+
+    /**
+     * For each set of filled upper categories, bit n set if the upper subtotal can be n.
+     */
+    private static final long[] REACHABLE = new long[1 << ScoringTable.UPPER_CATEGORIES];
+
+    static {
+        for (int upperMask = 0; upperMask < REACHABLE.length; upperMask++) {
+            long reachable = 1;
+            for (int face = 1; face <= ScoringTable.UPPER_CATEGORIES; face++) {
+                if ((upperMask & (1 << (face - 1))) != 0) {
+                    long next = 0;
+                    for (int count = 0; count <= ScoringTable.DICE; count++) {
+                        next |= shift(reachable, count * face);
+                    }
+                    reachable = next;
+                }
+            }
+            REACHABLE[upperMask] = reachable;
+        }
+    }
+
+    private final FloatBuffer values;
+
+    private ExpectedValueTable(final FloatBuffer values) {
+        this.values = values;
+    }
+
+    /**
+     * @param filled the filled categories, bit n for category n of the {@link ScoringTable}.
+     * @param upper  the upper area subtotal.
+     * @return the expected score still to come.
+     */
+    public float get(final int filled, final int upper) {
+        return this.values.get(filled * UPPER_STATES + Math.min(upper, UPPER_CAP));
+    }
+
+    /**
+     * Solve every state.
+     *
+     * @param pool the threads to use.
+     * @return the table, in memory.
+     */
+    public static ExpectedValueTable compute(final ForkJoinPool pool) {
+        final float[] values = new float[STATES];
+        final ExpectedValueTable table = new ExpectedValueTable(FloatBuffer.wrap(values));
+        for (int filled = ScoringTable.CATEGORIES - 1; filled >= 0; filled--) {
+            final int[] masks = masksWithBits(filled);
+            pool.invoke(new LayerTask(table, values, masks, 0, masks.length));
+        }
+        return table;
+    }
+
+    /**
+     * Map a table written by {@link #write(Path)}.
+     *
+     * @param file the file.
+     * @return the table.
+     * @throws IOException if the file cannot be read or is not a table.
+     */
+    public static ExpectedValueTable map(final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (channel.size() != HEADER + 4L * STATES) {
+                throw new IOException(file + " is not an expected value table: wrong size.");
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != STATES) {
+                throw new IOException(file + " is not an expected value table, or was written by another version.");
+            }
+            return new ExpectedValueTable(buffer.slice().asFloatBuffer());
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Write the table to a file. The file is replaced in one step, so processes mapping it never see half a table.
+     *
+     * @param file the file.
+     * @throws IOException
+     */
+    public void write(final Path file) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER + 4 * STATES);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(STATES);
+        for (int i = 0; i < STATES; i++) {
+            buffer.putFloat(this.values.get(i));
+        }
+        buffer.flip();
+
+        final Path absolute = file.toAbsolutePath();
+        final Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            final FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static int[] masksWithBits(final int bits) {
+        int count = 0;
+        for (int mask = 0; mask < 1 << ScoringTable.CATEGORIES; mask++) {
+            if (Integer.bitCount(mask) == bits) {
+                count++;
+            }
+        }
+        final int[] masks = new int[count];
+        int next = 0;
+        for (int mask = 0; mask < 1 << ScoringTable.CATEGORIES; mask++) {
+            if (Integer.bitCount(mask) == bits) {
+                masks[next++] = mask;
+            }
+        }
+        return masks;
+    }
+
+    private static long shift(final long reachable, final int amount) {
+        // A long has exactly one bit per subtotal, so anything shifted past the cap falls off and is counted there.
+        long shifted = reachable << amount;
+        if ((reachable >>> (UPPER_CAP - amount)) != 0) {
+            shifted |= 1L << UPPER_CAP;
+        }
+        return shifted;
+    }
+
+    /**
+     * Solves some of the states of one layer.
+     */
+    private static final class LayerTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ExpectedValueTable table;
+
+        private final float[] values;
+
+        private final int[] masks;
+
+        private final int from;
+
+        private final int to;
+
+        private LayerTask(final ExpectedValueTable table, final float[] values, final int[] masks, final int from,
+                          final int to) {
+            this.table = table;
+            this.values = values;
+            this.masks = masks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > MASKS_PER_TASK) {
+                final int middle = (this.from + this.to) >>> 1;
+                invokeAll(new LayerTask(this.table, this.values, this.masks, this.from, middle),
+                        new LayerTask(this.table, this.values, this.masks, middle, this.to));
+                return;
+            }
+            final TurnEvaluator evaluator = new TurnEvaluator(this.table);
+            for (int i = this.from; i < this.to; i++) {
+                final int mask = this.masks[i];
+                final long reachable = REACHABLE[mask & ((1 << ScoringTable.UPPER_CATEGORIES) - 1)];
+                for (int upper = 0; upper < UPPER_STATES; upper++) {
+                    if ((reachable & (1L << upper)) != 0) {
+                        this.values[mask * UPPER_STATES + upper] = (float) evaluator.evaluate(mask, upper);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ca.carleton.comp3004.solver;
+
+import ca.carleton.comp3004.util.ScoringTable;
+
+/**
+ * Every group of dice a player can keep between rolls: the 462 multisets of zero to five dice.
+ * <p/>
+ * Keeps are numbered by size, smallest first, so a keep's sub-keeps always come before it and the keeps grown from it
+ * after. The five dice keeps are the complete rolls and line up with the codes of the {@link ScoringTable}.
+ */
+final class Keeps {
+
+    static final int COUNT = 462;
+
+    static final int EMPTY = 0;
+
+    static final int FACES = ScoringTable.FACES;
+
+    /**
+     * The number of dice in each keep.
+     */
+    static final int[] SIZE = new int[COUNT];
+
+    /**
+     * The keep with one more die showing the face, by keep * FACES + face - 1; -1 for a full keep.
+     */
+    static final int[] ADD = new int[COUNT * FACES];
+
+    /**
+     * The keep with one less die showing the face, by keep * FACES + face - 1; -1 if no die shows it.
+     */
+    static final int[] REMOVE = new int[COUNT * FACES];
+
+    /**
+     * The scoring table code of each complete roll, -1 for smaller keeps.
+     */
+    static final int[] CODE = new int[COUNT];
+
+    /**
+     * The keep of each scoring table code.
+     */
+    static final int[] KEEP_OF_CODE = new int[ScoringTable.COMBINATIONS];
+
+    /**
+     * The chance of each complete roll when all five dice are thrown, by keep.
+     */
+    static final double[] PROBABILITY = new double[COUNT];
+
+    private static final int[] FACTORIAL = {1, 1, 2, 6, 24, 120};
+
+    /**
+     * Keeps by their face counts read as a base six number, ones in the lowest digit.
+     */
+    private static final int[] BY_COUNTS = new int[6 * 6 * 6 * 6 * 6 * 6];
+
+    private static final int[] COUNTS = new int[COUNT];
+
+    static {
+        int next = 0;
+        for (int size = 0; size <= ScoringTable.DICE; size++) {
+            next = enumerate(new int[FACES], 0, size, next);
+        }
+        if (next != COUNT) {
+            throw new IllegalStateException("Enumerated " + next + " keeps.");
+        }
+        final int[] dice = new int[ScoringTable.DICE];
+        for (int keep = 0; keep < COUNT; keep++) {
+            CODE[keep] = -1;
+            for (int face = 1; face <= FACES; face++) {
+                final int counts = COUNTS[keep];
+                final int digit = pow6(face - 1);
+                final int count = counts / digit % 6;
+                ADD[keep * FACES + face - 1] = SIZE[keep] < ScoringTable.DICE ? BY_COUNTS[counts + digit] : -1;
+                REMOVE[keep * FACES + face - 1] = count > 0 ? BY_COUNTS[counts - digit] : -1;
+            }
+            if (SIZE[keep] == ScoringTable.DICE) {
+                int die = 0;
+                double ways = 120;
+                for (int face = 1; face <= FACES; face++) {
+                    final int count = COUNTS[keep] / pow6(face - 1) % 6;
+                    for (int i = 0; i < count; i++) {
+                        dice[die++] = face;
+                    }
+                    ways /= FACTORIAL[count];
+                }
+                CODE[keep] = ScoringTable.code(dice);
+                KEEP_OF_CODE[CODE[keep]] = keep;
+                PROBABILITY[keep] = ways / 7776;
+            }
+        }
+    }
+
+    private Keeps() {
+    }
+
+    /**
+     * @param dice some dice, each from 1 to 6.
+     * @param mask which of them to keep, bit i for die i.
+     * @return the keep.
+     */
+    static int of(final int[] dice, final int mask) {
+        int counts = 0;
+        for (int i = 0; i < dice.length; i++) {
+            if ((mask & (1 << i)) != 0) {
+                counts += pow6(dice[i] - 1);
+            }
+        }
+        return BY_COUNTS[counts];
+    }
+
+    private static int enumerate(final int[] counts, final int face, final int remaining, final int keep) {
+        if (face == FACES - 1) {
+            counts[face] = remaining;
+            int key = 0;
+            int size = 0;
+            for (int f = FACES - 1; f >= 0; f--) {
+                key = key * 6 + counts[f];
+                size += counts[f];
+            }
+            COUNTS[keep] = key;
+            SIZE[keep] = size;
+            BY_COUNTS[key] = keep;
+            return keep + 1;
+        }
+        int next = keep;
+        for (int n = remaining; n >= 0; n--) {
+            counts[face] = n;
+            next = enumerate(counts, face + 1, remaining - n, next);
+        }
+        return next;
+    }
+
+    private static int pow6(final int exponent) {
+        int value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 6;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,142 @@
+package ca.carleton.comp3004.solver;
+
+import ca.carleton.comp3004.util.Config;
+import ca.carleton.comp3004.util.ScoringTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Plays a solitaire game of Yahtzee perfectly: which dice to keep and where to score them so as to maximise the
+ * expected final score, for computer players and hints.
+ * <p/>
+ * Categories are numbered as in the {@link ScoringTable}, and a set of them is a bit mask with bit n for category n.
+ * Answers are worked out from the {@link ExpectedValueTable} on each call, which takes a few microseconds. A solver is
+ * safe to use from any number of threads.
+ * <p/>
+ * Run this class to build the table file: {@code java ca.carleton.comp3004.solver.Solver [file]}.
+ */
+public class Solver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Solver.class);
+
+    private static final int ALL_DICE = (1 << ScoringTable.DICE) - 1;
+
+    private final ExpectedValueTable table;
+
+    private final ThreadLocal<TurnEvaluator> evaluators = new ThreadLocal<TurnEvaluator>() {
+        @Override
+        protected TurnEvaluator initialValue() {
+            return new TurnEvaluator(Solver.this.table);
+        }
+    };
+
+    public Solver(final ExpectedValueTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Map the table from a file, building and writing it first if there is none.
+     *
+     * @param file the table file.
+     * @return the solver.
+     * @throws IOException if the file cannot be read or written.
+     */
+    public static Solver load(final Path file) throws IOException {
+        if (!Files.exists(file)) {
+            LOG.info("No solver table at {}, building it...", file);
+            final long start = System.nanoTime();
+            ExpectedValueTable.compute(ForkJoinPool.commonPool()).write(file);
+            LOG.info("Built the solver table in {} ms.", (System.nanoTime() - start) / 1000000);
+        }
+        return new Solver(ExpectedValueTable.map(file));
+    }
+
+    /**
+     * @param filled the filled categories.
+     * @param upper  the upper area subtotal.
+     * @return the expected score still to come, before the next turn starts.
+     */
+    public double expectedScore(final int filled, final int upper) {
+        return this.table.get(filled, upper);
+    }
+
+    /**
+     * Which dice to keep before throwing the rest again.
+     *
+     * @param dice      the five dice.
+     * @param rollsLeft throws left this turn, 1 or 2.
+     * @param filled    the filled categories; at least one must be open.
+     * @param upper     the upper area subtotal.
+     * @return bit i set to keep die i, as sent in a ROLL.
+     */
+    public int bestHold(final int[] dice, final int rollsLeft, final int filled, final int upper) {
+        if (rollsLeft < 1 || rollsLeft > 2) {
+            throw new IllegalArgumentException("Can only hold dice with 1 or 2 rolls left, not " + rollsLeft + ".");
+        }
+        ScoringTable.code(dice);
+        final TurnEvaluator evaluator = this.evaluator(filled);
+        evaluator.score(filled, Math.min(upper, ExpectedValueTable.UPPER_CAP));
+        for (int i = 1; i < rollsLeft; i++) {
+            evaluator.reroll();
+        }
+        evaluator.expect();
+
+        int bestHold = ALL_DICE;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int hold = ALL_DICE; hold >= 0; hold--) {
+            final double value = evaluator.expected(Keeps.of(dice, hold));
+            if (value > bestValue) {
+                bestValue = value;
+                bestHold = hold;
+            }
+        }
+        return bestHold;
+    }
+
+    /**
+     * Where to score the dice.
+     *
+     * @param dice   the five dice.
+     * @param filled the filled categories; at least one must be open.
+     * @param upper  the upper area subtotal.
+     * @return the category, see {@link ScoringTable#category(int, int)}.
+     */
+    public int bestCategory(final int[] dice, final int filled, final int upper) {
+        final int code = ScoringTable.code(dice);
+        final TurnEvaluator evaluator = this.evaluator(filled);
+        final int capped = Math.min(upper, ExpectedValueTable.UPPER_CAP);
+
+        int bestCategory = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int category = 0; category < ScoringTable.CATEGORIES; category++) {
+            if ((filled & (1 << category)) == 0) {
+                final double value = evaluator.categoryValue(code, category, filled, capped);
+                if (value > bestValue) {
+                    bestValue = value;
+                    bestCategory = category;
+                }
+            }
+        }
+        return bestCategory;
+    }
+
+    private TurnEvaluator evaluator(final int filled) {
+        if ((filled & ((1 << ScoringTable.CATEGORIES) - 1)) == (1 << ScoringTable.CATEGORIES) - 1) {
+            throw new IllegalArgumentException("Every category is filled.");
+        }
+        return this.evaluators.get();
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final Path file = Paths.get(args.length > 0 ? args[0] : Config.SOLVER_TABLE);
+        Files.deleteIfExists(file);
+        final Solver solver = Solver.load(file);
+        LOG.info("Wrote {}. Expected score of a perfectly played game: {}.", file, solver.expectedScore(0, 0));
+    }
+}
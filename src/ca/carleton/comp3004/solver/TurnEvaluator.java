@@ -0,0 +1,129 @@
+package ca.carleton.comp3004.solver;
+
+import ca.carleton.comp3004.util.ScoringTable;
+
+/**
+ * Works out the value of one turn from a given state, assuming every later turn is played perfectly as recorded in an
+ * {@link ExpectedValueTable}.
+ * <p/>
+ * A turn is solved backwards: first what each complete roll is worth when scored in the best open category, then,
+ * once per reroll, what each roll is worth when the best group of dice is kept and the rest thrown again. The value of
+ * a keep is the average over the faces of the keep one die larger, so no outcome distributions are stored.
+ * <p/>
+ * Holds scratch space and must not be shared between threads.
+ */
+final class TurnEvaluator {
+
+    private final ExpectedValueTable table;
+
+    /**
+     * What each complete roll is worth at the current point of the turn, by keep.
+     */
+    private final double[] rolls = new double[Keeps.COUNT];
+
+    /**
+     * What keeping each group of dice is worth before the next throw.
+     */
+    private final double[] expected = new double[Keeps.COUNT];
+
+    /**
+     * The best value of any group kept out of each keep.
+     */
+    private final double[] best = new double[Keeps.COUNT];
+
+    TurnEvaluator(final ExpectedValueTable table) {
+        this.table = table;
+    }
+
+    /**
+     * @param mask  the filled categories.
+     * @param upper the upper area subtotal, capped at {@link ExpectedValueTable#UPPER_CAP}.
+     * @return the expected score of the rest of the game, starting with a fresh turn.
+     */
+    double evaluate(final int mask, final int upper) {
+        this.score(mask, upper);
+        this.reroll();
+        this.reroll();
+        this.expect();
+        return this.expected[Keeps.EMPTY];
+    }
+
+    /**
+     * Value every complete roll as if it had to be scored now.
+     */
+    void score(final int mask, final int upper) {
+        for (int code = 0; code < ScoringTable.COMBINATIONS; code++) {
+            double value = Double.NEGATIVE_INFINITY;
+            for (int category = 0; category < ScoringTable.CATEGORIES; category++) {
+                if ((mask & (1 << category)) == 0) {
+                    value = Math.max(value, this.categoryValue(code, category, mask, upper));
+                }
+            }
+            this.rolls[Keeps.KEEP_OF_CODE[code]] = value;
+        }
+    }
+
+    /**
+     * Value every complete roll as if one more throw were left.
+     */
+    void reroll() {
+        this.expect();
+        for (int keep = 0; keep < Keeps.COUNT; keep++) {
+            double value = this.expected[keep];
+            final int base = keep * Keeps.FACES;
+            for (int face = 0; face < Keeps.FACES; face++) {
+                final int smaller = Keeps.REMOVE[base + face];
+                if (smaller >= 0 && this.best[smaller] > value) {
+                    value = this.best[smaller];
+                }
+            }
+            this.best[keep] = value;
+        }
+        for (int keep = 0; keep < Keeps.COUNT; keep++) {
+            if (Keeps.SIZE[keep] == ScoringTable.DICE) {
+                this.rolls[keep] = this.best[keep];
+            }
+        }
+    }
+
+    /**
+     * Value every keep from the current value of the complete rolls.
+     */
+    void expect() {
+        for (int keep = Keeps.COUNT - 1; keep >= 0; keep--) {
+            if (Keeps.SIZE[keep] == ScoringTable.DICE) {
+                this.expected[keep] = this.rolls[keep];
+            } else {
+                final int base = keep * Keeps.FACES;
+                double sum = 0;
+                for (int face = 0; face < Keeps.FACES; face++) {
+                    sum += this.expected[Keeps.ADD[base + face]];
+                }
+                this.expected[keep] = sum / Keeps.FACES;
+            }
+        }
+    }
+
+    /**
+     * @return the value of keeping a group of dice, after {@link #expect()}.
+     */
+    double expected(final int keep) {
+        return this.expected[keep];
+    }
+
+    /**
+     * @return what scoring the roll in the category is worth, counting the rest of the game.
+     */
+    double categoryValue(final int code, final int category, final int mask, final int upper) {
+        final int score = ScoringTable.score(code, category);
+        int nextUpper = upper;
+        double value = score;
+        if (category < ScoringTable.UPPER_CATEGORIES) {
+            nextUpper = Math.min(ExpectedValueTable.UPPER_CAP, upper + score);
+            if (upper < ExpectedValueTable.UPPER_CAP && nextUpper == ExpectedValueTable.UPPER_CAP) {
+                value += ExpectedValueTable.UPPER_BONUS;
+            }
+        }
+        return value + this.table.get(mask | (1 << category), nextUpper);
+    }
+}
@@ -0,0 +1,213 @@
+package ca.carleton.comp3004.solver;
+
+import ca.carleton.comp3004.util.ScoringTable;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The odds of each category for the rest of a single turn: the chance of scoring anything in it, and the score to
+ * expect, when the player goes for that category alone.
+ * <p/>
+ * Throwing the dice that are not kept is described by a transition table from each keep to the complete rolls it can
+ * become and their chances. From it, the value of every roll with 0, 1 or 2 throws still to come is worked out once
+ * per category when the class loads; a question is then one pass over the outcomes of the dice being kept. Answers are
+ * cached by keep and throws left, so asking again as dice are set aside and picked back up costs nothing.
+ * <p/>
+ * The chance and the expected score are each for the way of playing that maximises them, which can differ: a player
+ * chasing a large straight keeps different dice from one chasing the most points for it.
+ */
+public final class TurnProbabilityEngine {
+
+    public static final int MAX_ROLLS = 3;
+
+    private static final int CHANCE = 0;
+
+    private static final int SCORE = 1;
+
+    private static final int ALL_DICE = (1 << ScoringTable.DICE) - 1;
+
+    /**
+     * Outcomes of throwing from each keep: those of keep k are at OUTCOME_START[k] until OUTCOME_START[k + 1].
+     */
+    private static final int[] OUTCOME_START = new int[Keeps.COUNT + 1];
+
+    private static final int[] OUTCOME_KEEP;
+
+    private static final double[] OUTCOME_PROBABILITY;
+
+    /**
+     * Value of each complete roll by [measure][throws still to come][category][keep].
+     */
+    private static final double[][][][] VALUES = new double[2][MAX_ROLLS][ScoringTable.CATEGORIES][Keeps.COUNT];
+
+    private static final AtomicReferenceArray<Odds> CACHE = new AtomicReferenceArray<Odds>(Keeps.COUNT * (MAX_ROLLS + 1));
+
+    static {
+        // At most one entry per complete roll for each keep, trimmed below.
+        int[] outcomeKeeps = new int[Keeps.COUNT * ScoringTable.COMBINATIONS];
+        double[] outcomeProbabilities = new double[outcomeKeeps.length];
+        final double[] distribution = new double[Keeps.COUNT];
+        int next = 0;
+        for (int keep = 0; keep < Keeps.COUNT; keep++) {
+            OUTCOME_START[keep] = next;
+            spread(keep, 1.0, distribution);
+            for (int code = 0; code < ScoringTable.COMBINATIONS; code++) {
+                final int outcome = Keeps.KEEP_OF_CODE[code];
+                if (distribution[outcome] > 0) {
+                    outcomeKeeps[next] = outcome;
+                    outcomeProbabilities[next] = distribution[outcome];
+                    distribution[outcome] = 0;
+                    next++;
+                }
+            }
+        }
+        OUTCOME_START[Keeps.COUNT] = next;
+        OUTCOME_KEEP = Arrays.copyOf(outcomeKeeps, next);
+        OUTCOME_PROBABILITY = Arrays.copyOf(outcomeProbabilities, next);
+
+        // Each throw is solved backwards over the keeps, as in the TurnEvaluator: a keep is worth the mean of the keeps
+        // one die larger, and a roll the best of the keeps within it.
+        final double[] expected = new double[Keeps.COUNT];
+        final double[] best = new double[Keeps.COUNT];
+        for (int category = 0; category < ScoringTable.CATEGORIES; category++) {
+            for (int keep = 0; keep < Keeps.COUNT; keep++) {
+                if (Keeps.SIZE[keep] == ScoringTable.DICE) {
+                    final int score = ScoringTable.score(Keeps.CODE[keep], category);
+                    VALUES[CHANCE][0][category][keep] = score > 0 ? 1 : 0;
+                    VALUES[SCORE][0][category][keep] = score;
+                }
+            }
+            for (int measure = CHANCE; measure <= SCORE; measure++) {
+                for (int rolls = 1; rolls < MAX_ROLLS; rolls++) {
+                    final double[] previous = VALUES[measure][rolls - 1][category];
+                    final double[] values = VALUES[measure][rolls][category];
+                    for (int keep = Keeps.COUNT - 1; keep >= 0; keep--) {
+                        if (Keeps.SIZE[keep] == ScoringTable.DICE) {
+                            expected[keep] = previous[keep];
+                        } else {
+                            final int base = keep * Keeps.FACES;
+                            double sum = 0;
+                            for (int face = 0; face < Keeps.FACES; face++) {
+                                sum += expected[Keeps.ADD[base + face]];
+                            }
+                            expected[keep] = sum / Keeps.FACES;
+                        }
+                    }
+                    for (int keep = 0; keep < Keeps.COUNT; keep++) {
+                        double value = expected[keep];
+                        final int base = keep * Keeps.FACES;
+                        for (int face = 0; face < Keeps.FACES; face++) {
+                            final int smaller = Keeps.REMOVE[base + face];
+                            if (smaller >= 0 && best[smaller] > value) {
+                                value = best[smaller];
+                            }
+                        }
+                        best[keep] = value;
+                        values[keep] = value;
+                    }
+                }
+            }
+        }
+    }
+
+    private TurnProbabilityEngine() {
+    }
+
+    /**
+     * Build the tables now, e.g. in the background at startup, rather than on the first question.
+     */
+    public static void preload() {
+        // Loading the class is enough.
+    }
+
+    /**
+     * @param dice      the five dice. Ignored if nothing is kept and the turn has not started.
+     * @param held      bit i set if die i is set aside.
+     * @param rollsLeft throws left this turn, from 0 to {@value #MAX_ROLLS}. With none left the dice are final.
+     * @return the odds of each category.
+     */
+    public static Odds odds(final int[] dice, final int held, final int rollsLeft) {
+        if (rollsLeft < 0 || rollsLeft > MAX_ROLLS) {
+            throw new IllegalArgumentException("A turn has at most " + MAX_ROLLS + " throws, not " + rollsLeft + ".");
+        }
+        final int keep = Keeps.of(dice, rollsLeft == 0 ? ALL_DICE : held);
+        if (rollsLeft == 0 && Keeps.SIZE[keep] != ScoringTable.DICE) {
+            throw new IllegalArgumentException("The dice have not been rolled.");
+        }
+        final int slot = rollsLeft * Keeps.COUNT + keep;
+        Odds odds = CACHE.get(slot);
+        if (odds == null) {
+            odds = compute(keep, rollsLeft);
+            CACHE.lazySet(slot, odds);
+        }
+        return odds;
+    }
+
+    private static Odds compute(final int keep, final int rollsLeft) {
+        final float[] chances = new float[ScoringTable.CATEGORIES];
+        final float[] scores = new float[ScoringTable.CATEGORIES];
+        for (int category = 0; category < ScoringTable.CATEGORIES; category++) {
+            if (rollsLeft == 0) {
+                chances[category] = (float) VALUES[CHANCE][0][category][keep];
+                scores[category] = (float) VALUES[SCORE][0][category][keep];
+            } else {
+                chances[category] = (float) throwFrom(keep, VALUES[CHANCE][rollsLeft - 1][category]);
+                scores[category] = (float) throwFrom(keep, VALUES[SCORE][rollsLeft - 1][category]);
+            }
+        }
+        return new Odds(chances, scores);
+    }
+
+    /**
+     * @return the expected value of the roll after throwing the dice not in the keep.
+     */
+    private static double throwFrom(final int keep, final double[] values) {
+        double sum = 0;
+        for (int i = OUTCOME_START[keep]; i < OUTCOME_START[keep + 1]; i++) {
+            sum += OUTCOME_PROBABILITY[i] * values[OUTCOME_KEEP[i]];
+        }
+        return sum;
+    }
+
+    private static void spread(final int keep, final double probability, final double[] distribution) {
+        if (Keeps.SIZE[keep] == ScoringTable.DICE) {
+            distribution[keep] += probability;
+            return;
+        }
+        for (int face = 0; face < Keeps.FACES; face++) {
+            spread(Keeps.ADD[keep * Keeps.FACES + face], probability / Keeps.FACES, distribution);
+        }
+    }
+
+    /**
+     * The odds of every category, numbered as in the {@link ScoringTable}.
+     */
+    public static final class Odds {
+
+        private final float[] chances;
+
+        private final float[] scores;
+
+        private Odds(final float[] chances, final float[] scores) {
+            this.chances = chances;
+            this.scores = scores;
+        }
+
+        /**
+         * @param category the category.
+         * @return the chance, from 0 to 1, of scoring anything in it.
+         */
+        public float chance(final int category) {
+            return this.chances[category];
+        }
+
+        /**
+         * @param category the category.
+         * @return the score to expect in it.
+         */
+        public float expectedScore(final int category) {
+            return this.scores[category];
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package ca.carleton.comp3004.trace;
+
+import yahtzeeTrace.ScoreType;
+import yahtzeeTrace.YahtzeeTrace;
+
+import java.util.Collection;
+
+/**
+ * A game's tracer that queues each call on a {@link TraceWriter} and returns, leaving the wrapped tracer to do the
+ * work on the writer's thread.
+ * <p/>
+ * The game must trace from one thread at a time (its mailbox), which keeps its events in order. Once the writer has
+ * stopped, calls go straight to the wrapped tracer.
+ */
+public class AsyncTracer implements YahtzeeTrace {
+
+    private final YahtzeeTrace tracer;
+
+    private final TraceWriter writer;
+
+    /**
+     * @param tracer the tracer that writes the game.
+     * @param writer the queue to post its calls to.
+     */
+    public AsyncTracer(final YahtzeeTrace tracer, final TraceWriter writer) {
+        this.tracer = tracer;
+        this.writer = writer;
+    }
+
+    @Override
+    public void traceNewGame(final int numPlayers) {
+        final long position = this.writer.claim(true);
+        if (position == TraceWriter.CLOSED) {
+            this.tracer.traceNewGame(numPlayers);
+            return;
+        }
+        final TraceWriter.Slot slot = this.fill(position, TraceWriter.NEW_GAME);
+        slot.values[0] = numPlayers;
+        this.writer.publish(position);
+    }
+
+    @Override
+    public void traceScore(final int round, final int player, final Collection<Integer> dice, final int score,
+                           final ScoreType type) {
+        final int[] d = new int[dice.size()];
+        int count = 0;
+        for (final Integer i : dice) {
+            d[count++] = i;
+        }
+        this.traceScore(round, player, d, score, type);
+    }
+
+    @Override
+    public void traceScore(final int round, final int player, final int[] dice, final int score,
+                           final ScoreType type) {
+        final long position = this.writer.claim(false);
+        if (position < 0) {
+            if (position == TraceWriter.CLOSED) {
+                this.tracer.traceScore(round, player, dice, score, type);
+            }
+            return;
+        }
+        final TraceWriter.Slot slot = this.fill(position, TraceWriter.SCORE);
+        slot.round = round;
+        slot.player = player;
+        if (slot.dice.length != dice.length) {
+            slot.dice = new int[dice.length];
+        }
+        System.arraycopy(dice, 0, slot.dice, 0, dice.length);
+        slot.score = score;
+        slot.type = type;
+        this.writer.publish(position);
+    }
+
+    @Override
+    public void tracePlayerDropped(final int player) {
+        final long position = this.writer.claim(false);
+        if (position < 0) {
+            if (position == TraceWriter.CLOSED) {
+                this.tracer.tracePlayerDropped(player);
+            }
+            return;
+        }
+        this.fill(position, TraceWriter.DROPPED).player = player;
+        this.writer.publish(position);
+    }
+
+    @Override
+    public void tracePlayerTotal(final int player, final int subtotal_top, final int bonus_top, final int top_total,
+                                 final int bottom_bonus, final int bottom_total, final int total_score) {
+        final long position = this.writer.claim(false);
+        if (position < 0) {
+            if (position == TraceWriter.CLOSED) {
+                this.tracer.tracePlayerTotal(player, subtotal_top, bonus_top, top_total, bottom_bonus, bottom_total,
+                        total_score);
+            }
+            return;
+        }
+        final TraceWriter.Slot slot = this.fill(position, TraceWriter.TOTALS);
+        slot.player = player;
+        slot.values[0] = subtotal_top;
+        slot.values[1] = bonus_top;
+        slot.values[2] = top_total;
+        slot.values[3] = bottom_bonus;
+        slot.values[4] = bottom_total;
+        slot.values[5] = total_score;
+        this.writer.publish(position);
+    }
+
+    @Override
+    public void traceEndGame() {
+        final long position = this.writer.claim(true);
+        if (position == TraceWriter.CLOSED) {
+            this.tracer.traceEndGame();
+            return;
+        }
+        this.fill(position, TraceWriter.END_GAME);
+        this.writer.publish(position);
+    }
+
+    private TraceWriter.Slot fill(final long position, final int kind) {
+        final TraceWriter.Slot slot = this.writer.slot(position);
+        slot.kind = kind;
+        slot.tracer = this.tracer;
+        return slot;
+    }
+}
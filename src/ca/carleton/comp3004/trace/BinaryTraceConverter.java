@@ -0,0 +1,66 @@
+package ca.carleton.comp3004.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import yahtzeeTrace.BinaryTraceReader;
+import yahtzeeTrace.BinaryYahtzeeTracer;
+import yahtzeeTrace.StreamingYahtzeeTracer;
+import yahtzeeTrace.YahtzeeTrace;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Turns games from a binary trace archive back into the XML trace files they would have had:
+ * <pre>
+ *     java ca.carleton.comp3004.trace.BinaryTraceConverter [--archive=file] [--games=N|N-M] [--out=dir]
+ * </pre>
+ * Without {@code --out} each game becomes the next numbered file in {@code traceFiles}, where the grader looks for
+ * them; with it, game N of the archive is written to {@code dir/yahtzeeOutN.xml}. {@code --games} picks games by their
+ * position in the archive, from 1; the default is all of them.
+ */
+public final class BinaryTraceConverter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryTraceConverter.class);
+
+    private BinaryTraceConverter() {
+        // Do nothing.
+    }
+
+    public static void main(final String[] args) throws IOException {
+        Path archive = Paths.get(BinaryYahtzeeTracer.archive);
+        Path out = null;
+        int first = 1;
+        int last = Integer.MAX_VALUE;
+        for (final String arg : args) {
+            if (arg.startsWith("--archive=")) {
+                archive = Paths.get(arg.substring("--archive=".length()));
+            } else if (arg.startsWith("--out=")) {
+                out = Paths.get(arg.substring("--out=".length()));
+            } else if (arg.startsWith("--games=")) {
+                final String games = arg.substring("--games=".length());
+                final int dash = games.indexOf('-');
+                first = Integer.parseInt(dash < 0 ? games : games.substring(0, dash));
+                last = dash < 0 ? first : Integer.parseInt(games.substring(dash + 1));
+            } else {
+                LOG.warn("Ignoring unknown argument {}.", arg);
+            }
+        }
+
+        final long start = System.nanoTime();
+        int converted = 0;
+        try (BinaryTraceReader reader = new BinaryTraceReader(archive)) {
+            while (reader.getGame() < last && reader.next()) {
+                if (reader.getGame() < first) {
+                    continue;
+                }
+                final YahtzeeTrace tracer = out == null ? new StreamingYahtzeeTracer()
+                        : new StreamingYahtzeeTracer(out.resolve("yahtzeeOut" + reader.getGame() + ".xml"));
+                reader.replay(tracer);
+                converted++;
+            }
+        }
+        LOG.info("Converted {} games from {} in {} ms.", converted, archive, (System.nanoTime() - start) / 1000000);
+    }
+}
@@ -0,0 +1,452 @@
+package ca.carleton.comp3004.trace;
+
+import ca.carleton.comp3004.util.ScoringTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import yahtzeeTrace.ScoreType;
+import yahtzeeTrace.ScoreTypeConverter;
+import yahtzeeTrace.YahtzeeTracer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Statistics over every recorded game in a trace directory: how each slot of the board is scored, how players finish,
+ * win and drop out, and how long games run.
+ * <pre>
+ *     java ca.carleton.comp3004.trace.TraceAnalytics [--dir=traceFiles] [--threads=N] [--top=N]
+ * </pre>
+ * Files are read with a StAX reader, one event at a time, by a {@link TraceScan} on {@code --threads} threads (default
+ * one per core), so memory depends on the number of distinct players rather than the number of files. The report goes
+ * to standard output; {@code --top} is how many of the players with the most games it lists (default 10).
+ * <p/>
+ * Scores are reported by board slot. Traces record the score type instead, and the server writes the lower area's
+ * chance as {@code yahtzee} and its yahtzee, like a round the player did not score, as {@code aces}; so a
+ * {@code yahtzee} element counts as chance, an aces score of 50 as yahtzee and an aces score of 0 as a round not
+ * scored, which are counted on their own.
+ */
+public final class TraceAnalytics extends TraceScan<TraceAnalytics.Stats> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TraceAnalytics.class);
+
+    private static final ScoreType[] TYPES = ScoreType.values();
+
+    /**
+     * Board slots as {@link ScoringTable#category(int, int)} numbers them.
+     */
+    private static final int CHANCE = ScoringTable.category(1, 5);
+
+    private static final int YAHTZEE = ScoringTable.category(1, 6);
+
+    /**
+     * Scores above this are counted together.
+     */
+    private static final int MAX_SCORE = 50;
+
+    private static final int TOTAL_BIN = 25;
+
+    private static final int TOTAL_BINS = 17;
+
+    /**
+     * Per player: traces they appear in, games they got totals in, wins, the sum of their total scores and drops.
+     */
+    private static final int GAMES = 0;
+
+    private static final int FINISHED = 1;
+
+    private static final int WINS = 2;
+
+    private static final int SCORE_SUM = 3;
+
+    private static final int DROPS = 4;
+
+    private final ThreadLocal<XMLInputFactory> factories = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            return XMLInputFactory.newInstance();
+        }
+    };
+
+    public static void main(final String[] args) throws IOException {
+        Path directory = Paths.get(YahtzeeTracer.configDirectory);
+        int threads = Runtime.getRuntime().availableProcessors();
+        int top = 10;
+        for (final String arg : args) {
+            if (arg.startsWith("--dir=")) {
+                directory = Paths.get(arg.substring("--dir=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--top=")) {
+                top = Integer.parseInt(arg.substring("--top=".length()));
+            } else {
+                LOG.warn("Ignoring unknown argument {}.", arg);
+            }
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        final TraceAnalytics analytics = new TraceAnalytics();
+        final Stats stats = analytics.run(directory, "yahtzeeOut*.xml", pool);
+        pool.shutdown();
+        LOG.info("Read {} trace files ({} unreadable) in {} ms, {} files/s.", analytics.getFiles(),
+                analytics.getFailures(), analytics.getElapsedMillis(), Math.round(analytics.getFilesPerSecond()));
+        stats.print(System.out, top);
+    }
+
+    @Override
+    protected Stats newResult() {
+        return new Stats();
+    }
+
+    @Override
+    protected void add(final Stats stats, final Path file) throws IOException, XMLStreamException {
+        stats.add(this.read(file));
+    }
+
+    @Override
+    protected void merge(final Stats stats, final Stats other) {
+        stats.merge(other);
+    }
+
+    /**
+     * Reads the events of one trace. The root and the yahtzee score are both {@code yahtzee} elements, so elements are
+     * told apart by depth: rounds, drops and totals at 2, scores and the totals' fields at 3, a score's fields at 4.
+     */
+    private Game read(final Path file) throws IOException, XMLStreamException {
+        final Game game = new Game();
+        try (InputStream in = Files.newInputStream(file)) {
+            final XMLStreamReader xml = this.factories.get().createXMLStreamReader(in);
+            try {
+                int depth = 0;
+                boolean round = false;
+                ScoreType type = null;
+                int player = 0;
+                int score = 0;
+                int totals = 0;
+                while (xml.hasNext()) {
+                    final int event = xml.next();
+                    if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                        if (depth == 2 && type != null) {
+                            game.score(type, player, score);
+                            type = null;
+                        } else if (depth == 1) {
+                            round = false;
+                        }
+                        continue;
+                    } else if (event != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    depth++;
+                    final String name = xml.getLocalName();
+                    if (depth == 2) {
+                        if ("round".equals(name)) {
+                            round = true;
+                            game.round(Integer.parseInt(xml.getAttributeValue(null, "number")));
+                        } else if ("Player_dropped".equals(name)) {
+                            game.dropped(Integer.parseInt(xml.getAttributeValue(null, "player")));
+                        } else if ("Player_totals".equals(name)) {
+                            totals = Integer.parseInt(xml.getAttributeValue(null, "player"));
+                        }
+                    } else if (depth == 3 && round) {
+                        type = ScoreTypeConverter.getScoreTypeFromElement(name);
+                    } else if (depth == 3 && "total_score".equals(name)) {
+                        game.total(totals, Integer.parseInt(xml.getElementText().trim()));
+                        depth--;
+                    } else if (depth == 4 && type != null) {
+                        if ("player".equals(name)) {
+                            player = Integer.parseInt(xml.getElementText().trim());
+                            depth--;
+                        } else if ("score".equals(name)) {
+                            score = Integer.parseInt(xml.getElementText().trim());
+                            depth--;
+                        }
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        }
+        return game;
+    }
+
+    /**
+     * What one trace holds, so a file that turns out to be unreadable halfway adds nothing to the statistics.
+     */
+    private static final class Game {
+
+        private final List<Integer> players = new ArrayList<Integer>();
+
+        private final List<Integer> dropped = new ArrayList<Integer>();
+
+        private final List<Integer> totalPlayers = new ArrayList<Integer>();
+
+        private final List<Integer> totals = new ArrayList<Integer>();
+
+        private int[] scores = new int[64];
+
+        private int scored;
+
+        private int unscored;
+
+        private int rounds;
+
+        private void round(final int number) {
+            this.rounds = Math.max(this.rounds, number);
+        }
+
+        private void score(final ScoreType type, final int player, final int score) {
+            this.seen(player);
+            final int slot;
+            if (type == ScoreType.ACES && score == 0) {
+                this.unscored++;
+                return;
+            } else if (type == ScoreType.ACES && score == ScoringTable.YAHTZEE) {
+                slot = YAHTZEE;
+            } else if (type == ScoreType.YAHTZEE) {
+                slot = CHANCE;
+            } else {
+                // The other types are in slot order.
+                slot = type.ordinal();
+            }
+            if (this.scored == this.scores.length) {
+                this.scores = Arrays.copyOf(this.scores, this.scored * 2);
+            }
+            this.scores[this.scored++] = slot;
+            this.scores[this.scored++] = score;
+        }
+
+        private void dropped(final int player) {
+            this.dropped.add(player);
+            this.seen(player);
+        }
+
+        private void total(final int player, final int score) {
+            this.totalPlayers.add(player);
+            this.totals.add(score);
+            this.seen(player);
+        }
+
+        private void seen(final int player) {
+            if (!this.players.contains(player)) {
+                this.players.add(player);
+            }
+        }
+    }
+
+    /**
+     * Statistics over any number of traces, merged from the statistics of parts of them.
+     */
+    static final class Stats {
+
+        private final long[][] scores = new long[ScoringTable.CATEGORIES][MAX_SCORE + 2];
+
+        private final long[] scoreSums = new long[ScoringTable.CATEGORIES];
+
+        private final long[] totals = new long[TOTAL_BINS];
+
+        private final Map<Integer, long[]> players = new HashMap<Integer, long[]>();
+
+        private long games;
+
+        private long finished;
+
+        private long withDrops;
+
+        private long drops;
+
+        private long rounds;
+
+        private long unscored;
+
+        private long totalCount;
+
+        private long totalSum;
+
+        private int totalMin = Integer.MAX_VALUE;
+
+        private int totalMax = Integer.MIN_VALUE;
+
+        private void add(final Game game) {
+            this.games++;
+            this.rounds += game.rounds;
+            this.unscored += game.unscored;
+            this.drops += game.dropped.size();
+            if (!game.dropped.isEmpty()) {
+                this.withDrops++;
+            }
+            for (int i = 0; i < game.scored; i += 2) {
+                final int score = game.scores[i + 1];
+                this.scores[game.scores[i]][score < 0 || score > MAX_SCORE ? MAX_SCORE + 1 : score]++;
+                this.scoreSums[game.scores[i]] += score;
+            }
+            for (final Integer player : game.players) {
+                this.player(player)[GAMES]++;
+            }
+            for (final Integer player : game.dropped) {
+                this.player(player)[DROPS]++;
+            }
+            if (game.totals.isEmpty()) {
+                return;
+            }
+            this.finished++;
+            // The game announces the last player with the highest score as the winner.
+            int winner = 0;
+            for (int i = 0; i < game.totals.size(); i++) {
+                final int total = game.totals.get(i);
+                if (total >= game.totals.get(winner)) {
+                    winner = i;
+                }
+                this.totalCount++;
+                this.totalSum += total;
+                this.totalMin = Math.min(this.totalMin, total);
+                this.totalMax = Math.max(this.totalMax, total);
+                this.totals[Math.min(Math.max(total, 0) / TOTAL_BIN, TOTAL_BINS - 1)]++;
+                final long[] player = this.player(game.totalPlayers.get(i));
+                player[FINISHED]++;
+                player[SCORE_SUM] += total;
+            }
+            this.player(game.totalPlayers.get(winner))[WINS]++;
+        }
+
+        private void merge(final Stats other) {
+            for (int t = 0; t < ScoringTable.CATEGORIES; t++) {
+                for (int s = 0; s < this.scores[t].length; s++) {
+                    this.scores[t][s] += other.scores[t][s];
+                }
+                this.scoreSums[t] += other.scoreSums[t];
+            }
+            for (int i = 0; i < TOTAL_BINS; i++) {
+                this.totals[i] += other.totals[i];
+            }
+            for (final Map.Entry<Integer, long[]> entry : other.players.entrySet()) {
+                final long[] player = this.player(entry.getKey());
+                for (int i = 0; i < player.length; i++) {
+                    player[i] += entry.getValue()[i];
+                }
+            }
+            this.games += other.games;
+            this.finished += other.finished;
+            this.withDrops += other.withDrops;
+            this.drops += other.drops;
+            this.rounds += other.rounds;
+            this.unscored += other.unscored;
+            this.totalCount += other.totalCount;
+            this.totalSum += other.totalSum;
+            this.totalMin = Math.min(this.totalMin, other.totalMin);
+            this.totalMax = Math.max(this.totalMax, other.totalMax);
+        }
+
+        private long[] player(final Integer player) {
+            long[] counts = this.players.get(player);
+            if (counts == null) {
+                counts = new long[5];
+                this.players.put(player, counts);
+            }
+            return counts;
+        }
+
+        /**
+         * @param out where to print.
+         * @param top how many players to list.
+         */
+        void print(final PrintStream out, final int top) {
+            out.printf("Games: %d, finished %d, with a drop %d (%.1f%%), %d drops%n", this.games, this.finished,
+                    this.withDrops, percent(this.withDrops, this.games), this.drops);
+            out.printf("Average game length: %.2f rounds%n", ratio(this.rounds, this.games));
+            if (this.totalCount > 0) {
+                out.printf("Total scores: %d, mean %.1f, min %d, max %d%n", this.totalCount,
+                        ratio(this.totalSum, this.totalCount), this.totalMin, this.totalMax);
+                for (int i = 0; i < TOTAL_BINS; i++) {
+                    if (this.totals[i] > 0) {
+                        out.printf("  %-9s %8d  %5.1f%%%n", i == TOTAL_BINS - 1 ? i * TOTAL_BIN + "+"
+                                        : i * TOTAL_BIN + "-" + ((i + 1) * TOTAL_BIN - 1), this.totals[i],
+                                percent(this.totals[i], this.totalCount));
+                    }
+                }
+            }
+
+            out.printf("%n%-15s %9s %7s %7s  %s%n", "Slot", "scored", "mean", "zero", "most common");
+            long turns = this.unscored;
+            for (int slot = 0; slot < ScoringTable.CATEGORIES; slot++) {
+                final long[] counts = this.scores[slot];
+                long count = 0;
+                for (final long c : counts) {
+                    count += c;
+                }
+                if (count == 0) {
+                    continue;
+                }
+                final StringBuilder common = new StringBuilder();
+                final long[] left = counts.clone();
+                for (int n = 0; n < 3; n++) {
+                    int most = 0;
+                    for (int s = 1; s < left.length; s++) {
+                        if (left[s] > left[most]) {
+                            most = s;
+                        }
+                    }
+                    if (left[most] == 0) {
+                        break;
+                    }
+                    common.append(String.format("%s=%.1f%% ", most > MAX_SCORE ? ">" + MAX_SCORE : most,
+                            percent(left[most], count)));
+                    left[most] = 0;
+                }
+                out.printf("%-15s %9d %7.2f %6.1f%%  %s%n", slotName(slot), count,
+                        ratio(this.scoreSums[slot], count), percent(counts[0], count), common);
+                turns += count;
+            }
+            out.printf("Rounds not scored: %d (%.1f%% of turns)%n", this.unscored, percent(this.unscored, turns));
+
+            final List<Map.Entry<Integer, long[]>> players = new ArrayList<Map.Entry<Integer, long[]>>(
+                    this.players.entrySet());
+            Collections.sort(players, new Comparator<Map.Entry<Integer, long[]>>() {
+                @Override
+                public int compare(final Map.Entry<Integer, long[]> a, final Map.Entry<Integer, long[]> b) {
+                    final int games = Long.compare(b.getValue()[GAMES], a.getValue()[GAMES]);
+                    return games != 0 ? games : Integer.compare(a.getKey(), b.getKey());
+                }
+            });
+            out.printf("%n%d players, the %d with the most games:%n", players.size(), Math.min(top, players.size()));
+            out.printf("%-8s %7s %7s %7s %10s %7s%n", "player", "games", "wins", "win", "mean total", "drops");
+            for (final Map.Entry<Integer, long[]> entry : players.subList(0, Math.min(top, players.size()))) {
+                final long[] p = entry.getValue();
+                out.printf("%-8d %7d %7d %6.1f%% %10.1f %7d%n", entry.getKey(), p[GAMES], p[WINS],
+                        percent(p[WINS], p[GAMES]), ratio(p[SCORE_SUM], p[FINISHED]), p[DROPS]);
+            }
+        }
+
+        private static String slotName(final int slot) {
+            if (slot == CHANCE) {
+                return "chance";
+            } else if (slot == YAHTZEE) {
+                return "yahtzee";
+            }
+            return ScoreTypeConverter.getElementName(TYPES[slot]);
+        }
+
+        private static double ratio(final long a, final long b) {
+            return b == 0 ? 0 : (double) a / b;
+        }
+
+        private static double percent(final long a, final long b) {
+            return 100 * ratio(a, b);
+        }
+    }
+}
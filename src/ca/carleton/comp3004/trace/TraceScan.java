@@ -0,0 +1,181 @@
+package ca.carleton.comp3004.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a per-file analysis over every trace file in a directory on a fork/join pool and merges the results.
+ * <p/>
+ * The directory is listed lazily and handed out in batches, with only a few batches per thread in flight at once, so
+ * memory stays the same however many files there are. Each batch is split down to a handful of files, each piece
+ * folds its files into a fresh partial result, and partial results are merged on the way back up and into the total.
+ *
+ * @param <T> the result, which is only ever touched by one thread at a time.
+ */
+abstract class TraceScan<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TraceScan.class);
+
+    private static final int BATCH = 1024;
+
+    /**
+     * Files per piece of a batch, below which it is not split any further.
+     */
+    private static final int SPLIT = 16;
+
+    /**
+     * Failures reported individually before they are only counted.
+     */
+    private static final int REPORTED_FAILURES = 10;
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private long files;
+
+    private long elapsedNanos;
+
+    /**
+     * @return an empty result.
+     */
+    protected abstract T newResult();
+
+    /**
+     * Analyses one file into a result.
+     *
+     * @param result the result to add to.
+     * @param file   the trace file.
+     * @throws Exception if the file cannot be read.
+     */
+    protected abstract void add(T result, Path file) throws Exception;
+
+    /**
+     * @param result the result to add to.
+     * @param other  a result for other files, not used again.
+     */
+    protected abstract void merge(T result, T other);
+
+    /**
+     * Analyses every file in a directory matching a glob.
+     *
+     * @param directory the directory.
+     * @param glob      the file names to take, e.g. {@code yahtzeeOut*.xml}.
+     * @param pool      the threads to use.
+     * @return the merged result.
+     * @throws IOException if the directory cannot be listed.
+     */
+    public T run(final Path directory, final String glob, final ForkJoinPool pool) throws IOException {
+        final long start = System.nanoTime();
+        final T total = this.newResult();
+        final Deque<ForkJoinTask<T>> running = new ArrayDeque<ForkJoinTask<T>>();
+        final int window = 2 * pool.getParallelism();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, glob)) {
+            Path[] batch = new Path[BATCH];
+            int size = 0;
+            for (final Path path : paths) {
+                batch[size++] = path;
+                if (size == BATCH) {
+                    this.submit(running, pool, batch, size, window, total);
+                    batch = new Path[BATCH];
+                    size = 0;
+                }
+            }
+            if (size > 0) {
+                this.submit(running, pool, batch, size, window, total);
+            }
+        }
+        while (!running.isEmpty()) {
+            this.merge(total, running.removeFirst().join());
+        }
+        this.elapsedNanos = System.nanoTime() - start;
+        return total;
+    }
+
+    /**
+     * @return the number of files looked at by the last run.
+     */
+    public long getFiles() {
+        return this.files;
+    }
+
+    /**
+     * @return the number of files that could not be read.
+     */
+    public long getFailures() {
+        return this.failures.get();
+    }
+
+    /**
+     * @return how long the last run took, in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return this.elapsedNanos / 1000000;
+    }
+
+    /**
+     * @return files looked at per second by the last run.
+     */
+    public double getFilesPerSecond() {
+        return this.elapsedNanos == 0 ? 0 : this.files * 1e9 / this.elapsedNanos;
+    }
+
+    private void submit(final Deque<ForkJoinTask<T>> running, final ForkJoinPool pool, final Path[] batch,
+                        final int size, final int window, final T total) {
+        this.files += size;
+        if (running.size() >= window) {
+            this.merge(total, running.removeFirst().join());
+        }
+        running.addLast(pool.submit(new Piece(size == batch.length ? batch : Arrays.copyOf(batch, size), 0, size)));
+    }
+
+    private final class Piece extends RecursiveTask<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path[] files;
+
+        private final int from;
+
+        private final int to;
+
+        private Piece(final Path[] files, final int from, final int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected T compute() {
+            if (this.to - this.from > SPLIT) {
+                final int middle = (this.from + this.to) >>> 1;
+                final Piece left = new Piece(this.files, this.from, middle);
+                left.fork();
+                final T result = new Piece(this.files, middle, this.to).compute();
+                TraceScan.this.merge(result, left.join());
+                return result;
+            }
+            final T result = TraceScan.this.newResult();
+            for (int i = this.from; i < this.to; i++) {
+                try {
+                    TraceScan.this.add(result, this.files[i]);
+                } catch (final Exception exception) {
+                    if (TraceScan.this.failures.incrementAndGet() <= REPORTED_FAILURES) {
+                        LOG.warn("Could not read {}: {}", this.files[i], exception.toString());
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package ca.carleton.comp3004.trace;
+
+import ca.carleton.comp3004.server.app.ScoreLedger;
+import ca.carleton.comp3004.server.app.YahtzeeGame;
+import ca.carleton.comp3004.util.ScoringTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import yahtzeeTrace.ScoreType;
+import yahtzeeTrace.ScoreTypeConverter;
+import yahtzeeTrace.YahtzeeTracer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks every recorded game in a trace directory against the rules the server plays by, and reports the traces that
+ * break them:
+ * <pre>
+ *     java ca.carleton.comp3004.trace.TraceValidator [--dir=traceFiles] [--threads=N] [--show=N]
+ * </pre>
+ * Each trace is replayed event by event with a StAX reader onto a fresh board and ledger, so memory per file only
+ * depends on the number of players. {@code --show} is how many violations are printed in full (default 20); the rest
+ * are only counted. The exit status is 1 if any trace breaks a rule or cannot be read, so it can run as a nightly job.
+ * <p/>
+ * Traces record the score type, not the board slot, and the conversion is not one to one: the lower area's chance is
+ * traced as {@code yahtzee}, and its yahtzee, like a round the player did not score, as {@code aces}. A score is taken
+ * to be in whichever of the slots its type can stand for makes it legal.
+ */
+public final class TraceValidator extends TraceScan<TraceValidator.Report> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TraceValidator.class);
+
+    /**
+     * Violations recorded for one file; any more are only counted.
+     */
+    private static final int PER_FILE = 100;
+
+    private static final int SLOTS = ScoringTable.CATEGORIES;
+
+    private static final int LOWER_CHANCE = 5;
+
+    private static final int LOWER_YAHTZEE = 6;
+
+    /**
+     * The things a trace can get wrong.
+     */
+    enum Rule {
+        /**
+         * A round numbered out of order or outside the game.
+         */
+        ROUND_ORDER,
+        /**
+         * A player scoring twice in one round.
+         */
+        TWICE_IN_ROUND,
+        /**
+         * A score for a slot already holding a score.
+         */
+        SLOT_TAKEN,
+        /**
+         * A score the recorded dice do not make, or no dice make.
+         */
+        ILLEGAL_SCORE,
+        /**
+         * A score from a player after they dropped.
+         */
+        AFTER_DROP,
+        /**
+         * Player totals that are not the sum of the player's scores.
+         */
+        TOTALS
+    }
+
+    private final ThreadLocal<XMLInputFactory> factories = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            return XMLInputFactory.newInstance();
+        }
+    };
+
+    private final int show;
+
+    /**
+     * @param show how many violations to keep in full.
+     */
+    public TraceValidator(final int show) {
+        this.show = show;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        Path directory = Paths.get(YahtzeeTracer.configDirectory);
+        int threads = Runtime.getRuntime().availableProcessors();
+        int show = 20;
+        for (final String arg : args) {
+            if (arg.startsWith("--dir=")) {
+                directory = Paths.get(arg.substring("--dir=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--show=")) {
+                show = Integer.parseInt(arg.substring("--show=".length()));
+            } else {
+                LOG.warn("Ignoring unknown argument {}.", arg);
+            }
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        final TraceValidator validator = new TraceValidator(show);
+        final Report report = validator.run(directory, "yahtzeeOut*.xml", pool);
+        pool.shutdown();
+        LOG.info("Checked {} trace files ({} unreadable) in {} ms, {} files/s.", validator.getFiles(),
+                validator.getFailures(), validator.getElapsedMillis(), Math.round(validator.getFilesPerSecond()));
+        report.print(System.out);
+        System.exit(report.getViolations() > 0 || validator.getFailures() > 0 ? 1 : 0);
+    }
+
+    @Override
+    protected Report newResult() {
+        return new Report(this.show);
+    }
+
+    @Override
+    protected void add(final Report report, final Path file) throws IOException, XMLStreamException {
+        report.add(file, this.check(file));
+    }
+
+    @Override
+    protected void merge(final Report report, final Report other) {
+        report.merge(other);
+    }
+
+    /**
+     * Replays one trace. The root and the yahtzee score are both {@code yahtzee} elements, so elements are told apart by
+     * depth: rounds, drops and totals at 2, scores and the totals' fields at 3, a score's fields at 4.
+     */
+    private Game check(final Path file) throws IOException, XMLStreamException {
+        final Game game = new Game();
+        try (InputStream in = Files.newInputStream(file)) {
+            final XMLStreamReader xml = this.factories.get().createXMLStreamReader(in);
+            try {
+                int depth = 0;
+                boolean round = false;
+                ScoreType type = null;
+                int player = 0;
+                int score = 0;
+                String dice = "";
+                int totals = 0;
+                final int[] fields = new int[Game.TOTAL_FIELDS.length];
+                while (xml.hasNext()) {
+                    final int event = xml.next();
+                    if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                        if (depth == 2 && type != null) {
+                            game.score(type, player, dice, score);
+                            type = null;
+                        } else if (depth == 1 && !round) {
+                            if ("Player_totals".equals(xml.getLocalName())) {
+                                game.totals(totals, fields);
+                            }
+                        } else if (depth == 1) {
+                            round = false;
+                        }
+                        continue;
+                    } else if (event != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    depth++;
+                    final String name = xml.getLocalName();
+                    if (depth == 2) {
+                        if ("round".equals(name)) {
+                            round = true;
+                            game.round(Integer.parseInt(xml.getAttributeValue(null, "number")));
+                        } else if ("Player_dropped".equals(name)) {
+                            game.dropped(Integer.parseInt(xml.getAttributeValue(null, "player")));
+                        } else if ("Player_totals".equals(name)) {
+                            totals = Integer.parseInt(xml.getAttributeValue(null, "player"));
+                            for (int i = 0; i < fields.length; i++) {
+                                fields[i] = -1;
+                            }
+                        }
+                    } else if (depth == 3 && round) {
+                        type = ScoreTypeConverter.getScoreTypeFromElement(name);
+                        dice = "";
+                    } else if (depth == 3) {
+                        for (int i = 0; i < fields.length; i++) {
+                            if (Game.TOTAL_FIELDS[i].equals(name)) {
+                                final String text = xml.getElementText().trim();
+                                fields[i] = text.isEmpty() ? -1 : Integer.parseInt(text);
+                                depth--;
+                                break;
+                            }
+                        }
+                    } else if (depth == 4 && type != null) {
+                        if ("player".equals(name)) {
+                            player = Integer.parseInt(xml.getElementText().trim());
+                            depth--;
+                        } else if ("score".equals(name)) {
+                            score = Integer.parseInt(xml.getElementText().trim());
+                            depth--;
+                        } else if ("dice".equals(name)) {
+                            dice = xml.getElementText();
+                            depth--;
+                        }
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        }
+        return game;
+    }
+
+    /**
+     * One game replayed onto a board and a ledger, with the violations found so far.
+     */
+    private static final class Game {
+
+        /**
+         * The totals' fields, as {@link yahtzeeTrace.YahtzeeTracer} writes them: the upper bonus ends up in
+         * {@code subtotal_top} and {@code bonus_top} is left empty.
+         */
+        private static final String[] TOTAL_FIELDS = {"subtotal_top", "total_top", "bonus_bottom", "total_bottom",
+                "total_score"};
+
+        private final int[] board = new int[SLOTS];
+
+        private final int[] owners = new int[SLOTS];
+
+        /**
+         * Upper and lower sums by player.
+         */
+        private final Map<Integer, int[]> sums = new HashMap<Integer, int[]>();
+
+        private final List<Integer> dropped = new ArrayList<Integer>();
+
+        private final List<Integer> scoredThisRound = new ArrayList<Integer>();
+
+        private final List<String> violations = new ArrayList<String>();
+
+        private final long[] counts = new long[Rule.values().length];
+
+        private final int[] dice = new int[ScoringTable.DICE];
+
+        private int round;
+
+        private long unrolled;
+
+        private void round(final int number) {
+            if (number <= this.round || number > YahtzeeGame.MAX_ROUNDS) {
+                this.violation(Rule.ROUND_ORDER, "round " + number + " after round " + this.round);
+            }
+            this.round = number;
+            this.scoredThisRound.clear();
+        }
+
+        private void dropped(final int player) {
+            this.dropped.add(player);
+        }
+
+        private void score(final ScoreType type, final int player, final String dice, final int score) {
+            final String what = "round " + this.round + ": player " + player + " scored " + score + " as "
+                    + ScoreTypeConverter.getElementName(type);
+            if (this.scoredThisRound.contains(player)) {
+                this.violation(Rule.TWICE_IN_ROUND, what + ", a second time this round");
+            } else {
+                this.scoredThisRound.add(player);
+            }
+            if (this.dropped.contains(player)) {
+                this.violation(Rule.AFTER_DROP, what + ", after dropping");
+            }
+
+            final int code = this.code(dice);
+            if (code < 0) {
+                this.unrolled++;
+            }
+            final int upper = type.ordinal() < ScoringTable.UPPER_CATEGORIES ? type.ordinal() : -1;
+            final int slot;
+            if (type == ScoreType.ACES) {
+                // Aces, yahtzee or no score at all: a score of 0 takes no slot whichever it was.
+                if (score == 0) {
+                    return;
+                }
+                slot = legal(code, 0, 0, score) ? 0
+                        : legal(code, 1, LOWER_YAHTZEE, score) ? ScoringTable.category(1, LOWER_YAHTZEE) : -1;
+            } else if (type == ScoreType.YAHTZEE) {
+                slot = legal(code, 1, LOWER_CHANCE, score) ? ScoringTable.category(1, LOWER_CHANCE) : -1;
+            } else if (upper >= 0) {
+                slot = legal(code, 0, upper, score) ? upper : -1;
+            } else {
+                final int area = type.ordinal() - ScoringTable.UPPER_CATEGORIES;
+                slot = legal(code, 1, area, score) ? ScoringTable.category(1, area) : -1;
+            }
+            if (slot < 0) {
+                this.violation(Rule.ILLEGAL_SCORE, what + (code < 0 ? ", which no dice score"
+                        : ", which the dice " + dice.trim() + " do not score"));
+                return;
+            }
+            // As on the board, a slot scored 0 is still open.
+            if (this.board[slot] != 0) {
+                this.violation(Rule.SLOT_TAKEN, what + ", a slot player " + this.owners[slot] + " has scored "
+                        + this.board[slot] + " in");
+                return;
+            }
+            this.board[slot] = score;
+            this.owners[slot] = player;
+            this.sums(player)[slot < ScoringTable.UPPER_CATEGORIES ? 0 : 1] += score;
+        }
+
+        private void totals(final int player, final int[] fields) {
+            final int[] sums = this.sums(player);
+            final int bonus = sums[0] >= ScoreLedger.UPPER_BONUS_THRESHOLD ? ScoreLedger.UPPER_BONUS : 0;
+            final int[] expected = {bonus, sums[0] + bonus, 0, sums[1], sums[0] + bonus + sums[1]};
+            for (int i = 0; i < expected.length; i++) {
+                if (fields[i] != expected[i]) {
+                    this.violation(Rule.TOTALS, "player " + player + " has " + TOTAL_FIELDS[i] + " "
+                            + (fields[i] < 0 ? "missing" : Integer.toString(fields[i])) + " instead of "
+                            + expected[i]);
+                }
+            }
+        }
+
+        /**
+         * @return the code of the recorded dice, or -1 if they are not a roll, as in traces from before the server
+         * rolled the dice or of a round the player scored without rolling.
+         */
+        private int code(final String dice) {
+            int count = 0;
+            int at = 0;
+            while (at < dice.length()) {
+                final char c = dice.charAt(at++);
+                if (c == ' ' || c == '\n' || c == '\t' || c == '\r') {
+                    continue;
+                }
+                if (c < '1' || c > '6' || count == ScoringTable.DICE
+                        || (at < dice.length() && Character.isDigit(dice.charAt(at)))) {
+                    return -1;
+                }
+                this.dice[count++] = c - '0';
+            }
+            return count == ScoringTable.DICE ? ScoringTable.code(this.dice) : -1;
+        }
+
+        private static boolean legal(final int code, final int scoringPart, final int scoringArea, final int score) {
+            return code < 0 ? ScoringTable.isPossible(scoringPart, scoringArea, score)
+                    : ScoringTable.score(code, ScoringTable.category(scoringPart, scoringArea)) == score;
+        }
+
+        private int[] sums(final int player) {
+            int[] sums = this.sums.get(player);
+            if (sums == null) {
+                sums = new int[2];
+                this.sums.put(player, sums);
+            }
+            return sums;
+        }
+
+        private void violation(final Rule rule, final String message) {
+            this.counts[rule.ordinal()]++;
+            if (this.violations.size() < PER_FILE) {
+                this.violations.add(rule + ": " + message);
+            }
+        }
+    }
+
+    /**
+     * Violations over any number of traces, merged from the violations in parts of them.
+     */
+    static final class Report {
+
+        private final int show;
+
+        private final long[] counts = new long[Rule.values().length];
+
+        private final List<String> shown = new ArrayList<String>();
+
+        private long games;
+
+        private long invalid;
+
+        private long unrolled;
+
+        private Report(final int show) {
+            this.show = show;
+        }
+
+        private void add(final Path file, final Game game) {
+            this.games++;
+            this.unrolled += game.unrolled;
+            long violations = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                this.counts[i] += game.counts[i];
+                violations += game.counts[i];
+            }
+            if (violations == 0) {
+                return;
+            }
+            this.invalid++;
+            for (final String violation : game.violations) {
+                if (this.shown.size() == this.show) {
+                    break;
+                }
+                this.shown.add(file.getFileName() + ": " + violation);
+            }
+        }
+
+        private void merge(final Report other) {
+            for (int i = 0; i < this.counts.length; i++) {
+                this.counts[i] += other.counts[i];
+            }
+            for (final String violation : other.shown) {
+                if (this.shown.size() == this.show) {
+                    break;
+                }
+                this.shown.add(violation);
+            }
+            this.games += other.games;
+            this.invalid += other.invalid;
+            this.unrolled += other.unrolled;
+        }
+
+        /**
+         * @return the number of violations in every trace.
+         */
+        long getViolations() {
+            long violations = 0;
+            for (final long count : this.counts) {
+                violations += count;
+            }
+            return violations;
+        }
+
+        /**
+         * @param out where to print.
+         */
+        void print(final PrintStream out) {
+            out.printf("Games: %d, %d breaking a rule, %d scores without dice checked against any roll%n", this.games,
+                    this.invalid, this.unrolled);
+            for (final Rule rule : Rule.values()) {
+                out.printf("  %-15s %8d%n", rule, this.counts[rule.ordinal()]);
+            }
+            for (final String violation : this.shown) {
+                out.println(violation);
+            }
+            if (this.getViolations() > this.shown.size()) {
+                out.printf("... and %d more%n", this.getViolations() - this.shown.size());
+            }
+        }
+    }
+}
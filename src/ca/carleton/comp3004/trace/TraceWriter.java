@@ -0,0 +1,308 @@
+package ca.carleton.comp3004.trace;
+
+import ca.carleton.comp3004.util.ScoringTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import yahtzeeTrace.ScoreType;
+import yahtzeeTrace.YahtzeeTrace;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the tracers of every game on one background thread, so tracing costs a game thread a few stores instead of the
+ * tracer's XML and file work.
+ * <p/>
+ * Games hand their events over through a bounded ring of pre-allocated slots: any number of threads claim a slot with
+ * one CAS, copy the event's values in and publish it, and the writer thread takes them out in order and makes the real
+ * tracer calls, a batch at a time. A game posts its events from one thread at a time, so they reach its tracer in the
+ * order they were traced.
+ * <p/>
+ * When the ring is full a score, drop or total waits up to the configured time for room and is then dropped (and
+ * counted). Starting and ending a game always wait, so every trace file that is begun is also finished. Everything
+ * queued is written before {@link #shutdown()} returns, which also runs when the JVM exits.
+ */
+public final class TraceWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TraceWriter.class);
+
+    static final int NEW_GAME = 0;
+
+    static final int SCORE = 1;
+
+    static final int DROPPED = 2;
+
+    static final int TOTALS = 3;
+
+    static final int END_GAME = 4;
+
+    /**
+     * How long the writer sleeps when there is nothing to write. Producers wake it early if they find the ring full.
+     */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final long FULL_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    /**
+     * {@link #claim} result for an event that was dropped.
+     */
+    static final long DROPPED_EVENT = -1;
+
+    /**
+     * {@link #claim} result once the writer has stopped.
+     */
+    static final long CLOSED = -2;
+
+    /**
+     * The tail once the writer has stopped taking events.
+     */
+    private static final long CLOSED_TAIL = Long.MIN_VALUE;
+
+    private final int capacity;
+
+    private final int mask;
+
+    private final long waitNanos;
+
+    /**
+     * The slots, filled in place. Slot {@code i} is free for the event at position {@code p} (with {@code p & mask ==
+     * i}) when its sequence is {@code p}, and holds that event once it is {@code p + 1}.
+     */
+    private final Slot[] slots;
+
+    private final AtomicLongArray sequences;
+
+    /**
+     * The next position to claim, or {@link #CLOSED_TAIL}.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread thread;
+
+    /**
+     * The next position to write. Only the writer thread uses it.
+     */
+    private long head;
+
+    private long droppedReported;
+
+    private volatile boolean stopping;
+
+    /**
+     * @param capacity  the number of events that can be waiting, rounded up to a power of two.
+     * @param waitNanos how long a score, drop or total may wait for room before it is dropped.
+     */
+    public TraceWriter(final int capacity, final long waitNanos) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.mask = this.capacity - 1;
+        this.waitNanos = waitNanos;
+        this.slots = new Slot[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            this.slots[i] = new Slot();
+            this.sequences.set(i, i);
+        }
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                TraceWriter.this.run();
+            }
+        }, "trace-writer");
+    }
+
+    /**
+     * Starts the writer thread, and makes sure the queue is written out when the JVM exits.
+     */
+    public void start() {
+        this.thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                TraceWriter.this.shutdown();
+            }
+        }, "trace-writer-shutdown"));
+    }
+
+    /**
+     * Writes everything queued so far and stops the writer. Events posted afterwards are traced on the caller's
+     * thread.
+     */
+    public void shutdown() {
+        this.stopping = true;
+        LockSupport.unpark(this.thread);
+        if (Thread.currentThread() == this.thread) {
+            return;
+        }
+        boolean interrupted = false;
+        while (this.thread.isAlive()) {
+            try {
+                this.thread.join();
+            } catch (final InterruptedException exception) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    /**
+     * Claims a slot for an event.
+     *
+     * @param required whether the event may not be dropped.
+     * @return the event's position, {@link #DROPPED_EVENT} or {@link #CLOSED}.
+     */
+    long claim(final boolean required) {
+        long deadline = 0;
+        for (;;) {
+            final long position = this.tail.get();
+            if (position < 0) {
+                return CLOSED;
+            }
+            final long free = this.sequences.get((int) position & this.mask) - position;
+            if (free == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (free < 0) {
+                if (!required) {
+                    final long now = System.nanoTime();
+                    if (deadline == 0) {
+                        deadline = now + this.waitNanos;
+                    } else if (now - deadline >= 0) {
+                        this.dropped.incrementAndGet();
+                        return DROPPED_EVENT;
+                    }
+                }
+                LockSupport.unpark(this.thread);
+                LockSupport.parkNanos(FULL_BACKOFF_NANOS);
+            }
+        }
+    }
+
+    /**
+     * @param position a claimed position.
+     * @return the slot to fill in.
+     */
+    Slot slot(final long position) {
+        return this.slots[(int) position & this.mask];
+    }
+
+    /**
+     * Hands a filled slot to the writer.
+     *
+     * @param position the claimed position.
+     */
+    void publish(final long position) {
+        this.sequences.lazySet((int) position & this.mask, position + 1);
+    }
+
+    private void run() {
+        for (;;) {
+            if (this.drain() > 0) {
+                continue;
+            }
+            this.reportDropped();
+            // Closing the tail and claiming are both CASes on it, so nothing can be claimed after the last drain.
+            if (this.stopping && this.tail.compareAndSet(this.head, CLOSED_TAIL)) {
+                break;
+            }
+            LockSupport.parkNanos(this, IDLE_NANOS);
+        }
+        LOG.info("Trace writer stopped, {} events dropped.", this.dropped.get());
+    }
+
+    /**
+     * Writes every event published so far, stopping at the first slot still being filled.
+     *
+     * @return the number of events written.
+     */
+    private int drain() {
+        int count = 0;
+        for (;;) {
+            final int index = (int) this.head & this.mask;
+            if (this.sequences.get(index) != this.head + 1) {
+                return count;
+            }
+            final Slot slot = this.slots[index];
+            try {
+                slot.replay();
+            } catch (final RuntimeException exception) {
+                LOG.error("Tracer failed.", exception);
+            }
+            slot.tracer = null;
+            slot.type = null;
+            this.sequences.lazySet(index, this.head + this.capacity);
+            this.head++;
+            count++;
+        }
+    }
+
+    private void reportDropped() {
+        final long dropped = this.dropped.get();
+        if (dropped != this.droppedReported) {
+            LOG.warn("Dropped {} trace events, the trace queue was full.", dropped - this.droppedReported);
+            this.droppedReported = dropped;
+        }
+    }
+
+    /**
+     * One queued tracer call. The arrays are allocated once and reused by every event that passes through the slot.
+     */
+    static final class Slot {
+
+        int kind;
+
+        YahtzeeTrace tracer;
+
+        int round;
+
+        int player;
+
+        int[] dice = new int[ScoringTable.DICE];
+
+        int score;
+
+        ScoreType type;
+
+        /**
+         * The player count of a new game, or the six totals in the order {@link YahtzeeTrace#tracePlayerTotal} takes
+         * them.
+         */
+        final int[] values = new int[6];
+
+        private void replay() {
+            switch (this.kind) {
+                case NEW_GAME:
+                    this.tracer.traceNewGame(this.values[0]);
+                    break;
+                case SCORE:
+                    this.tracer.traceScore(this.round, this.player, this.dice, this.score, this.type);
+                    break;
+                case DROPPED:
+                    this.tracer.tracePlayerDropped(this.player);
+                    break;
+                case TOTALS:
+                    this.tracer.tracePlayerTotal(this.player, this.values[0], this.values[1], this.values[2],
+                            this.values[3], this.values[4], this.values[5]);
+                    break;
+                case END_GAME:
+                    this.tracer.traceEndGame();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown trace event " + this.kind);
+            }
+        }
+    }
+}
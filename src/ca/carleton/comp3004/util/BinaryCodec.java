@@ -0,0 +1,267 @@
+package ca.carleton.comp3004.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-layout binary encoding of {@link ProtocolMessage}s: an opcode byte followed by the message's fields as
+ * zig-zag varints, so small values (all of ours) take a single byte.
+ * <p/>
+ * Opcodes always have the high bit set, which never starts a text line, so a reader can tell the two formats apart
+ * one message at a time. An opcode we do not know leaves no way to tell where its message ends, so it is a protocol
+ * error rather than a message to skip.
+ */
+public final class BinaryCodec {
+
+    private static final int OPCODE_FLAG = 0x80;
+
+    private BinaryCodec() {
+        // Do nothing.
+    }
+
+    /**
+     * @param firstByte the first byte of a message.
+     * @return true if the message is binary rather than a text line.
+     */
+    public static boolean isBinary(final int firstByte) {
+        return (firstByte & OPCODE_FLAG) != 0;
+    }
+
+    /**
+     * Encode a message.
+     *
+     * @param message the message.
+     * @return the encoded bytes.
+     */
+    public static byte[] encode(final ProtocolMessage message) {
+        final ByteBuffer buffer = ByteBuffer.allocate(32);
+        encode(message, buffer);
+        buffer.flip();
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Encode a message into a buffer.
+     *
+     * @param message the message.
+     * @param buffer  the buffer, with room for the message.
+     */
+    public static void encode(final ProtocolMessage message, final ByteBuffer buffer) {
+        buffer.put((byte) (OPCODE_FLAG | message.type));
+        switch (message.type) {
+            case ProtocolMessage.SUBMIT:
+                putVarint(buffer, message.scoringPart);
+                putVarint(buffer, message.scoringArea);
+                putVarint(buffer, message.score);
+                break;
+            case ProtocolMessage.UPDATE:
+                putVarint(buffer, message.playerID);
+                putVarint(buffer, message.scoringPart);
+                putVarint(buffer, message.scoringArea);
+                putVarint(buffer, message.score);
+                break;
+            case ProtocolMessage.RETRY:
+            case ProtocolMessage.SCORE_REQUEST:
+            case ProtocolMessage.GAME_OVER:
+                putVarint(buffer, message.playerID);
+                break;
+            case ProtocolMessage.SCORE_RESPONSE:
+                putVarint(buffer, message.playerID);
+                putVarint(buffer, message.score);
+                break;
+            case ProtocolMessage.HELLO:
+                putVarint(buffer, message.version);
+                break;
+            case ProtocolMessage.ROLL:
+                putVarint(buffer, message.held);
+                break;
+            case ProtocolMessage.ROLLED:
+                putVarint(buffer, message.dice);
+                break;
+            case ProtocolMessage.REPLAY:
+                putVarint(buffer, message.game);
+                putVarint(buffer, message.round);
+                putVarint(buffer, message.speed);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Write a message to a stream.
+     *
+     * @param message the message.
+     * @param out     the stream.
+     * @throws IOException
+     */
+    public static void write(final ProtocolMessage message, final OutputStream out) throws IOException {
+        out.write(encode(message));
+    }
+
+    /**
+     * Decode a message from a buffer, if all of it has arrived.
+     *
+     * @param buffer  the buffer, positioned at an opcode.
+     * @param message the message to decode into.
+     * @return true if a message was decoded; false (leaving the buffer untouched) if more bytes are needed.
+     * @throws ProtocolException if the opcode is unknown. The stream cannot be read any further.
+     */
+    public static boolean decode(final ByteBuffer buffer, final ProtocolMessage message) throws ProtocolException {
+        final int start = buffer.position();
+        try {
+            final int type = (buffer.get() & 0xFF) & ~OPCODE_FLAG;
+            message.clear(type);
+            switch (type) {
+                case ProtocolMessage.SUBMIT:
+                    message.scoringPart = getVarint(buffer);
+                    message.scoringArea = getVarint(buffer);
+                    message.score = getVarint(buffer);
+                    break;
+                case ProtocolMessage.UPDATE:
+                    message.playerID = getVarint(buffer);
+                    message.scoringPart = getVarint(buffer);
+                    message.scoringArea = getVarint(buffer);
+                    message.score = getVarint(buffer);
+                    break;
+                case ProtocolMessage.RETRY:
+                case ProtocolMessage.SCORE_REQUEST:
+                case ProtocolMessage.GAME_OVER:
+                    message.playerID = getVarint(buffer);
+                    break;
+                case ProtocolMessage.SCORE_RESPONSE:
+                    message.playerID = getVarint(buffer);
+                    message.score = getVarint(buffer);
+                    break;
+                case ProtocolMessage.HELLO:
+                    message.version = getVarint(buffer);
+                    break;
+                case ProtocolMessage.ROLL:
+                    message.held = getVarint(buffer);
+                    break;
+                case ProtocolMessage.ROLLED:
+                    message.dice = getVarint(buffer);
+                    break;
+                case ProtocolMessage.REPLAY:
+                    message.game = getVarint(buffer);
+                    message.round = getVarint(buffer);
+                    message.speed = getVarint(buffer);
+                    break;
+                case ProtocolMessage.START:
+                case ProtocolMessage.NEXT_ROUND:
+                case ProtocolMessage.QUIT:
+                    break;
+                default:
+                    buffer.position(start);
+                    throw unknown(type);
+            }
+            return true;
+        } catch (final BufferUnderflowException exception) {
+            buffer.position(start);
+            return false;
+        }
+    }
+
+    /**
+     * Read the rest of a binary message from a stream.
+     *
+     * @param opcode  the opcode byte, already read.
+     * @param in      the stream.
+     * @param message the message to decode into.
+     * @throws IOException       if the stream fails or ends inside the message.
+     * @throws ProtocolException if the opcode is unknown. The stream cannot be read any further.
+     */
+    public static void read(final int opcode, final InputStream in, final ProtocolMessage message) throws IOException {
+        final int type = opcode & ~OPCODE_FLAG;
+        message.clear(type);
+        switch (type) {
+            case ProtocolMessage.SUBMIT:
+                message.scoringPart = readVarint(in);
+                message.scoringArea = readVarint(in);
+                message.score = readVarint(in);
+                break;
+            case ProtocolMessage.UPDATE:
+                message.playerID = readVarint(in);
+                message.scoringPart = readVarint(in);
+                message.scoringArea = readVarint(in);
+                message.score = readVarint(in);
+                break;
+            case ProtocolMessage.RETRY:
+            case ProtocolMessage.SCORE_REQUEST:
+            case ProtocolMessage.GAME_OVER:
+                message.playerID = readVarint(in);
+                break;
+            case ProtocolMessage.SCORE_RESPONSE:
+                message.playerID = readVarint(in);
+                message.score = readVarint(in);
+                break;
+            case ProtocolMessage.HELLO:
+                message.version = readVarint(in);
+                break;
+            case ProtocolMessage.ROLL:
+                message.held = readVarint(in);
+                break;
+            case ProtocolMessage.ROLLED:
+                message.dice = readVarint(in);
+                break;
+            case ProtocolMessage.REPLAY:
+                message.game = readVarint(in);
+                message.round = readVarint(in);
+                message.speed = readVarint(in);
+                break;
+            case ProtocolMessage.START:
+            case ProtocolMessage.NEXT_ROUND:
+            case ProtocolMessage.QUIT:
+                break;
+            default:
+                throw unknown(type);
+        }
+    }
+
+    private static ProtocolException unknown(final int type) {
+        return new ProtocolException("unknown binary opcode " + type);
+    }
+
+    private static void putVarint(final ByteBuffer buffer, final int value) {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7F) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    private static int getVarint(final ByteBuffer buffer) {
+        int zigzag = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = buffer.get();
+            zigzag |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static int readVarint(final InputStream in) throws IOException {
+        int zigzag = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Stream ended inside a binary message.");
+            }
+            zigzag |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
@@ -2,6 +2,8 @@ package ca.carleton.comp3004.util;
 
 /**
  * Configuration class, in lieu of a properties file.
+ * <p/>
+ * Server tuning values can be overridden with system properties, e.g. {@code -Dyahtzee.nio.loops=4}.
  */
 public final class Config {
 
@@ -17,6 +19,93 @@ public final class Config {
 
     public static final int DEFAULT_NUMBER_OF_PLAYERS = 2;
 
+    /**
+     * Number of selector threads used by the NIO transport.
+     */
+    public static final int NIO_EVENT_LOOPS = Integer.getInteger("yahtzee.nio.loops", 2);
+
+    /**
+     * Longest line, in bytes, the NIO transport will buffer before dropping the client.
+     */
+    public static final int MAX_LINE_LENGTH = Integer.getInteger("yahtzee.maxLineLength", 1024);
+
+    /**
+     * TCP_NODELAY for client sockets. Messages are tiny and latency sensitive, so Nagle is off by default.
+     */
+    public static final boolean TCP_NO_DELAY = Boolean.parseBoolean(System.getProperty("yahtzee.tcp.noDelay", "true"));
+
+    /**
+     * SO_SNDBUF for client sockets, or 0 to keep the OS default.
+     */
+    public static final int TCP_SEND_BUFFER = Integer.getInteger("yahtzee.tcp.sendBuffer", 0);
+
+    /**
+     * SO_RCVBUF for client sockets, or 0 to keep the OS default.
+     */
+    public static final int TCP_RECEIVE_BUFFER = Integer.getInteger("yahtzee.tcp.receiveBuffer", 0);
+
+    /**
+     * Whether the binary protocol is offered (client) or accepted (server) during the HELLO handshake.
+     */
+    public static final boolean BINARY_PROTOCOL = Boolean.parseBoolean(System.getProperty("yahtzee.binary", "true"));
+
+    /**
+     * Threads shared by all games to process their events.
+     */
+    public static final int GAME_THREADS = Integer.getInteger("yahtzee.game.threads", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Messages a client may have waiting to be written before the overflow policy applies.
+     */
+    public static final int OUTBOUND_QUEUE_LIMIT = Integer.getInteger("yahtzee.outbound.limit", 1024);
+
+    /**
+     * What to do with a client whose outbound queue is full: drop, disconnect or block.
+     */
+    public static final String OUTBOUND_OVERFLOW = System.getProperty("yahtzee.outbound.overflow", "disconnect");
+
+    /**
+     * How long a sender waits for room under the block policy before the client is disconnected instead.
+     */
+    public static final long OUTBOUND_BLOCK_MILLIS = Long.getLong("yahtzee.outbound.blockMillis", 1000);
+
+    /**
+     * Seed for the dice of every game the server hosts, so a run can be reproduced. When not set one is picked at
+     * startup and logged.
+     */
+    public static final Long DICE_SEED = Long.getLong("yahtzee.seed");
+
+    /**
+     * Where the solver's expected value table is kept. It is built there the first time it is needed.
+     */
+    public static final String SOLVER_TABLE = System.getProperty("yahtzee.solver.table", "yahtzee-solver.bin");
+
+    /**
+     * How games are traced: dom keeps the game in memory and writes it when it ends, streaming writes each event as it
+     * happens, binary appends each game to one compact archive.
+     */
+    public static final String TRACER = System.getProperty("yahtzee.tracer", "dom");
+
+    /**
+     * Whether the binary tracer gzips each game it archives.
+     */
+    public static final boolean TRACE_GZIP = Boolean.parseBoolean(System.getProperty("yahtzee.trace.gzip", "true"));
+
+    /**
+     * Whether games queue their trace events for a background writer instead of tracing on the game thread.
+     */
+    public static final boolean TRACE_ASYNC = Boolean.parseBoolean(System.getProperty("yahtzee.trace.async", "false"));
+
+    /**
+     * Trace events that can be waiting for the background writer, rounded up to a power of two.
+     */
+    public static final int TRACE_QUEUE = Integer.getInteger("yahtzee.trace.queue", 8192);
+
+    /**
+     * How long, in microseconds, a game waits for room in a full trace queue before dropping the event.
+     */
+    public static final long TRACE_WAIT_MICROS = Long.getLong("yahtzee.trace.waitMicros", 1000);
+
     private Config () {
         // Do nothing.
     }
@@ -0,0 +1,14 @@
+package ca.carleton.comp3004.util;
+
+/**
+ * Thrown when a text protocol line cannot be decoded. The rest of the stream is still usable: the bad line has been
+ * consumed in full, so callers normally log it and carry on.
+ */
+public class MalformedMessageException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public MalformedMessageException(final String message) {
+        super(message);
+    }
+}
@@ -49,4 +49,41 @@ public final class NetworkConstants {
      */
     public static final String GAME_OVER = "OVER_%d";
 
+    /**
+     * Used by either side to leave.
+     */
+    public static final String QUIT = "quit";
+
+    /**
+     * VERSION - Sent by a client right after connecting to offer the binary protocol, and echoed by the server to
+     * accept it. Everything the server sends after its reply is binary; the client may send binary once it has seen
+     * the reply. Old clients never send it and stay on text.
+     *
+     * @see ca.carleton.comp3004.util.BinaryCodec
+     */
+    public static final String HELLO = "HELLO_%d";
+
+    /**
+     * HELD - Used by the clients to roll their dice. Bit i of HELD is set to keep die i; the server rolls the rest.
+     */
+    public static final String ROLL = "ROLL_%d";
+
+    /**
+     * DICE - The server's answer to a roll, one digit per die, e.g. ROLLED_35116.
+     */
+    public static final String ROLLED = "ROLLED_%d";
+
+    /**
+     * GAME, ROUND, SPEED - Sent by a spectator to a replay server to watch recorded game GAME from round ROUND, at SPEED
+     * times the replay's normal pace, or as fast as it can be read for 0. Sending another moves the replay.
+     *
+     * @see ca.carleton.comp3004.replay.ReplayServer
+     */
+    public static final String REPLAY = "REPLAY_%d_%d_%d";
+
+    /**
+     * Version of the binary protocol implemented by {@link ca.carleton.comp3004.util.BinaryCodec}.
+     */
+    public static final int BINARY_PROTOCOL_VERSION = 1;
+
 }
@@ -0,0 +1,79 @@
+package ca.carleton.comp3004.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A message on its way out, encoded at most once per wire format no matter how many connections it is sent to.
+ * <p/>
+ * The encoded bytes are never modified after they are built, so one instance can be handed to every recipient of a
+ * broadcast; each gets its own read-only view of the same bytes.
+ */
+public final class OutboundMessage {
+
+    private final ProtocolMessage message;
+
+    private volatile byte[] text;
+
+    private volatile byte[] binary;
+
+    /**
+     * @param message the message. Must not be modified afterwards.
+     */
+    public OutboundMessage(final ProtocolMessage message) {
+        this.message = message;
+    }
+
+    public static OutboundMessage of(final ProtocolMessage message) {
+        return new OutboundMessage(message);
+    }
+
+    public ProtocolMessage getMessage() {
+        return this.message;
+    }
+
+    /**
+     * @param binary true for the binary format, false for a text line.
+     * @return a new read-only buffer over the encoded message.
+     */
+    public ByteBuffer buffer(final boolean binary) {
+        return ByteBuffer.wrap(this.bytes(binary)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Write the encoded message to a stream, without flushing it.
+     *
+     * @param out    the stream.
+     * @param binary true for the binary format, false for a text line.
+     * @throws IOException
+     */
+    public void writeTo(final OutputStream out, final boolean binary) throws IOException {
+        out.write(this.bytes(binary));
+    }
+
+    private byte[] bytes(final boolean binary) {
+        byte[] bytes = binary ? this.binary : this.text;
+        if (bytes == null) {
+            bytes = this.encode(binary);
+        }
+        return bytes;
+    }
+
+    private synchronized byte[] encode(final boolean binary) {
+        if (binary) {
+            if (this.binary == null) {
+                this.binary = BinaryCodec.encode(this.message);
+            }
+            return this.binary;
+        }
+        if (this.text == null) {
+            this.text = TextCodec.toBytes(this.message);
+        }
+        return this.text;
+    }
+
+    public String toString() {
+        return this.message.toString();
+    }
+}
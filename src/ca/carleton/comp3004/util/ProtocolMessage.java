@@ -0,0 +1,234 @@
+package ca.carleton.comp3004.util;
+
+/**
+ * A decoded protocol message. The same message can be written in the text format with the {@link TextCodec} or
+ * with the {@link BinaryCodec}.
+ * <p/>
+ * Instances are mutable so readers can decode every message into the same one; anything that needs to keep a message
+ * around must copy the fields it cares about.
+ */
+public final class ProtocolMessage {
+
+    public static final int UNKNOWN = 0;
+
+    public static final int START = 1;
+
+    public static final int SUBMIT = 2;
+
+    public static final int UPDATE = 3;
+
+    public static final int RETRY = 4;
+
+    public static final int SCORE_REQUEST = 5;
+
+    public static final int SCORE_RESPONSE = 6;
+
+    public static final int NEXT_ROUND = 7;
+
+    public static final int GAME_OVER = 8;
+
+    public static final int QUIT = 9;
+
+    public static final int HELLO = 10;
+
+    public static final int ROLL = 11;
+
+    public static final int ROLLED = 12;
+
+    public static final int REPLAY = 13;
+
+    public int type = UNKNOWN;
+
+    public int playerID;
+
+    /**
+     * 0 for upper area, 1 for lower area, -1 for no score.
+     */
+    public int scoringPart;
+
+    /**
+     * index into the array of the upper/lower area.
+     */
+    public int scoringArea;
+
+    public int score;
+
+    /**
+     * Protocol version offered or accepted in a HELLO.
+     */
+    public int version;
+
+    /**
+     * The dice a ROLL keeps: bit i set to keep die i, clear to roll it again.
+     */
+    public int held;
+
+    /**
+     * The dice of a ROLLED, one decimal digit per die with the first die leading, e.g. 35116.
+     */
+    public int dice;
+
+    /**
+     * The recorded game a REPLAY asks for.
+     */
+    public int game;
+
+    /**
+     * The round a REPLAY starts from.
+     */
+    public int round;
+
+    /**
+     * How many times the normal pace a REPLAY goes at, 0 for no pauses.
+     */
+    public int speed;
+
+    public ProtocolMessage clear(final int type) {
+        this.type = type;
+        this.playerID = 0;
+        this.scoringPart = 0;
+        this.scoringArea = 0;
+        this.score = 0;
+        this.version = 0;
+        this.held = 0;
+        this.dice = 0;
+        this.game = 0;
+        this.round = 0;
+        this.speed = 0;
+        return this;
+    }
+
+    /**
+     * @return a new message with the same fields, for keeping past the next decode into this one.
+     */
+    public ProtocolMessage copy() {
+        final ProtocolMessage copy = new ProtocolMessage().clear(this.type);
+        copy.playerID = this.playerID;
+        copy.scoringPart = this.scoringPart;
+        copy.scoringArea = this.scoringArea;
+        copy.score = this.score;
+        copy.version = this.version;
+        copy.held = this.held;
+        copy.dice = this.dice;
+        copy.game = this.game;
+        copy.round = this.round;
+        copy.speed = this.speed;
+        return copy;
+    }
+
+    public static ProtocolMessage start() {
+        return new ProtocolMessage().clear(START);
+    }
+
+    public static ProtocolMessage submit(final int scoringPart, final int scoringArea, final int score) {
+        final ProtocolMessage message = new ProtocolMessage().clear(SUBMIT);
+        message.scoringPart = scoringPart;
+        message.scoringArea = scoringArea;
+        message.score = score;
+        return message;
+    }
+
+    public static ProtocolMessage update(final int playerID, final int scoringPart, final int scoringArea, final int score) {
+        final ProtocolMessage message = submit(scoringPart, scoringArea, score);
+        message.type = UPDATE;
+        message.playerID = playerID;
+        return message;
+    }
+
+    public static ProtocolMessage retry(final int playerID) {
+        final ProtocolMessage message = new ProtocolMessage().clear(RETRY);
+        message.playerID = playerID;
+        return message;
+    }
+
+    public static ProtocolMessage scoreRequest(final int playerID) {
+        final ProtocolMessage message = new ProtocolMessage().clear(SCORE_REQUEST);
+        message.playerID = playerID;
+        return message;
+    }
+
+    public static ProtocolMessage scoreResponse(final int playerID, final int score) {
+        final ProtocolMessage message = new ProtocolMessage().clear(SCORE_RESPONSE);
+        message.playerID = playerID;
+        message.score = score;
+        return message;
+    }
+
+    public static ProtocolMessage nextRound() {
+        return new ProtocolMessage().clear(NEXT_ROUND);
+    }
+
+    public static ProtocolMessage gameOver(final int winningPlayerID) {
+        final ProtocolMessage message = new ProtocolMessage().clear(GAME_OVER);
+        message.playerID = winningPlayerID;
+        return message;
+    }
+
+    public static ProtocolMessage quit() {
+        return new ProtocolMessage().clear(QUIT);
+    }
+
+    public static ProtocolMessage hello(final int version) {
+        final ProtocolMessage message = new ProtocolMessage().clear(HELLO);
+        message.version = version;
+        return message;
+    }
+
+    public static ProtocolMessage roll(final int held) {
+        final ProtocolMessage message = new ProtocolMessage().clear(ROLL);
+        message.held = held;
+        return message;
+    }
+
+    public static ProtocolMessage rolled(final int[] dice) {
+        final ProtocolMessage message = new ProtocolMessage().clear(ROLLED);
+        message.dice = packDice(dice);
+        return message;
+    }
+
+    public static ProtocolMessage replay(final int game, final int round, final int speed) {
+        final ProtocolMessage message = new ProtocolMessage().clear(REPLAY);
+        message.game = game;
+        message.round = round;
+        message.speed = speed;
+        return message;
+    }
+
+    /**
+     * @param dice the dice, each from 1 to 6.
+     * @return the dice as written in a ROLLED.
+     */
+    public static int packDice(final int[] dice) {
+        int packed = 0;
+        for (final int die : dice) {
+            packed = packed * 10 + die;
+        }
+        return packed;
+    }
+
+    /**
+     * @param packed the dice as written in a ROLLED.
+     * @param dice   where to put them.
+     */
+    public static void unpackDice(final int packed, final int[] dice) {
+        int rest = packed;
+        for (int i = dice.length - 1; i >= 0; i--) {
+            dice[i] = rest % 10;
+            rest /= 10;
+        }
+    }
+
+    /**
+     * Write this message in the text format.
+     *
+     * @return the line, without a line terminator.
+     * @see TextCodec
+     */
+    public String toText() {
+        return TextCodec.toText(this);
+    }
+
+    public String toString() {
+        return this.toText();
+    }
+}
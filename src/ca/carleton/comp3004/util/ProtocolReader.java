@@ -0,0 +1,61 @@
+package ca.carleton.comp3004.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads messages from a blocking stream, whichever format each one is in: text lines or {@link BinaryCodec} frames.
+ */
+public class ProtocolReader {
+
+    private final InputStream in;
+
+    private final StringBuilder line = new StringBuilder();
+
+    private final TextCodec codec = new TextCodec();
+
+    /**
+     * @param in the stream, which should be buffered.
+     */
+    public ProtocolReader(final InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Read the next message.
+     *
+     * @param message the message to decode into.
+     * @return false if the stream has ended.
+     * @throws IOException               if reading fails, or a text line is longer than
+     *                                   {@link Config#MAX_LINE_LENGTH}, as the NIO transport allows.
+     * @throws MalformedMessageException if a text line was not a message. The line has been consumed, so reading can
+     *                                   carry on with the next one.
+     */
+    public boolean read(final ProtocolMessage message) throws IOException, MalformedMessageException {
+        final int first = this.in.read();
+        if (first < 0) {
+            return false;
+        }
+        if (BinaryCodec.isBinary(first)) {
+            BinaryCodec.read(first, this.in, message);
+            return true;
+        }
+
+        this.line.setLength(0);
+        int next = first;
+        while (next != '\n') {
+            if (next < 0) {
+                return false;
+            }
+            if (next != '\r') {
+                if (this.line.length() == Config.MAX_LINE_LENGTH) {
+                    throw new IOException("Line longer than " + Config.MAX_LINE_LENGTH + " bytes.");
+                }
+                this.line.append((char) next);
+            }
+            next = this.in.read();
+        }
+        this.codec.decode(this.line, message);
+        return true;
+    }
+}
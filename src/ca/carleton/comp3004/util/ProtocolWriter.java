@@ -0,0 +1,60 @@
+package ca.carleton.comp3004.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes messages to a blocking stream in either the text or the binary format. The format can be switched once the
+ * HELLO handshake has completed.
+ */
+public class ProtocolWriter {
+
+    private final OutputStream out;
+
+    private final TextCodec codec = new TextCodec();
+
+    private volatile boolean binary;
+
+    /**
+     * @param out the stream, which should be buffered.
+     */
+    public ProtocolWriter(final OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Write a message and flush it.
+     *
+     * @param message the message.
+     * @throws IOException
+     */
+    public synchronized void write(final ProtocolMessage message) throws IOException {
+        if (this.binary) {
+            BinaryCodec.write(message, this.out);
+        } else {
+            final ByteBuffer line = this.codec.encode(message);
+            this.out.write(line.array(), 0, line.limit());
+        }
+        this.out.flush();
+    }
+
+    /**
+     * Write a message that has already been encoded and flush it.
+     *
+     * @param message the message.
+     * @throws IOException
+     */
+    public synchronized void write(final OutboundMessage message) throws IOException {
+        message.writeTo(this.out, this.binary);
+        this.out.flush();
+    }
+
+    public boolean isBinary() {
+        return this.binary;
+    }
+
+    public void setBinary(final boolean binary) {
+        this.binary = binary;
+    }
+}
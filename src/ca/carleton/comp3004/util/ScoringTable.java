@@ -0,0 +1,247 @@
+package ca.carleton.comp3004.util;
+
+/**
+ * The score of every roll in every category, worked out once when the class loads.
+ * <p/>
+ * Five dice can only show 252 different combinations once their order is ignored. Each combination is given a code,
+ * and the scores are kept in one flat table indexed by code and category, so scoring a roll is a single array read.
+ * A second table maps each of the 7,776 ordered rolls straight to its code.
+ * <p/>
+ * Categories follow the board: the upper area's six slots (ones to sixes) followed by the lower area's seven (three of
+ * a kind, four of a kind, full house, small straight, large straight, chance, yahtzee).
+ */
+public final class ScoringTable {
+
+    public static final int DICE = 5;
+
+    public static final int FACES = 6;
+
+    public static final int UPPER_CATEGORIES = 6;
+
+    public static final int LOWER_CATEGORIES = 7;
+
+    public static final int CATEGORIES = UPPER_CATEGORIES + LOWER_CATEGORIES;
+
+    /**
+     * The number of distinct rolls when the order of the dice is ignored.
+     */
+    public static final int COMBINATIONS = 252;
+
+    public static final int FULL_HOUSE = 25;
+
+    public static final int SMALL_STRAIGHT = 30;
+
+    public static final int LARGE_STRAIGHT = 40;
+
+    public static final int YAHTZEE = 50;
+
+    private static final int THREE_OF_A_KIND = 6;
+
+    private static final int FOUR_OF_A_KIND = 7;
+
+    private static final int FULL_HOUSE_CATEGORY = 8;
+
+    private static final int SMALL_STRAIGHT_CATEGORY = 9;
+
+    private static final int LARGE_STRAIGHT_CATEGORY = 10;
+
+    private static final int CHANCE = 11;
+
+    private static final int YAHTZEE_CATEGORY = 12;
+
+    private static final int ORDERED_ROLLS = 7776;
+
+    /**
+     * Scores by code * CATEGORIES + category. No score exceeds 50, so a byte holds each one.
+     */
+    private static final byte[] SCORES = new byte[COMBINATIONS * CATEGORIES];
+
+    /**
+     * Codes by ordered roll, read as a base six number with the first die most significant.
+     */
+    private static final short[] CODES = new short[ORDERED_ROLLS];
+
+    /**
+     * Face counts by code, packed three bits per face with ones in the lowest bits.
+     */
+    private static final int[] COUNTS = new int[COMBINATIONS];
+
+    /**
+     * For each category, bit n is set if some roll scores n in it.
+     */
+    private static final long[] POSSIBLE = new long[CATEGORIES];
+
+    static {
+        final int[] counts = new int[FACES];
+        final int combinations = enumerate(counts, 0, DICE, 0);
+        if (combinations != COMBINATIONS) {
+            throw new IllegalStateException("Enumerated " + combinations + " combinations of the dice.");
+        }
+        // Codes by face counts read as a base six number, ones in the lowest digit.
+        final short[] byCounts = new short[FACES * FACES * FACES * FACES * FACES * FACES];
+        for (int code = 0; code < COMBINATIONS; code++) {
+            int key = 0;
+            for (int face = FACES; face >= 1; face--) {
+                key = key * FACES + count(code, face);
+            }
+            byCounts[key] = (short) code;
+        }
+        final int[] powers = {1, 6, 36, 216, 1296, 7776};
+        for (int roll = 0; roll < ORDERED_ROLLS; roll++) {
+            int rest = roll;
+            int key = 0;
+            for (int i = 0; i < DICE; i++) {
+                key += powers[rest % FACES];
+                rest /= FACES;
+            }
+            CODES[roll] = byCounts[key];
+        }
+    }
+
+    private ScoringTable() {
+    }
+
+    /**
+     * @param dice five dice, each from 1 to 6, in any order.
+     * @return the code of the roll.
+     * @throws IllegalArgumentException if the dice are not a roll.
+     */
+    public static int code(final int[] dice) {
+        if (dice.length != DICE) {
+            throw new IllegalArgumentException("Expected " + DICE + " dice, got " + dice.length + ".");
+        }
+        int roll = 0;
+        for (final int die : dice) {
+            if (die < 1 || die > FACES) {
+                throw new IllegalArgumentException("Not a die: " + die + ".");
+            }
+            roll = roll * FACES + die - 1;
+        }
+        return CODES[roll];
+    }
+
+    /**
+     * @param code     the code of a roll.
+     * @param category the category, see {@link #category(int, int)}.
+     * @return what the roll scores in the category.
+     */
+    public static int score(final int code, final int category) {
+        return SCORES[code * CATEGORIES + category];
+    }
+
+    /**
+     * @param dice        five dice, each from 1 to 6, in any order.
+     * @param scoringPart 0 for upper board, 1 for lower.
+     * @param scoringArea index into that part of the board.
+     * @return what the roll scores in that slot.
+     * @throws IllegalArgumentException if the dice are not a roll or the slot is not on the board.
+     */
+    public static int score(final int[] dice, final int scoringPart, final int scoringArea) {
+        final int category = category(scoringPart, scoringArea);
+        if (category < 0) {
+            throw new IllegalArgumentException("No slot " + scoringPart + "/" + scoringArea + " on the board.");
+        }
+        return score(code(dice), category);
+    }
+
+    /**
+     * @param code the code of a roll.
+     * @param face a face, from 1 to 6.
+     * @return how many dice in the roll show the face.
+     */
+    public static int count(final int code, final int face) {
+        return (COUNTS[code] >>> (3 * (face - 1))) & 7;
+    }
+
+    /**
+     * Whether any roll at all scores the given value in a slot, for checking a score without knowing the dice.
+     *
+     * @param scoringPart 0 for upper board, 1 for lower.
+     * @param scoringArea index into that part of the board.
+     * @param score       the value.
+     * @return true if some roll scores exactly that.
+     */
+    public static boolean isPossible(final int scoringPart, final int scoringArea, final int score) {
+        final int category = category(scoringPart, scoringArea);
+        return category >= 0 && score >= 0 && score < Long.SIZE && (POSSIBLE[category] & (1L << score)) != 0;
+    }
+
+    /**
+     * @param scoringPart 0 for upper board, 1 for lower.
+     * @param scoringArea index into that part of the board.
+     * @return the category of the slot, or -1 if it is not on the board.
+     */
+    public static int category(final int scoringPart, final int scoringArea) {
+        if (scoringPart == 0 && scoringArea >= 0 && scoringArea < UPPER_CATEGORIES) {
+            return scoringArea;
+        }
+        if (scoringPart == 1 && scoringArea >= 0 && scoringArea < LOWER_CATEGORIES) {
+            return UPPER_CATEGORIES + scoringArea;
+        }
+        return -1;
+    }
+
+    /**
+     * Visit every way of spreading the remaining dice over the faces from {@code face} up, in order, filling in the
+     * tables for each complete combination.
+     *
+     * @return the next free code.
+     */
+    private static int enumerate(final int[] counts, final int face, final int remaining, final int code) {
+        if (face == FACES - 1) {
+            counts[face] = remaining;
+            fill(code, counts);
+            return code + 1;
+        }
+        int next = code;
+        for (int n = remaining; n >= 0; n--) {
+            counts[face] = n;
+            next = enumerate(counts, face + 1, remaining - n, next);
+        }
+        return next;
+    }
+
+    private static void fill(final int code, final int[] counts) {
+        int sum = 0;
+        int most = 0;
+        boolean pair = false;
+        boolean triple = false;
+        int packed = 0;
+        for (int face = 0; face < FACES; face++) {
+            final int n = counts[face];
+            sum += n * (face + 1);
+            most = Math.max(most, n);
+            pair |= n == 2;
+            triple |= n == 3;
+            packed |= n << (3 * face);
+        }
+        COUNTS[code] = packed;
+
+        final int base = code * CATEGORIES;
+        for (int face = 0; face < FACES; face++) {
+            SCORES[base + face] = (byte) (counts[face] * (face + 1));
+        }
+        SCORES[base + THREE_OF_A_KIND] = (byte) (most >= 3 ? sum : 0);
+        SCORES[base + FOUR_OF_A_KIND] = (byte) (most >= 4 ? sum : 0);
+        SCORES[base + FULL_HOUSE_CATEGORY] = (byte) (pair && triple ? FULL_HOUSE : 0);
+        final int run = longestRun(counts);
+        SCORES[base + SMALL_STRAIGHT_CATEGORY] = (byte) (run >= 4 ? SMALL_STRAIGHT : 0);
+        SCORES[base + LARGE_STRAIGHT_CATEGORY] = (byte) (run >= 5 ? LARGE_STRAIGHT : 0);
+        SCORES[base + CHANCE] = (byte) sum;
+        SCORES[base + YAHTZEE_CATEGORY] = (byte) (most == DICE ? YAHTZEE : 0);
+
+        for (int category = 0; category < CATEGORIES; category++) {
+            POSSIBLE[category] |= 1L << SCORES[base + category];
+        }
+    }
+
+    private static int longestRun(final int[] counts) {
+        int longest = 0;
+        int run = 0;
+        for (final int n : counts) {
+            run = n > 0 ? run + 1 : 0;
+            longest = Math.max(longest, run);
+        }
+        return longest;
+    }
+}
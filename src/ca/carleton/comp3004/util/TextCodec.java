@@ -0,0 +1,383 @@
+package ca.carleton.comp3004.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Encoder and decoder for the text protocol described in {@link NetworkConstants}.
+ * <p/>
+ * Lines are decoded straight from the characters (or ASCII bytes) into a {@link ProtocolMessage}, and messages are
+ * encoded into a buffer owned by the codec, so neither direction creates strings or arrays per message. Anything that
+ * is not a well-formed message is rejected with a {@link MalformedMessageException}.
+ * <p/>
+ * A codec keeps state between calls and must not be shared between threads.
+ */
+public final class TextCodec {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final String SUBMIT = "SUBMIT_";
+
+    private static final String UPDATE = "UPDATE_";
+
+    private static final String RETRY = "RETRY_";
+
+    private static final String SCORE = "SCORE_";
+
+    private static final String OVER = "OVER_";
+
+    private static final String HELLO = "HELLO_";
+
+    private static final String ROLLED = "ROLLED_";
+
+    private static final String ROLL = "ROLL_";
+
+    private static final String REPLAY = "REPLAY_";
+
+    /**
+     * Longest encoded message: UPDATE_ with four ten digit negative numbers, plus the line terminator.
+     */
+    private static final int MAX_ENCODED_LENGTH = 64;
+
+    private final ByteBuffer out = ByteBuffer.allocate(MAX_ENCODED_LENGTH);
+
+    private final AsciiLine bytes = new AsciiLine();
+
+    private CharSequence line;
+
+    private int position;
+
+    /**
+     * Decode a line, without its line terminator. An empty line decodes to {@link ProtocolMessage#UNKNOWN}.
+     *
+     * @param line    the line.
+     * @param message the message to decode into.
+     * @throws MalformedMessageException if the line is not a message.
+     */
+    public void decode(final CharSequence line, final ProtocolMessage message) throws MalformedMessageException {
+        this.line = line;
+        this.position = 0;
+        try {
+            this.decode(message);
+        } finally {
+            this.line = null;
+        }
+    }
+
+    /**
+     * Decode a line of ASCII bytes, without its line terminator.
+     *
+     * @param bytes   the bytes.
+     * @param offset  where the line starts.
+     * @param length  the length of the line.
+     * @param message the message to decode into.
+     * @throws MalformedMessageException if the line is not a message.
+     */
+    public void decode(final byte[] bytes, final int offset, final int length, final ProtocolMessage message)
+            throws MalformedMessageException {
+        this.bytes.wrap(bytes, offset, length);
+        try {
+            this.decode(this.bytes, message);
+        } finally {
+            this.bytes.wrap(null, 0, 0);
+        }
+    }
+
+    /**
+     * Encode a message as a line, including its line terminator.
+     *
+     * @param message the message.
+     * @return the codec's buffer, ready to be read. Only valid until the next call.
+     */
+    public ByteBuffer encode(final ProtocolMessage message) {
+        this.out.clear();
+        switch (message.type) {
+            case ProtocolMessage.START:
+                this.put(NetworkConstants.START_GAME);
+                break;
+            case ProtocolMessage.SUBMIT:
+                this.put(SUBMIT);
+                this.putFields(message.scoringPart, message.scoringArea, message.score);
+                break;
+            case ProtocolMessage.UPDATE:
+                this.put(UPDATE);
+                this.putInt(message.playerID);
+                this.out.put((byte) '_');
+                this.putFields(message.scoringPart, message.scoringArea, message.score);
+                break;
+            case ProtocolMessage.RETRY:
+                this.put(RETRY);
+                this.putInt(message.playerID);
+                break;
+            case ProtocolMessage.SCORE_REQUEST:
+                this.put(SCORE);
+                this.putInt(message.playerID);
+                break;
+            case ProtocolMessage.SCORE_RESPONSE:
+                this.put(SCORE);
+                this.putInt(message.playerID);
+                this.out.put((byte) '_');
+                this.putInt(message.score);
+                break;
+            case ProtocolMessage.NEXT_ROUND:
+                this.put(NetworkConstants.NEXT_ROUND);
+                break;
+            case ProtocolMessage.GAME_OVER:
+                this.put(OVER);
+                this.putInt(message.playerID);
+                break;
+            case ProtocolMessage.QUIT:
+                this.put(NetworkConstants.QUIT);
+                break;
+            case ProtocolMessage.HELLO:
+                this.put(HELLO);
+                this.putInt(message.version);
+                break;
+            case ProtocolMessage.ROLL:
+                this.put(ROLL);
+                this.putInt(message.held);
+                break;
+            case ProtocolMessage.ROLLED:
+                this.put(ROLLED);
+                this.putInt(message.dice);
+                break;
+            case ProtocolMessage.REPLAY:
+                this.put(REPLAY);
+                this.putFields(message.game, message.round, message.speed);
+                break;
+            default:
+                break;
+        }
+        this.out.put((byte) '\n');
+        this.out.flip();
+        return this.out;
+    }
+
+    /**
+     * Encode a message as a line of its own.
+     *
+     * @param message the message.
+     * @return the line, including its line terminator.
+     */
+    public static byte[] toBytes(final ProtocolMessage message) {
+        final ByteBuffer buffer = new TextCodec().encode(message);
+        return Arrays.copyOf(buffer.array(), buffer.limit());
+    }
+
+    /**
+     * Encode a message as a string, for logging.
+     *
+     * @param message the message.
+     * @return the line, without its line terminator.
+     */
+    public static String toText(final ProtocolMessage message) {
+        final ByteBuffer buffer = new TextCodec().encode(message);
+        return new String(buffer.array(), 0, buffer.limit() - 1, ASCII);
+    }
+
+    private void decode(final ProtocolMessage message) throws MalformedMessageException {
+        if (this.line.length() == 0) {
+            message.clear(ProtocolMessage.UNKNOWN);
+        } else if (this.isLine(NetworkConstants.START_GAME, false)) {
+            message.clear(ProtocolMessage.START);
+        } else if (this.isLine(NetworkConstants.NEXT_ROUND, false)) {
+            message.clear(ProtocolMessage.NEXT_ROUND);
+        } else if (this.isLine(NetworkConstants.QUIT, true)) {
+            message.clear(ProtocolMessage.QUIT);
+        } else if (this.prefix(SUBMIT)) {
+            message.clear(ProtocolMessage.SUBMIT);
+            message.scoringPart = this.field();
+            message.scoringArea = this.field();
+            message.score = this.lastField();
+        } else if (this.prefix(UPDATE)) {
+            message.clear(ProtocolMessage.UPDATE);
+            message.playerID = this.field();
+            message.scoringPart = this.field();
+            message.scoringArea = this.field();
+            message.score = this.lastField();
+        } else if (this.prefix(RETRY)) {
+            message.clear(ProtocolMessage.RETRY);
+            message.playerID = this.lastField();
+        } else if (this.prefix(SCORE)) {
+            // SCORE_id is a request, SCORE_id_score the response.
+            message.clear(ProtocolMessage.SCORE_REQUEST);
+            message.playerID = this.number();
+            if (this.position < this.line.length()) {
+                message.type = ProtocolMessage.SCORE_RESPONSE;
+                this.separator();
+                message.score = this.lastField();
+            }
+        } else if (this.prefix(OVER)) {
+            message.clear(ProtocolMessage.GAME_OVER);
+            message.playerID = this.lastField();
+        } else if (this.prefix(HELLO)) {
+            message.clear(ProtocolMessage.HELLO);
+            message.version = this.lastField();
+        } else if (this.prefix(ROLLED)) {
+            message.clear(ProtocolMessage.ROLLED);
+            message.dice = this.lastField();
+        } else if (this.prefix(ROLL)) {
+            message.clear(ProtocolMessage.ROLL);
+            message.held = this.lastField();
+        } else if (this.prefix(REPLAY)) {
+            message.clear(ProtocolMessage.REPLAY);
+            message.game = this.field();
+            message.round = this.field();
+            message.speed = this.lastField();
+        } else {
+            throw this.malformed("unknown command");
+        }
+    }
+
+    private boolean isLine(final String expected, final boolean ignoreCase) {
+        return this.line.length() == expected.length() && this.prefixMatches(expected, ignoreCase);
+    }
+
+    private boolean prefix(final String expected) {
+        if (this.line.length() < expected.length() || !this.prefixMatches(expected, false)) {
+            return false;
+        }
+        this.position = expected.length();
+        return true;
+    }
+
+    private boolean prefixMatches(final String expected, final boolean ignoreCase) {
+        for (int i = 0; i < expected.length(); i++) {
+            final char actual = this.line.charAt(i);
+            if (actual != expected.charAt(i)
+                    && !(ignoreCase && Character.toLowerCase(actual) == Character.toLowerCase(expected.charAt(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int field() throws MalformedMessageException {
+        final int value = this.number();
+        this.separator();
+        return value;
+    }
+
+    private int lastField() throws MalformedMessageException {
+        final int value = this.number();
+        if (this.position != this.line.length()) {
+            throw this.malformed("unexpected trailing characters");
+        }
+        return value;
+    }
+
+    private void separator() throws MalformedMessageException {
+        if (this.position >= this.line.length() || this.line.charAt(this.position) != '_') {
+            throw this.malformed("expected '_'");
+        }
+        this.position++;
+    }
+
+    private int number() throws MalformedMessageException {
+        final int length = this.line.length();
+        final boolean negative = this.position < length && this.line.charAt(this.position) == '-';
+        if (negative) {
+            this.position++;
+        }
+        final int start = this.position;
+        long value = 0;
+        while (this.position < length) {
+            final char c = this.line.charAt(this.position);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE + 1L) {
+                throw this.malformed("number out of range");
+            }
+            this.position++;
+        }
+        if (this.position == start) {
+            throw this.malformed("expected a number");
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value > Integer.MAX_VALUE) {
+            throw this.malformed("number out of range");
+        }
+        return (int) value;
+    }
+
+    private MalformedMessageException malformed(final String reason) {
+        return new MalformedMessageException(String.format("Malformed message '%s': %s at position %d.",
+                this.line, reason, this.position));
+    }
+
+    private void put(final String text) {
+        for (int i = 0; i < text.length(); i++) {
+            this.out.put((byte) text.charAt(i));
+        }
+    }
+
+    private void putFields(final int scoringPart, final int scoringArea, final int score) {
+        this.putInt(scoringPart);
+        this.out.put((byte) '_');
+        this.putInt(scoringArea);
+        this.out.put((byte) '_');
+        this.putInt(score);
+    }
+
+    private void putInt(final int value) {
+        long remaining = value;
+        if (remaining < 0) {
+            this.out.put((byte) '-');
+            remaining = -remaining;
+        }
+        int digits = 1;
+        for (long bound = 10; bound <= remaining; bound *= 10) {
+            digits++;
+        }
+        // Digits are produced least significant first, so fill the field from the right.
+        final int start = this.out.position();
+        for (int i = digits - 1; i >= 0; i--) {
+            this.out.put(start + i, (byte) ('0' + remaining % 10));
+            remaining /= 10;
+        }
+        this.out.position(start + digits);
+    }
+
+    /**
+     * A window of ASCII bytes viewed as characters.
+     */
+    private static final class AsciiLine implements CharSequence {
+
+        private byte[] bytes;
+
+        private int offset;
+
+        private int length;
+
+        void wrap(final byte[] bytes, final int offset, final int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return this.length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return (char) (this.bytes[this.offset + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return this.toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(this.bytes, this.offset, this.length, ASCII);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package yahtzeeTrace;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the games in an archive written by {@link BinaryYahtzeeTracer}, one at a time and in the order they ended.
+ * <p/>
+ * {@link #next()} moves to the next game using only its header, so games that are not wanted are skipped without being
+ * decompressed; {@link #replay(YahtzeeTrace)} makes the calls that traced the current game again, so replaying into a
+ * {@link YahtzeeTracer} or {@link StreamingYahtzeeTracer} writes the XML file the game would have had.
+ */
+public class BinaryTraceReader implements Closeable {
+
+    private static final ScoreType[] TYPES = ScoreType.values();
+
+    private final DataInputStream in;
+
+    private int players;
+
+    private int records;
+
+    private int flags;
+
+    private byte[] payload = new byte[0];
+
+    private int length;
+
+    /**
+     * Bytes of the current game not read yet.
+     */
+    private int unread;
+
+    private int games;
+
+    /**
+     * @param archive the archive.
+     * @throws IOException if it cannot be opened.
+     */
+    public BinaryTraceReader(final Path archive) throws IOException {
+        this(Files.newInputStream(archive));
+    }
+
+    /**
+     * @param in the archive's bytes, closed with the reader.
+     */
+    public BinaryTraceReader(final InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+    }
+
+    /**
+     * Moves to the next game.
+     *
+     * @return false at the end of the archive.
+     * @throws IOException if the archive cannot be read or is not one.
+     */
+    public boolean next() throws IOException {
+        while (this.unread > 0) {
+            final int skipped = this.in.skipBytes(this.unread);
+            if (skipped <= 0) {
+                throw new EOFException("Archive ends inside game " + this.games);
+            }
+            this.unread -= skipped;
+        }
+        final int magic;
+        try {
+            magic = this.in.readInt();
+        } catch (final EOFException end) {
+            return false;
+        }
+        if (magic != BinaryYahtzeeTracer.MAGIC) {
+            throw new IOException("Not a trace archive block at game " + (this.games + 1));
+        }
+        final int version = this.in.readByte();
+        if (version != BinaryYahtzeeTracer.VERSION) {
+            throw new IOException("Unknown trace archive version " + version);
+        }
+        this.flags = this.in.readByte();
+        this.players = this.in.readShort();
+        this.records = this.in.readInt();
+        this.unread = this.in.readInt();
+        this.length = -1;
+        this.games++;
+        return true;
+    }
+
+    /**
+     * @return the current game's number in the archive, from 1.
+     */
+    public int getGame() {
+        return this.games;
+    }
+
+    /**
+     * @return the number of players the current game started with.
+     */
+    public int getPlayers() {
+        return this.players;
+    }
+
+    /**
+     * @return the number of scores, drops and totals traced in the current game.
+     */
+    public int getRecords() {
+        return this.records;
+    }
+
+    /**
+     * Traces the current game again, from {@code traceNewGame} to {@code traceEndGame}.
+     *
+     * @param tracer the tracer to trace it with.
+     * @throws IOException if the game cannot be read.
+     */
+    public void replay(final YahtzeeTrace tracer) throws IOException {
+        final ByteBuffer records = this.records();
+        tracer.traceNewGame(this.players);
+        int[] dice = new int[0];
+        for (int i = 0; i < this.records; i++) {
+            final int at = i * BinaryYahtzeeTracer.RECORD_SIZE;
+            final int player = records.getInt(at + 12);
+            switch (records.get(at)) {
+                case BinaryYahtzeeTracer.SCORE:
+                    final int count = records.get(at + 2);
+                    if (dice.length != count) {
+                        dice = new int[count];
+                    }
+                    final long code = records.getLong(at + 20);
+                    for (int d = 0; d < count; d++) {
+                        dice[d] = (int) (code >>> (4 * d)) & 0xF;
+                    }
+                    tracer.traceScore(records.getInt(at + 8), player, dice, records.getInt(at + 16),
+                            TYPES[records.get(at + 1)]);
+                    break;
+                case BinaryYahtzeeTracer.DROPPED:
+                    tracer.tracePlayerDropped(player);
+                    break;
+                case BinaryYahtzeeTracer.TOTALS:
+                    tracer.tracePlayerTotal(player, records.getInt(at + 16), records.getInt(at + 20),
+                            records.getInt(at + 24), records.getInt(at + 28), records.getInt(at + 32),
+                            records.getInt(at + 36));
+                    break;
+                default:
+                    throw new IOException("Unknown trace record kind " + records.get(at) + " in game " + this.games);
+            }
+        }
+        tracer.traceEndGame();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+
+    /**
+     * Reads, and if need be inflates, the current game's records.
+     */
+    private ByteBuffer records() throws IOException {
+        final int size = this.records * BinaryYahtzeeTracer.RECORD_SIZE;
+        if (this.length < 0) {
+            final byte[] stored = new byte[this.unread];
+            this.in.readFully(stored);
+            this.unread = 0;
+            if (this.payload.length < size) {
+                this.payload = new byte[size];
+            }
+            if ((this.flags & BinaryYahtzeeTracer.FLAG_GZIP) != 0) {
+                final DataInputStream zip = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(stored)));
+                zip.readFully(this.payload, 0, size);
+                zip.close();
+            } else {
+                System.arraycopy(stored, 0, this.payload, 0, size);
+            }
+            this.length = size;
+        }
+        return ByteBuffer.wrap(this.payload, 0, size);
+    }
+}
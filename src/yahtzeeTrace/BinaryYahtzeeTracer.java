@@ -0,0 +1,241 @@
+package yahtzeeTrace;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A {@link YahtzeeTrace} that appends games to one binary archive instead of writing an XML file each, for servers
+ * that keep every game: a game takes a few hundred bytes instead of several kilobytes. {@link BinaryTraceReader}
+ * replays a game from the archive into any other tracer, which gives back the exact XML file on demand.
+ * <p/>
+ * A game is kept in memory as fixed size records while it is played and appended to the archive as one block when it
+ * ends. A block is a {@value #HEADER_SIZE} byte header (magic, version, flags, player count, record count, payload
+ * length) followed by the records, as one gzip member when compressed. Blocks are appended holding a lock on the
+ * archive file as well as the one {@link YahtzeeTracer} numbers its files under, so any number of games and servers
+ * can share an archive.
+ * <p/>
+ * Each {@value #RECORD_SIZE} byte record holds, big endian:
+ * <pre>
+ *  0  kind                  byte   SCORE, DROPPED or TOTALS
+ *  1  category              byte   ScoreType ordinal, -1 if none
+ *  2  dice count            byte
+ *  3  unused                byte
+ *  4  sequence              int    the timestamp YahtzeeTracer gives the event
+ *  8  round                 int
+ * 12  player                int
+ * 16  score                 int    or the six totals, in tracePlayerTotal order, to the end of the record
+ * 20  dice code             long   die i in bits 4i to 4i+3
+ * </pre>
+ * So dice are packed four bits each: up to {@value #MAX_DICE} dice from 0 to 15. A score with dice that do not fit is
+ * recorded without them.
+ */
+public class BinaryYahtzeeTracer implements YahtzeeTrace {
+
+    public final static String archive = YahtzeeTracer.configDirectory + "/yahtzeeTrace.bin";
+
+    public static final int MAGIC = 0x5954425A;
+
+    public static final byte VERSION = 1;
+
+    public static final int FLAG_GZIP = 1;
+
+    public static final int HEADER_SIZE = 16;
+
+    public static final int RECORD_SIZE = 40;
+
+    public static final byte SCORE = 1;
+
+    public static final byte DROPPED = 2;
+
+    public static final byte TOTALS = 3;
+
+    public static final int MAX_DICE = 15;
+
+    private final String file;
+
+    private final boolean compress;
+
+    /**
+     * Round numbers seen this game, since the first score in a round also gives the round a timestamp.
+     */
+    private final Set<Integer> rounds = new HashSet<Integer>();
+
+    private ByteBuffer records = ByteBuffer.allocate(64 * RECORD_SIZE);
+
+    private int players;
+
+    private int order;
+
+    /**
+     * @param compress whether games are gzipped.
+     */
+    public BinaryYahtzeeTracer(final boolean compress) {
+        this(archive, compress);
+    }
+
+    /**
+     * @param file     the archive to append games to.
+     * @param compress whether games are gzipped.
+     */
+    public BinaryYahtzeeTracer(final String file, final boolean compress) {
+        this.file = file;
+        this.compress = compress;
+    }
+
+    @Override
+    public synchronized void traceNewGame(final int numPlayers) {
+        this.players = numPlayers;
+        this.order = 0;
+        this.rounds.clear();
+        this.records.clear();
+    }
+
+    @Override
+    public synchronized void traceScore(final int round, final int player, final Collection<Integer> dice,
+                                        final int score, final ScoreType type) {
+        final int[] d = new int[dice.size()];
+        int count = 0;
+        for (final Integer i : dice) {
+            d[count++] = i;
+        }
+        this.traceScore(round, player, d, score, type);
+    }
+
+    @Override
+    public synchronized void traceScore(final int round, final int player, final int[] dice, final int score,
+                                        final ScoreType type) {
+        if (this.rounds.add(round)) {
+            this.order++;
+        }
+        final long code = diceCode(dice);
+        if (code < 0) {
+            new IllegalArgumentException("Dice cannot be archived: " + Arrays.toString(dice)).printStackTrace();
+        }
+        final ByteBuffer record = this.record(SCORE, player);
+        record.put(1, (byte) type.ordinal());
+        record.put(2, (byte) (code < 0 ? 0 : dice.length));
+        record.putInt(8, round);
+        record.putInt(16, score);
+        record.putLong(20, Math.max(code, 0));
+    }
+
+    @Override
+    public synchronized void tracePlayerDropped(final int player) {
+        this.record(DROPPED, player);
+    }
+
+    @Override
+    public synchronized void tracePlayerTotal(final int player, final int subtotal_top, final int bonus_top,
+                                              final int total_top, final int bonus_bottom, final int total_bottom,
+                                              final int total_score) {
+        final ByteBuffer record = this.record(TOTALS, player);
+        record.putInt(16, subtotal_top);
+        record.putInt(20, bonus_top);
+        record.putInt(24, total_top);
+        record.putInt(28, bonus_bottom);
+        record.putInt(32, total_bottom);
+        record.putInt(36, total_score);
+    }
+
+    @Override
+    public synchronized void traceEndGame() {
+        final int count = this.records.position() / RECORD_SIZE;
+        byte[] payload = this.records.array();
+        int length = this.records.position();
+        try {
+            if (this.compress) {
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 4 + 64);
+                final GZIPOutputStream zip = new GZIPOutputStream(bytes);
+                zip.write(payload, 0, length);
+                zip.close();
+                payload = bytes.toByteArray();
+                length = payload.length;
+            }
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.put(VERSION);
+            header.put((byte) (this.compress ? FLAG_GZIP : 0));
+            header.putShort((short) this.players);
+            header.putInt(count);
+            header.putInt(length);
+            header.flip();
+            this.append(header, ByteBuffer.wrap(payload, 0, length));
+        } catch (final IOException e) {
+            e.printStackTrace();
+        }
+        this.records.clear();
+    }
+
+    private void append(final ByteBuffer header, final ByteBuffer payload) throws IOException {
+        final File directory = new File(this.file).getAbsoluteFile().getParentFile();
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        synchronized (YahtzeeTracer.class) {
+            try (FileChannel channel = FileChannel.open(Paths.get(this.file), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                final FileLock lock = channel.lock();
+                try {
+                    // Whole blocks, one after another: nobody else can append while the lock is held.
+                    final ByteBuffer[] block = {header, payload};
+                    while (header.hasRemaining() || payload.hasRemaining()) {
+                        channel.write(block);
+                    }
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the dice packed four bits each, or -1 if they do not fit.
+     */
+    private static long diceCode(final int[] dice) {
+        if (dice.length > MAX_DICE) {
+            return -1;
+        }
+        long code = 0;
+        for (int i = 0; i < dice.length; i++) {
+            if (dice[i] < 0 || dice[i] > 15) {
+                return -1;
+            }
+            code |= (long) dice[i] << (4 * i);
+        }
+        return code;
+    }
+
+    /**
+     * Starts the next record, with its kind, player and timestamp set and the rest zero.
+     */
+    private ByteBuffer record(final byte kind, final int player) {
+        if (this.records.remaining() < RECORD_SIZE) {
+            final ByteBuffer bigger = ByteBuffer.allocate(this.records.capacity() * 2);
+            this.records.flip();
+            bigger.put(this.records);
+            this.records = bigger;
+        }
+        final ByteBuffer record = this.records.slice();
+        record.limit(RECORD_SIZE);
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            record.putLong(i, 0);
+        }
+        record.put(0, kind);
+        record.put(1, (byte) -1);
+        record.putInt(4, this.order++);
+        record.putInt(12, player);
+        this.records.position(this.records.position() + RECORD_SIZE);
+        return record;
+    }
+}
@@ -9,6 +9,35 @@ package yahtzeeTrace;
  */
 public final class ScoreTypeConverter {
 
+    /**
+     * The element each score type is traced as, by ordinal.
+     */
+    private static final String[] ELEMENTS = {"aces", "twos", "threes", "fours", "fives", "sixes", "three_of_a_kind",
+            "four_of_a_kind", "full_house", "small_straight", "large_straight", "yahtzee"};
+
+    private static final ScoreType[] TYPES = ScoreType.values();
+
+    /**
+     * @param type a score type.
+     * @return the name of the element it is traced as.
+     */
+    public static String getElementName(final ScoreType type) {
+        return ELEMENTS[type.ordinal()];
+    }
+
+    /**
+     * @param name an element name from a trace.
+     * @return the score type traced as that element, or null if it is not a score.
+     */
+    public static ScoreType getScoreTypeFromElement(final String name) {
+        for (int i = 0; i < ELEMENTS.length; i++) {
+            if (ELEMENTS[i].equals(name)) {
+                return TYPES[i];
+            }
+        }
+        return null;
+    }
+
     public static ScoreType getScoreTypeFromInt(final int scoringPart, final int scoringArea) {
 
         if (scoringPart == 0) {
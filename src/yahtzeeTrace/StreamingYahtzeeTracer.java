@@ -0,0 +1,323 @@
+package yahtzeeTrace;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link YahtzeeTrace} that writes each event to the trace file as it happens instead of holding the game in a DOM
+ * until the end, so a game needs the same small amount of memory however long it runs and a crash leaves every round
+ * written so far on disk.
+ * <p/>
+ * The output is byte for byte what {@link YahtzeeTracer} would have written for the same calls, including its
+ * {@code bonus_top} value ending up in {@code subtotal_top}. To get there:
+ * <ul>
+ * <li>The game is written to a {@code .part} file in {@link YahtzeeTracer#configDirectory} and only takes the next
+ * trace number when it ends, so the numbering is the same as before and unfinished games never get one. The number's
+ * file is created empty when it is taken and then replaced by the finished trace. A tracer given a file of its own
+ * writes each game there instead, without taking a number.</li>
+ * <li>{@link YahtzeeTracer} adds scores to their round wherever it sits in the document, so drops and totals that
+ * arrive while a round is open are held back (at most two per player) and written once that round is closed by the
+ * next round or the end of the game. A score for a round that has already been closed gets a second element with the
+ * same number; the server never goes back a round.</li>
+ * </ul>
+ */
+public class StreamingYahtzeeTracer implements YahtzeeTrace {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingYahtzeeTracer.class);
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+
+    /**
+     * Not thread safe, and only used to create writers.
+     */
+    private static final XMLOutputFactory OUTPUTS = XMLOutputFactory.newInstance();
+
+    private final List<RootEvent> pending = new ArrayList<RootEvent>();
+
+    /**
+     * Where each game is written, or null for the next numbered trace file.
+     */
+    private final Path output;
+
+    private Path part;
+
+    private Writer file;
+
+    private XMLStreamWriter xml;
+
+    private boolean rootStarted;
+
+    /**
+     * The number of the round element being written, or 0 when none is open (rounds are numbered from 1).
+     */
+    private int openRound;
+
+    private long order;
+
+    public StreamingYahtzeeTracer() {
+        this(null);
+    }
+
+    /**
+     * @param output the file to write each game to instead of the next numbered trace file.
+     */
+    public StreamingYahtzeeTracer(final Path output) {
+        this.output = output;
+    }
+
+    @Override
+    public synchronized void traceNewGame(final int numPlayers) {
+        this.abandon();
+        this.order = 0;
+        this.openRound = 0;
+        this.rootStarted = false;
+        this.pending.clear();
+        try {
+            final File directory = this.output == null ? new File(YahtzeeTracer.configDirectory)
+                    : this.output.toAbsolutePath().getParent().toFile();
+            if (!directory.exists()) {
+                directory.mkdirs();
+            }
+            this.part = Files.createTempFile(directory.toPath(), "yahtzeeOut", ".xml.part");
+            this.file = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(this.part),
+                    StandardCharsets.UTF_8));
+            this.file.write(HEADER);
+            synchronized (OUTPUTS) {
+                this.xml = OUTPUTS.createXMLStreamWriter(this.file);
+            }
+        } catch (final IOException | XMLStreamException e) {
+            this.failed(e);
+        }
+    }
+
+    @Override
+    public synchronized void traceScore(final int round, final int player, final Collection<Integer> dice,
+                                        final int score, final ScoreType type) {
+        final int[] d = new int[dice.size()];
+        int count = 0;
+        for (final Integer i : dice) {
+            d[count++] = i;
+        }
+        this.traceScore(round, player, d, score, type);
+    }
+
+    @Override
+    public synchronized void traceScore(final int round, final int player, final int[] dice, final int score,
+                                        final ScoreType type) {
+        if (this.xml == null) {
+            return;
+        }
+        try {
+            if (round != this.openRound) {
+                this.closeRound();
+                this.startRoot();
+                this.xml.writeStartElement("round");
+                this.xml.writeAttribute("number", Integer.toString(round));
+                this.writeTimeStamp(this.order++);
+                this.openRound = round;
+            }
+            this.xml.writeStartElement(ScoreTypeConverter.getElementName(type));
+            this.writeTimeStamp(this.order++);
+            this.writeElement("player", Integer.toString(player));
+            final StringBuilder diceScore = new StringBuilder(2 * dice.length);
+            for (final int die : dice) {
+                diceScore.append(die).append(' ');
+            }
+            this.writeElement("dice", diceScore.toString());
+            this.writeElement("score", Integer.toString(score));
+            this.xml.writeEndElement();
+        } catch (final XMLStreamException e) {
+            this.failed(e);
+        }
+    }
+
+    @Override
+    public synchronized void tracePlayerDropped(final int player) {
+        this.rootEvent(new RootEvent(player, this.order++, null));
+    }
+
+    @Override
+    public synchronized void tracePlayerTotal(final int player, final int subtotal_top, final int bonus_top,
+                                              final int total_top, final int bonus_bottom, final int total_bottom,
+                                              final int total_score) {
+        this.rootEvent(new RootEvent(player, this.order++,
+                new int[]{subtotal_top, bonus_top, total_top, bonus_bottom, total_bottom, total_score}));
+    }
+
+    @Override
+    public synchronized void traceEndGame() {
+        if (this.xml == null) {
+            return;
+        }
+        try {
+            this.closeRound();
+            if (!this.rootStarted) {
+                this.xml.writeEmptyElement("yahtzee");
+            }
+            this.xml.writeEndDocument();
+            this.xml.close();
+            this.file.close();
+            this.xml = null;
+
+            final Path target;
+            if (this.output != null) {
+                target = this.output;
+            } else {
+                final String number = YahtzeeTracer.nextTraceNumber();
+                if (number == null) {
+                    // Reported already; the game is left in its .part file.
+                    this.part = null;
+                    return;
+                }
+                target = Paths.get(YahtzeeTracer.traceOutput + number + ".xml");
+            }
+            Files.move(this.part, target, StandardCopyOption.REPLACE_EXISTING);
+            this.part = null;
+            LOG.debug("Saved trace {}.", target);
+        } catch (final IOException | XMLStreamException e) {
+            this.failed(e);
+        }
+    }
+
+    private void rootEvent(final RootEvent event) {
+        if (this.xml == null) {
+            return;
+        }
+        if (this.openRound != 0) {
+            this.pending.add(event);
+            return;
+        }
+        try {
+            this.startRoot();
+            this.writeRootEvent(event);
+            this.xml.flush();
+        } catch (final XMLStreamException e) {
+            this.failed(e);
+        }
+    }
+
+    /**
+     * Ends the open round, if any, writes what was held back behind it and pushes it all to the file.
+     */
+    private void closeRound() throws XMLStreamException {
+        if (this.openRound == 0) {
+            return;
+        }
+        this.xml.writeEndElement();
+        this.openRound = 0;
+        for (final RootEvent event : this.pending) {
+            this.writeRootEvent(event);
+        }
+        this.pending.clear();
+        this.xml.flush();
+    }
+
+    private void startRoot() throws XMLStreamException {
+        if (!this.rootStarted) {
+            this.xml.writeStartElement("yahtzee");
+            this.rootStarted = true;
+        }
+    }
+
+    private void writeRootEvent(final RootEvent event) throws XMLStreamException {
+        final int[] totals = event.totals;
+        if (totals == null) {
+            this.xml.writeStartElement("Player_dropped");
+            this.xml.writeAttribute("player", Integer.toString(event.player));
+            this.writeTimeStamp(event.stamp);
+            this.xml.writeEndElement();
+            return;
+        }
+        this.xml.writeStartElement("Player_totals");
+        this.xml.writeAttribute("player", Integer.toString(event.player));
+        this.writeTimeStamp(event.stamp);
+        // As YahtzeeTracer writes them: bonus_top's value goes in subtotal_top and bonus_top is left empty.
+        this.writeElement("subtotal_top", Integer.toString(totals[1]));
+        this.xml.writeEmptyElement("bonus_top");
+        this.writeElement("total_top", Integer.toString(totals[2]));
+        this.writeElement("bonus_bottom", Integer.toString(totals[3]));
+        this.writeElement("total_bottom", Integer.toString(totals[4]));
+        this.writeElement("total_score", Integer.toString(totals[5]));
+        this.xml.writeEndElement();
+    }
+
+    private void writeTimeStamp(final long stamp) throws XMLStreamException {
+        this.writeElement("timestamp", Long.toString(stamp));
+    }
+
+    private void writeElement(final String name, final String text) throws XMLStreamException {
+        this.xml.writeStartElement(name);
+        this.xml.writeCharacters(text);
+        this.xml.writeEndElement();
+    }
+
+    /**
+     * Stops tracing this game, keeping whatever reached the file.
+     */
+    private void failed(final Exception e) {
+        e.printStackTrace();
+        this.xml = null;
+        if (this.file != null) {
+            try {
+                this.file.close();
+            } catch (final IOException ignored) {
+                // Already reported.
+            }
+            this.file = null;
+        }
+    }
+
+    /**
+     * Throws away a game that never ended.
+     */
+    private void abandon() {
+        if (this.xml == null || this.part == null) {
+            return;
+        }
+        try {
+            this.xml.close();
+            this.file.close();
+            Files.deleteIfExists(this.part);
+        } catch (final IOException | XMLStreamException e) {
+            e.printStackTrace();
+        }
+        this.xml = null;
+        this.part = null;
+    }
+
+    /**
+     * A drop ({@code totals} is null) or a player's totals, with the timestamp it was given when it happened.
+     */
+    private static final class RootEvent {
+
+        final int player;
+
+        final long stamp;
+
+        final int[] totals;
+
+        RootEvent(final int player, final long stamp, final int[] totals) {
+            this.player = player;
+            this.stamp = stamp;
+            this.totals = totals;
+        }
+    }
+}
@@ -5,6 +5,11 @@ package yahtzeeTrace;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
@@ -21,11 +26,11 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 /**
  * @author Darryl Hill
@@ -38,10 +43,18 @@ import org.w3c.dom.NodeList;
  */
 public class YahtzeeTracer implements YahtzeeTrace{
 
+	private static final Logger LOG = LoggerFactory.getLogger(YahtzeeTracer.class);
+
 	Document doc;
 	Element rootElement;
 	HashMap<ScoreType, String> scoreMap;
 	long order = 0;
+	/*
+	 * Each round's element, by number, and the round last scored in (where nearly every score goes).
+	 */
+	HashMap<Integer, Node> rounds = new HashMap<Integer, Node>();
+	int currentRoundNumber;
+	Node currentRound;
 	
 	//please do not change these file names
 	public final static String configDirectory = "traceFiles";
@@ -117,6 +130,8 @@ public class YahtzeeTracer implements YahtzeeTrace{
 		
 		//reset the "timestamp"
 		order = 0;
+		rounds.clear();
+		currentRound = null;
 		/*
 		 * We want to initialize the DOM object
 		 */
@@ -171,26 +186,22 @@ public class YahtzeeTracer implements YahtzeeTrace{
 
 	/**
 	 * Retrieve the DOM object associated with the given round (typically so we can add more information to it). 
+	 * Rounds are looked up in an index rather than by searching the document, so this takes the same time
+	 * however many events the game has had.
 	 * @param round
 	 * @return
 	 */
 	public Node getRound(int round){
-		NodeList rounds = rootElement.getChildNodes();
-		NamedNodeMap attr = null;
-		for (int i = 0;i < rounds.getLength(); i++){
-			attr = rounds.item(i).getAttributes();
-			String val = attr.item(0).getNodeValue();
-			if (val != null) {
-				if (round == Integer.parseInt(val)){
-					return rounds.item(i);
-				}
-			}else{
-				new Exception("DOM object (round) missing attribute").printStackTrace();
-				return null;
-			}
-
+		if (currentRound != null && currentRoundNumber == round) {
+			return currentRound;
 		}
-		return newRound(round);
+		Node node = rounds.get(round);
+		if (node == null) {
+			node = newRound(round);
+		}
+		currentRoundNumber = round;
+		currentRound = node;
+		return node;
 	}
 
 	/**
@@ -234,6 +245,7 @@ public class YahtzeeTracer implements YahtzeeTrace{
 		element.setAttribute("number", Integer.toString(round));
 		element.appendChild(getTimeStamp());
 		rootElement.appendChild(element);
+		rounds.put(round, element);
 		return element;
 	}
 
@@ -300,29 +312,10 @@ public class YahtzeeTracer implements YahtzeeTrace{
 	 */
 	@Override
 	public void traceEndGame() {
-		/*
-		 * Read in a config file that has the number of the last file written
-		 */
-		File directory = new File(configDirectory);
-		if (!directory.exists()){
-			directory.mkdir();
+		String content = nextTraceNumber();
+		if (content == null) {
+			return;
 		}
-		File f = new File(configFile);
-		String content = "1";
-		int fileno = 1;
-		try {
-			if(!f.exists()) {
-				Files.write(Paths.get(configFile), content.getBytes(), StandardOpenOption.CREATE);
-			}else{
-				content = new String(Files.readAllBytes(Paths.get(configFile))); 
-				fileno = Integer.parseInt(content);
-				content = Integer.toString(++fileno);
-				Files.write(Paths.get(configFile), content.getBytes(), StandardOpenOption.CREATE);
-			}
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} 
 
 		try {
 			// write the content into xml file
@@ -337,9 +330,56 @@ public class YahtzeeTracer implements YahtzeeTrace{
 			return;
 		}
 
-		System.out.println("File saved!");
+		LOG.debug("Saved trace {}{}.xml.", traceOutput, content);
 
 	}
 
+	/**
+	 * Read in a config file that has the number of the last file written, and take the next one.
+	 *
+	 * Games in this process take turns through a lock on the class, other processes sharing the
+	 * directory through a lock on the config file. The number is only taken once its (empty)
+	 * trace file has been created, so a number whose file already exists is skipped rather than
+	 * overwritten.
+	 * @return the number of the trace file to write, or null if none could be taken
+	 */
+	static String nextTraceNumber() {
+		File directory = new File(configDirectory);
+		if (!directory.exists()){
+			directory.mkdirs();
+		}
+		synchronized (YahtzeeTracer.class) {
+			try (FileChannel channel = FileChannel.open(Paths.get(configFile), StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				FileLock lock = channel.lock();
+				try {
+					ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+					while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+						// Read the whole number.
+					}
+					String content = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII).trim();
+					int fileno = content.isEmpty() ? 1 : Integer.parseInt(content) + 1;
+					while (true) {
+						try {
+							Files.createFile(Paths.get(traceOutput+fileno+".xml"));
+							break;
+						} catch (FileAlreadyExistsException e) {
+							fileno++;
+						}
+					}
+					content = Integer.toString(fileno);
+					channel.truncate(0);
+					channel.write(ByteBuffer.wrap(content.getBytes(StandardCharsets.US_ASCII)), 0);
+					channel.force(false);
+					return content;
+				} finally {
+					lock.release();
+				}
+			} catch (IOException | NumberFormatException e) {
+				e.printStackTrace();
+				return null;
+			}
+		}
+	}
 
 }
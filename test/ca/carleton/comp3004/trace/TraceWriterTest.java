@@ -0,0 +1,172 @@
+package ca.carleton.comp3004.trace;
+
+import org.junit.After;
+import org.junit.Test;
+import yahtzeeTrace.ScoreType;
+import yahtzeeTrace.YahtzeeTrace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class TraceWriterTest {
+
+    private static final int[] DICE = {3, 3, 3, 5, 6};
+
+    private TraceWriter writer;
+
+    @After
+    public void tearDown() {
+        if (this.writer != null) {
+            this.writer.shutdown();
+        }
+    }
+
+    @Test
+    public void keepsEachGamesEventsInOrder() throws InterruptedException {
+        // A small ring, so the games wrap around it many times and wait for room.
+        this.writer = new TraceWriter(8, TimeUnit.SECONDS.toNanos(10));
+        this.writer.start();
+        final Recorder first = new Recorder();
+        final Recorder second = new Recorder();
+        final Thread one = play(new AsyncTracer(first, this.writer), 500);
+        final Thread two = play(new AsyncTracer(second, this.writer), 500);
+        one.join();
+        two.join();
+        this.writer.shutdown();
+
+        assertEquals(0, this.writer.getDroppedCount());
+        assertEquals(expected(500), first.events);
+        assertEquals(expected(500), second.events);
+    }
+
+    @Test
+    public void dropsScoresOnceTheRingIsFullAndTheWaitRunsOut() {
+        // Not started, so nothing takes events out of the ring.
+        this.writer = new TraceWriter(2, TimeUnit.MILLISECONDS.toNanos(1));
+        final Recorder recorder = new Recorder();
+        final AsyncTracer tracer = new AsyncTracer(recorder, this.writer);
+        tracer.traceNewGame(2);
+        tracer.traceScore(1, 50000, DICE, 9, ScoreType.THREES);
+        tracer.traceScore(1, 50001, DICE, 6, ScoreType.SIXES);
+        tracer.tracePlayerDropped(50001);
+
+        assertEquals(2, this.writer.getDroppedCount());
+        assertEquals(0, recorder.events.size());
+
+        this.writer.start();
+        this.writer.shutdown();
+        assertEquals(Arrays.asList("new 2", "score 1 50000 9 THREES"), recorder.events);
+    }
+
+    @Test
+    public void shutdownWritesEverythingQueued() {
+        this.writer = new TraceWriter(4096, TimeUnit.SECONDS.toNanos(10));
+        final Recorder recorder = new Recorder();
+        final AsyncTracer tracer = new AsyncTracer(recorder, this.writer);
+        trace(tracer, 1000);
+
+        this.writer.start();
+        this.writer.shutdown();
+        assertEquals(0, this.writer.getDroppedCount());
+        assertEquals(expected(1000), recorder.events);
+    }
+
+    @Test
+    public void tracesOnTheCallersThreadOnceClosed() {
+        this.writer = new TraceWriter(16, TimeUnit.SECONDS.toNanos(10));
+        this.writer.start();
+        this.writer.shutdown();
+        final Recorder recorder = new Recorder();
+        final AsyncTracer tracer = new AsyncTracer(recorder, this.writer);
+        tracer.traceNewGame(2);
+        tracer.traceScore(1, 50000, DICE, 9, ScoreType.THREES);
+
+        assertEquals(Arrays.asList("new 2", "score 1 50000 9 THREES"), recorder.events);
+        assertEquals(Arrays.asList(Thread.currentThread(), Thread.currentThread()), recorder.threads);
+    }
+
+    private static Thread play(final YahtzeeTrace tracer, final int scores) {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                trace(tracer, scores);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void trace(final YahtzeeTrace tracer, final int scores) {
+        tracer.traceNewGame(2);
+        for (int i = 0; i < scores; i++) {
+            tracer.traceScore(i, 50000, DICE, i, ScoreType.THREES);
+        }
+        tracer.tracePlayerTotal(50000, 9, 0, 9, 0, 0, 9);
+        tracer.traceEndGame();
+    }
+
+    private static List<String> expected(final int scores) {
+        final List<String> events = new ArrayList<String>();
+        events.add("new 2");
+        for (int i = 0; i < scores; i++) {
+            events.add("score " + i + " 50000 " + i + " THREES");
+        }
+        events.add("total 50000 9");
+        events.add("end");
+        return events;
+    }
+
+    /**
+     * Notes each call and the thread that made it.
+     */
+    private static final class Recorder implements YahtzeeTrace {
+
+        private final List<String> events = new ArrayList<String>();
+
+        private final List<Thread> threads = new ArrayList<Thread>();
+
+        @Override
+        public void traceNewGame(final int numPlayers) {
+            this.record("new " + numPlayers);
+        }
+
+        @Override
+        public void traceScore(final int round, final int player, final Collection<Integer> dice, final int score,
+                               final ScoreType type) {
+            this.record("score " + round + " " + player + " " + score + " " + type);
+        }
+
+        @Override
+        public void traceScore(final int round, final int player, final int[] dice, final int score,
+                               final ScoreType type) {
+            this.record("score " + round + " " + player + " " + score + " " + type);
+        }
+
+        @Override
+        public void tracePlayerDropped(final int player) {
+            this.record("dropped " + player);
+        }
+
+        @Override
+        public void tracePlayerTotal(final int player, final int subtotal_top, final int bonus_top,
+                                     final int top_total, final int bottom_bonus, final int bottom_total,
+                                     final int total_score) {
+            this.record("total " + player + " " + total_score);
+        }
+
+        @Override
+        public void traceEndGame() {
+            this.record("end");
+        }
+
+        private void record(final String event) {
+            this.events.add(event);
+            this.threads.add(Thread.currentThread());
+        }
+    }
+}